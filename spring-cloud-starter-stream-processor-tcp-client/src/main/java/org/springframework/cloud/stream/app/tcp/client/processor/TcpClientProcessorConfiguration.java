@@ -16,11 +16,26 @@
 
 package org.springframework.cloud.stream.app.tcp.client.processor;
 
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cloud.stream.annotation.EnableBinding;
+import org.springframework.cloud.stream.app.tcp.AbstractFrameSerializer;
+import org.springframework.cloud.stream.app.tcp.ChecksumFailureCounter;
+import org.springframework.cloud.stream.app.tcp.ConnectionExecutorFactoryBean;
 import org.springframework.cloud.stream.app.tcp.EncoderDecoderFactoryBean;
+import org.springframework.cloud.stream.app.tcp.FrameBufferPool;
+import org.springframework.cloud.stream.app.tcp.FrameConnectionSupport;
+import org.springframework.cloud.stream.app.tcp.IdleConnectionTimingWheel;
+import org.springframework.cloud.stream.app.tcp.InboundTcpMessageMapper;
+import org.springframework.cloud.stream.app.tcp.ReverseLookupCache;
+import org.springframework.cloud.stream.app.tcp.ReverseLookupConnectionSupport;
 import org.springframework.cloud.stream.app.tcp.TcpConnectionFactoryProperties;
 import org.springframework.cloud.stream.messaging.Processor;
 import org.springframework.context.annotation.Bean;
@@ -53,6 +68,12 @@ public class TcpClientProcessorConfiguration {
 	@Autowired
 	private TcpConnectionFactoryProperties tcpConnectionProperties;
 
+	@Autowired
+	private ObjectProvider<ReverseLookupCache> reverseLookupCache;
+
+	@Autowired
+	private ObjectProvider<IdleConnectionTimingWheel> idleTimingWheel;
+
 	@Bean
 	public TcpReceivingChannelAdapter adapter(
 			@Qualifier("tcpClientConnectionFactory") AbstractConnectionFactory connectionFactory) {
@@ -77,7 +98,8 @@ public class TcpClientProcessorConfiguration {
 	public TcpConnectionFactoryFactoryBean tcpClientConnectionFactory(
 			@Qualifier("tcpClientEncoder") AbstractByteArraySerializer encoder,
 			@Qualifier("tcpClientMapper") TcpMessageMapper mapper,
-			@Qualifier("tcpClientDecoder") AbstractByteArraySerializer decoder) throws Exception {
+			@Qualifier("tcpClientDecoder") AbstractByteArraySerializer decoder,
+			@Qualifier("tcpClientExecutor") Executor executor) throws Exception {
 		TcpConnectionFactoryFactoryBean factoryBean = new TcpConnectionFactoryFactoryBean();
 		factoryBean.setType("client");
 		factoryBean.setHost(this.properties.getHost());
@@ -85,30 +107,83 @@ public class TcpClientProcessorConfiguration {
 		factoryBean.setUsingNio(this.tcpConnectionProperties.isNio());
 		factoryBean.setUsingDirectBuffers(this.tcpConnectionProperties.isUseDirectBuffers());
 		factoryBean.setLookupHost(this.tcpConnectionProperties.isReverseLookup());
+		ReverseLookupCache reverseLookupCache = this.reverseLookupCache.getIfAvailable();
+		// the frame serializers read blocking connections in bulk through a buffered stream
+		boolean bufferedInput = decoder instanceof AbstractFrameSerializer;
+		if (reverseLookupCache != null || bufferedInput) {
+			FrameConnectionSupport connectionSupport = reverseLookupCache != null
+					? new ReverseLookupConnectionSupport(reverseLookupCache) : new FrameConnectionSupport();
+			connectionSupport.setBufferedInput(bufferedInput);
+			factoryBean.setNetConnectionSupport(connectionSupport);
+			factoryBean.setNioConnectionSupport(connectionSupport);
+		}
 		factoryBean.setSerializer(encoder);
 		factoryBean.setDeserializer(decoder);
-		factoryBean.setSoTimeout(this.tcpConnectionProperties.getSocketTimeout());
+		// the timing wheel, if any, closes idle connections instead of the factory
+		factoryBean.setSoTimeout(this.idleTimingWheel.getIfAvailable() != null ? 0
+				: this.tcpConnectionProperties.getSocketTimeout());
+		factoryBean.setTaskExecutor(executor);
 		factoryBean.setMapper(mapper);
 		factoryBean.setSingleUse(Boolean.FALSE);
 		return factoryBean;
 	}
 
+	@Bean
+	public ConnectionExecutorFactoryBean tcpClientExecutor() {
+		return new ConnectionExecutorFactoryBean(this.tcpConnectionProperties, "tcp-client-");
+	}
+
+	@Bean
+	@ConditionalOnExpression("${tcp.reverse-lookup:false}")
+	public ReverseLookupCache tcpClientReverseLookupCache() {
+		return new ReverseLookupCache(this.tcpConnectionProperties.getReverseLookupCacheSize(),
+				this.tcpConnectionProperties.getReverseLookupTtl(),
+				this.tcpConnectionProperties.getReverseLookupNegativeTtl());
+	}
+
+	@Bean
+	@ConditionalOnExpression("${tcp.idle-timing-wheel:false} and ${tcp.nio:false} "
+			+ "and ${tcp.socket-timeout:120000} > 0")
+	public IdleConnectionTimingWheel tcpClientIdleTimingWheel() {
+		return new IdleConnectionTimingWheel(this.tcpConnectionProperties.getSocketTimeout());
+	}
+
 	@Bean
 	public EncoderDecoderFactoryBean tcpClientEncoder() {
-		return new EncoderDecoderFactoryBean(this.properties.getEncoder());
+		EncoderDecoderFactoryBean factoryBean = new EncoderDecoderFactoryBean(this.properties.getEncoder());
+		factoryBean.setDelimiter(this.tcpConnectionProperties.getDelimiter());
+		factoryBean.setCompressionLevel(this.properties.getCompressionLevel());
+		factoryBean.setCompressionThreshold(this.properties.getCompressionThreshold());
+		return factoryBean;
 	}
 
 	@Bean
 	public TcpMessageMapper tcpClientMapper() {
-		TcpMessageMapper mapper = new TcpMessageMapper();
+		InboundTcpMessageMapper mapper = new InboundTcpMessageMapper();
 		mapper.setCharset(this.properties.getCharset());
+		mapper.setPayloadType(this.properties.getPayloadType());
+		if (this.properties.getLeanHeaders() != null) {
+			mapper.setLeanHeaders(Arrays.asList(this.properties.getLeanHeaders()));
+		}
 		return mapper;
 	}
 
 	@Bean
-	public EncoderDecoderFactoryBean tcpClientDecoder() {
+	@ConditionalOnProperty(prefix = "tcp", name = "decoder", havingValue = "L4_CRC32C")
+	public ChecksumFailureCounter tcpClientChecksumFailureCounter() {
+		return new ChecksumFailureCounter();
+	}
+
+	@Bean
+	public EncoderDecoderFactoryBean tcpClientDecoder(ObjectProvider<ChecksumFailureCounter> checksumFailureCounter) {
 		EncoderDecoderFactoryBean factoryBean = new EncoderDecoderFactoryBean(this.properties.getDecoder());
+		factoryBean.setChecksumFailureCounter(checksumFailureCounter.getIfAvailable());
+		factoryBean.setDelimiter(this.tcpConnectionProperties.getDelimiter());
 		factoryBean.setMaxMessageSize(this.properties.getBufferSize());
+		factoryBean.setInPlaceDecoding(this.properties.isInPlaceDecoding());
+		factoryBean.setDelimiterScan(this.properties.getDelimiterScan());
+		factoryBean.setBufferPool(new FrameBufferPool(this.properties.getBufferPoolSize(),
+				this.properties.getBufferPoolMaxRetained()));
 		return factoryBean;
 	}
 
@@ -19,7 +19,9 @@ package org.springframework.cloud.stream.app.tcp.client.processor;
 import javax.validation.constraints.NotNull;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.cloud.stream.app.tcp.DelimiterScan;
 import org.springframework.cloud.stream.app.tcp.Encoding;
+import org.springframework.cloud.stream.app.tcp.PayloadType;
 import org.springframework.validation.annotation.Validated;
 
 /**
@@ -44,6 +46,28 @@ public class TcpClientProcessorProperties {
 	 */
 	private int bufferSize = 2048;
 
+	/**
+	 * Whether to decode in a reused buffer and copy each message out once at its exact size,
+	 * rather than allocating a buffer of 'bufferSize' for every message.
+	 */
+	private boolean inPlaceDecoding;
+
+	/**
+	 * How the delimiter-based decoders (CRLF, LF, NULL, STXETX) search for the end of a message;
+	 * SWAR examines eight bytes at a time on blocking (not NIO) connections and implies in place decoding.
+	 */
+	private DelimiterScan delimiterScan = DelimiterScan.BYTE;
+
+	/**
+	 * When decoding in place, the maximum number of working buffers retained for reuse per size class.
+	 */
+	private int bufferPoolSize = 16;
+
+	/**
+	 * When decoding in place, the maximum number of bytes retained for reuse across all size classes.
+	 */
+	private long bufferPoolMaxRetained = 16 * 1024 * 1024;
+
 	/**
 	 * The host to which this sink will connect.
 	 */
@@ -54,11 +78,33 @@ public class TcpClientProcessorProperties {
 	 */
 	private Encoding encoder = Encoding.CRLF;
 
+	/**
+	 * The compression level (0-9, or -1 for the default) when the encoder is DEFLATE.
+	 */
+	private int compressionLevel = -1;
+
+	/**
+	 * The minimum message size to compress when the encoder is DEFLATE; smaller messages are sent as is.
+	 */
+	private int compressionThreshold = 256;
+
 	/**
 	 * The charset used when converting from bytes to String.
 	 */
 	private String charset = "UTF-8";
 
+	/**
+	 * The type of the payload of received messages; STRING payloads are decoded with 'charset'.
+	 */
+	private PayloadType payloadType = PayloadType.BYTES;
+
+	/**
+	 * The connection headers to add to each message (ip_connectionId, ip_address, ip_hostname,
+	 * ip_tcp_remotePort, ip_localInetAddress), computed once per connection; all the standard
+	 * headers when not set.
+	 */
+	private String[] leanHeaders;
+
 	/**
 	 * Retry interval (in milliseconds) to check the connection and reconnect.
 	 */
@@ -81,6 +127,39 @@ public class TcpClientProcessorProperties {
 		this.bufferSize = bufferSize;
 	}
 
+	public boolean isInPlaceDecoding() {
+		return this.inPlaceDecoding;
+	}
+
+	public void setInPlaceDecoding(boolean inPlaceDecoding) {
+		this.inPlaceDecoding = inPlaceDecoding;
+	}
+
+	@NotNull
+	public DelimiterScan getDelimiterScan() {
+		return this.delimiterScan;
+	}
+
+	public void setDelimiterScan(DelimiterScan delimiterScan) {
+		this.delimiterScan = delimiterScan;
+	}
+
+	public int getBufferPoolSize() {
+		return this.bufferPoolSize;
+	}
+
+	public void setBufferPoolSize(int bufferPoolSize) {
+		this.bufferPoolSize = bufferPoolSize;
+	}
+
+	public long getBufferPoolMaxRetained() {
+		return this.bufferPoolMaxRetained;
+	}
+
+	public void setBufferPoolMaxRetained(long bufferPoolMaxRetained) {
+		this.bufferPoolMaxRetained = bufferPoolMaxRetained;
+	}
+
 	@NotNull
 	public String getHost() {
 		return host;
@@ -99,6 +178,22 @@ public class TcpClientProcessorProperties {
 		this.encoder = encoder;
 	}
 
+	public int getCompressionLevel() {
+		return this.compressionLevel;
+	}
+
+	public void setCompressionLevel(int compressionLevel) {
+		this.compressionLevel = compressionLevel;
+	}
+
+	public int getCompressionThreshold() {
+		return this.compressionThreshold;
+	}
+
+	public void setCompressionThreshold(int compressionThreshold) {
+		this.compressionThreshold = compressionThreshold;
+	}
+
 	@NotNull
 	public String getCharset() {
 		return charset;
@@ -116,4 +211,21 @@ public class TcpClientProcessorProperties {
 		this.retryInterval = retryInterval;
 	}
 
+	public String[] getLeanHeaders() {
+		return this.leanHeaders;
+	}
+
+	public void setLeanHeaders(String[] leanHeaders) {
+		this.leanHeaders = leanHeaders;
+	}
+
+	@NotNull
+	public PayloadType getPayloadType() {
+		return this.payloadType;
+	}
+
+	public void setPayloadType(PayloadType payloadType) {
+		this.payloadType = payloadType;
+	}
+
 }
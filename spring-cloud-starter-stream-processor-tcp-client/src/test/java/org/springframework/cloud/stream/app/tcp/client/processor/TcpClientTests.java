@@ -19,6 +19,8 @@ package org.springframework.cloud.stream.app.tcp.client.processor;
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.springframework.cloud.stream.test.matcher.MessageQueueMatcher.receivesPayloadThat;
@@ -28,6 +30,7 @@ import java.net.ServerSocket;
 import java.net.Socket;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import javax.net.ServerSocketFactory;
 
@@ -42,9 +45,15 @@ import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cloud.stream.app.tcp.DeflateFrameSerializer;
+import org.springframework.cloud.stream.app.tcp.DelimitedFrameSerializer;
+import org.springframework.cloud.stream.app.tcp.FrameConnectionSupport;
+import org.springframework.cloud.stream.app.tcp.HorspoolDelimitedFrameSerializer;
+import org.springframework.cloud.stream.app.tcp.SwarDelimitedFrameSerializer;
 import org.springframework.cloud.stream.messaging.Processor;
 import org.springframework.cloud.stream.test.binder.MessageCollector;
 import org.springframework.context.annotation.Import;
+import org.springframework.integration.ip.IpHeaders;
 import org.springframework.integration.ip.tcp.connection.AbstractConnectionFactory;
 import org.springframework.integration.ip.tcp.connection.TcpNioClientConnectionFactory;
 import org.springframework.integration.ip.tcp.serializer.AbstractByteArraySerializer;
@@ -198,20 +207,130 @@ public abstract class TcpClientTests {
 
 	}
 
+	@TestPropertySource(properties = { "tcp.payloadType = STRING" })
+	public static class StringPayloadTests extends TcpClientTests {
+
+		@Test
+		public void test() throws Exception {
+			doTest(new ByteArrayCrLfSerializer(), "", "foo", "\r\n", "foo-received");
+		}
+
+	}
+
+	@TestPropertySource(properties = { "tcp.inPlaceDecoding = true" })
+	public static class InPlaceCRLFTests extends TcpClientTests {
+
+		@Test
+		public void test() throws Exception {
+			assertThat(this.connectionFactory.getDeserializer(), Matchers.instanceOf(DelimitedFrameSerializer.class));
+			assertThat(TestUtils.getPropertyValue(this.connectionFactory, "tcpNetConnectionSupport"),
+					Matchers.instanceOf(FrameConnectionSupport.class));
+			doTest(new ByteArrayCrLfSerializer(), "", "foo", "\r\n");
+		}
+
+	}
+
+	@TestPropertySource(properties = { "tcp.encoder = L4", "tcp.decoder = L4", "tcp.inPlaceDecoding = true" })
+	public static class InPlaceL4Tests extends TcpClientTests {
+
+		@Test
+		public void test() throws Exception {
+			doTest(new ByteArrayLengthHeaderSerializer(4), "\u0000\u0000\u0000\u0003", "foo", "");
+		}
+
+	}
+
+	@TestPropertySource(properties = { "tcp.encoder = LF", "tcp.decoder = LF", "tcp.delimiterScan = SWAR" })
+	public static class SwarLFTests extends TcpClientTests {
+
+		@Test
+		public void test() throws Exception {
+			assertThat(this.connectionFactory.getDeserializer(),
+					Matchers.instanceOf(SwarDelimitedFrameSerializer.class));
+			doTest(new ByteArrayLfSerializer(), "", "foo bar baz qux", "\n");
+		}
+
+	}
+
+	@TestPropertySource(properties = { "tcp.inPlaceDecoding = true", "tcp.bufferPoolSize = 4",
+			"tcp.bufferPoolMaxRetained = 65536" })
+	public static class BufferPoolTests extends TcpClientTests {
+
+		@Test
+		public void test() throws Exception {
+			assertEquals(4, TestUtils.getPropertyValue(this.connectionFactory, "deserializer.bufferPool.poolSize"));
+			assertEquals(65536L,
+					TestUtils.getPropertyValue(this.connectionFactory, "deserializer.bufferPool.maxRetained"));
+			doTest(new ByteArrayCrLfSerializer(), "", "foo", "\r\n");
+		}
+
+	}
+
+	@TestPropertySource(properties = { "tcp.encoder = DEFLATE", "tcp.decoder = DEFLATE",
+			"tcp.compressionThreshold = 0" })
+	public static class DEFLATETests extends TcpClientTests {
+
+		@Test
+		public void test() throws Exception {
+			DeflateFrameSerializer serializer = new DeflateFrameSerializer();
+			serializer.setCompressionThreshold(0);
+			doTest(serializer, "\u0000\u0000\u0000\u0004\u0001", "foo", "");
+		}
+
+	}
+
+	@TestPropertySource(properties = { "tcp.encoder = DELIMITER", "tcp.decoder = DELIMITER", "tcp.delimiter = <EOR>" })
+	public static class DELIMITERTests extends TcpClientTests {
+
+		@Test
+		public void test() throws Exception {
+			assertThat(this.connectionFactory.getDeserializer(),
+					Matchers.instanceOf(HorspoolDelimitedFrameSerializer.class));
+			doTest(new HorspoolDelimitedFrameSerializer("<EOR>".getBytes()), "", "foo", "<EOR>");
+		}
+
+	}
+
+	@TestPropertySource(properties = { "tcp.leanHeaders = ip_connectionId,ip_tcp_remotePort" })
+	public static class LeanHeadersTests extends TcpClientTests {
+
+		@Test
+		public void test() throws Exception {
+			server.setEncoder(new ByteArrayCrLfSerializer());
+			server.setDecoder(new ByteArrayCrLfSerializer());
+			server.setPrefix("");
+			server.setSuffix("\r\n");
+			assertTrue(channels.input().send(new GenericMessage<>("foo")));
+			Message<?> received = this.messageCollector.forChannel(channels.output()).poll(10, TimeUnit.SECONDS);
+			assertThat(received.getPayload(), is("foo-received".getBytes()));
+			assertEquals(server.serverSocket.getLocalPort(), received.getHeaders().get(IpHeaders.REMOTE_PORT));
+			assertNotNull(received.getHeaders().get(IpHeaders.CONNECTION_ID));
+			assertNull(received.getHeaders().get(IpHeaders.IP_ADDRESS));
+			assertNull(received.getHeaders().get(IpHeaders.HOSTNAME));
+			server.serverSocket.close();
+		}
+
+	}
+
 
 	/*
 	 * Sends a message and asserts it arrives as expected on the other side using
 	 * the supplied decoder. Also, verifies the message received from the TCP server.
 	 */
 	protected void doTest(AbstractByteArraySerializer encoderDecoder, String prefix, String payload, String suffix) throws Exception {
+		doTest(encoderDecoder, prefix, payload, suffix, (payload + "-received") .getBytes());
+	}
+
+	protected void doTest(AbstractByteArraySerializer encoderDecoder, String prefix, String payload, String suffix,
+			Object expected) throws Exception {
+
 		server.setEncoder(encoderDecoder);
 		server.setDecoder(encoderDecoder);
 		server.setPrefix(prefix);
 		server.setSuffix(suffix);
 		Message<String> messageToSend = new GenericMessage<>(payload);
 		assertTrue(channels.input().send(messageToSend));
-		assertThat(this.messageCollector.forChannel(channels.output()),
-				receivesPayloadThat(is((payload + "-received") .getBytes())));
+		assertThat(this.messageCollector.forChannel(channels.output()), receivesPayloadThat(is(expected)));
 		server.serverSocket.close();
 	}
 
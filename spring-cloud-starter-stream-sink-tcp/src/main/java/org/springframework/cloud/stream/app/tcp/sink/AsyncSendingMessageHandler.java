@@ -0,0 +1,278 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.app.tcp.sink;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.context.Lifecycle;
+import org.springframework.integration.IntegrationMessageHeaderAccessor;
+import org.springframework.integration.acks.AcknowledgmentCallback;
+import org.springframework.integration.channel.MessagePublishingErrorHandler;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedMetric;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.MessageHandlingException;
+import org.springframework.messaging.MessagingException;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.Assert;
+
+/**
+ * Hands each message to writer threads that send it with the delegate handler, so
+ * that the binder's consumer thread does not wait for the socket write. Messages are
+ * queued in a lock-free queue; the consumer thread blocks only when {@code maxInFlight}
+ * messages are queued or being sent. With one writer, messages are sent in order;
+ * more writers are useful with a connection pool, thread affinity or several hosts.
+ * <p>
+ * When a message has an {@link AcknowledgmentCallback}, automatic acknowledgment is
+ * disabled when it is queued, and it is acknowledged ({@code ACCEPT}) when sent, or
+ * {@code REQUEUE}d when the send fails. Failures are also sent to the error channel.
+ * Message-driven binders do not provide a callback; for them, a message is delivered at
+ * most once, since the binder considers it handled when it is queued.
+ */
+@ManagedResource
+public class AsyncSendingMessageHandler implements MessageHandler, Lifecycle, BeanFactoryAware {
+
+	private static final Log logger = LogFactory.getLog(AsyncSendingMessageHandler.class);
+
+	private static final long STOP_TIMEOUT = 10_000;
+
+	private final Queue<Message<?>> queue = new ConcurrentLinkedQueue<>();
+
+	private final Semaphore queued = new Semaphore(0);
+
+	private final MessageHandler delegate;
+
+	private final int maxInFlight;
+
+	private final int writers;
+
+	private final Semaphore inFlight;
+
+	// held to queue a message, and exclusively to stop accepting them
+	private final ReadWriteLock stopLock = new ReentrantReadWriteLock();
+
+	private final MessagePublishingErrorHandler errorHandler = new MessagePublishingErrorHandler();
+
+	private final AtomicLong sent = new AtomicLong();
+
+	private final AtomicLong failed = new AtomicLong();
+
+	private ExecutorService executor;
+
+	private volatile boolean running;
+
+	/**
+	 * Construct an instance.
+	 * @param delegate the handler that sends the messages.
+	 * @param maxInFlight the maximum number of messages queued or being sent.
+	 * @param writers the number of writer threads.
+	 */
+	public AsyncSendingMessageHandler(MessageHandler delegate, int maxInFlight, int writers) {
+		Assert.notNull(delegate, "'delegate' cannot be null");
+		Assert.isTrue(maxInFlight > 0, "'maxInFlight' must be positive");
+		Assert.isTrue(writers > 0, "'writers' must be positive");
+		this.delegate = delegate;
+		this.maxInFlight = maxInFlight;
+		this.writers = writers;
+		this.inFlight = new Semaphore(maxInFlight);
+	}
+
+	@Override
+	public void setBeanFactory(BeanFactory beanFactory) throws BeansException {
+		this.errorHandler.setBeanFactory(beanFactory);
+	}
+
+	public MessageHandler getDelegate() {
+		return this.delegate;
+	}
+
+	@ManagedAttribute(description = "The maximum number of messages queued or being sent")
+	public int getMaxInFlight() {
+		return this.maxInFlight;
+	}
+
+	@ManagedMetric(description = "Messages queued or being sent")
+	public int getInFlight() {
+		return this.maxInFlight - this.inFlight.availablePermits();
+	}
+
+	@ManagedMetric(description = "Messages sent")
+	public long getSent() {
+		return this.sent.get();
+	}
+
+	@ManagedMetric(description = "Messages that could not be sent")
+	public long getFailed() {
+		return this.failed.get();
+	}
+
+	@Override
+	public void handleMessage(Message<?> message) throws MessagingException {
+		if (!this.running) {
+			throw new MessageHandlingException(message, "The sink is not running");
+		}
+		try {
+			this.inFlight.acquire();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MessageHandlingException(message, "Interrupted while waiting to queue the message", e);
+		}
+		this.stopLock.readLock().lock();
+		try {
+			if (!this.running) {
+				this.inFlight.release();
+				throw new MessageHandlingException(message, "The sink is not running");
+			}
+			AcknowledgmentCallback callback = acknowledgmentCallback(message);
+			if (callback != null) {
+				callback.noAutoAck();
+			}
+			this.queue.offer(message);
+			this.queued.release();
+		}
+		finally {
+			this.stopLock.readLock().unlock();
+		}
+	}
+
+	private void write() {
+		while (true) {
+			try {
+				if (!this.queued.tryAcquire(100, TimeUnit.MILLISECONDS)) {
+					if (this.running) {
+						continue;
+					}
+					return;
+				}
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+			send(this.queue.poll());
+		}
+	}
+
+	private void send(Message<?> message) {
+		AcknowledgmentCallback callback = acknowledgmentCallback(message);
+		try {
+			this.delegate.handleMessage(message);
+			this.sent.incrementAndGet();
+			if (callback != null && !callback.isAcknowledged()) {
+				callback.acknowledge(AcknowledgmentCallback.Status.ACCEPT);
+			}
+		}
+		catch (RuntimeException e) {
+			failed(message, e);
+		}
+		finally {
+			this.inFlight.release();
+		}
+	}
+
+	private void failed(Message<?> message, Exception cause) {
+		this.failed.incrementAndGet();
+		AcknowledgmentCallback callback = acknowledgmentCallback(message);
+		if (callback != null && !callback.isAcknowledged()) {
+			callback.acknowledge(AcknowledgmentCallback.Status.REQUEUE);
+		}
+		this.errorHandler.handleError(cause instanceof MessagingException ? cause
+				: new MessageHandlingException(message, "Failed to send", cause));
+	}
+
+	private static AcknowledgmentCallback acknowledgmentCallback(Message<?> message) {
+		return message.getHeaders().get(IntegrationMessageHeaderAccessor.ACKNOWLEDGMENT_CALLBACK,
+				AcknowledgmentCallback.class);
+	}
+
+	@Override
+	public synchronized void start() {
+		if (this.running) {
+			return;
+		}
+		if (this.delegate instanceof Lifecycle) {
+			((Lifecycle) this.delegate).start();
+		}
+		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("tcp-sink-writer-");
+		threadFactory.setDaemon(true);
+		this.executor = Executors.newFixedThreadPool(this.writers, threadFactory);
+		this.running = true;
+		for (int i = 0; i < this.writers; i++) {
+			this.executor.execute(this::write);
+		}
+	}
+
+	/**
+	 * Stop accepting messages, wait for the writers to send those already queued and
+	 * stop the delegate; messages still queued after 10 seconds are failed.
+	 */
+	@Override
+	public synchronized void stop() {
+		if (!this.running) {
+			return;
+		}
+		this.stopLock.writeLock().lock();
+		try {
+			this.running = false;
+		}
+		finally {
+			this.stopLock.writeLock().unlock();
+		}
+		this.executor.shutdown();
+		try {
+			if (!this.executor.awaitTermination(STOP_TIMEOUT, TimeUnit.MILLISECONDS)) {
+				this.executor.shutdownNow();
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			this.executor.shutdownNow();
+		}
+		Message<?> message;
+		while ((message = this.queue.poll()) != null) {
+			this.queued.tryAcquire();
+			logger.warn("Sink stopped before a queued message was sent");
+			failed(message, new MessageHandlingException(message, "The sink stopped before the message was sent"));
+			this.inFlight.release();
+		}
+		if (this.delegate instanceof Lifecycle) {
+			((Lifecycle) this.delegate).stop();
+		}
+	}
+
+	@Override
+	public boolean isRunning() {
+		return this.running;
+	}
+
+}
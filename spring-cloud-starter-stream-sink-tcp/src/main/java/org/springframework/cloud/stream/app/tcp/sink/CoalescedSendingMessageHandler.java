@@ -0,0 +1,86 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.app.tcp.sink;
+
+import java.io.IOException;
+
+import org.springframework.cloud.stream.app.tcp.CoalescingSerializer;
+import org.springframework.context.Lifecycle;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.MessageHandlingException;
+import org.springframework.messaging.MessagingException;
+import org.springframework.util.Assert;
+
+/**
+ * Sends each message with the delegate handler and then waits until the
+ * {@link CoalescingSerializer} has written the batch holding it, so that a message is
+ * not acknowledged while it is only buffered, and a failure to write the batch fails
+ * the send.
+ */
+public class CoalescedSendingMessageHandler implements MessageHandler, Lifecycle {
+
+	private final MessageHandler delegate;
+
+	private final CoalescingSerializer serializer;
+
+	/**
+	 * Construct an instance.
+	 * @param delegate the handler that sends the messages.
+	 * @param serializer the serializer used by the delegate's connections.
+	 */
+	public CoalescedSendingMessageHandler(MessageHandler delegate, CoalescingSerializer serializer) {
+		Assert.notNull(delegate, "'delegate' cannot be null");
+		Assert.notNull(serializer, "'serializer' cannot be null");
+		this.delegate = delegate;
+		this.serializer = serializer;
+	}
+
+	public MessageHandler getDelegate() {
+		return this.delegate;
+	}
+
+	@Override
+	public void handleMessage(Message<?> message) throws MessagingException {
+		this.delegate.handleMessage(message);
+		try {
+			this.serializer.awaitWritten();
+		}
+		catch (IOException e) {
+			throw new MessageHandlingException(message, "Failed to write the message", e);
+		}
+	}
+
+	@Override
+	public void start() {
+		if (this.delegate instanceof Lifecycle) {
+			((Lifecycle) this.delegate).start();
+		}
+	}
+
+	@Override
+	public void stop() {
+		if (this.delegate instanceof Lifecycle) {
+			((Lifecycle) this.delegate).stop();
+		}
+	}
+
+	@Override
+	public boolean isRunning() {
+		return !(this.delegate instanceof Lifecycle) || ((Lifecycle) this.delegate).isRunning();
+	}
+
+}
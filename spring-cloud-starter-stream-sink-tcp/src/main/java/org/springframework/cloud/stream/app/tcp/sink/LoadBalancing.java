@@ -0,0 +1,39 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.app.tcp.sink;
+
+/**
+ * How the TCP sink chooses the target for each message when sending to several hosts.
+ */
+public enum LoadBalancing {
+
+	/**
+	 * Each target in turn.
+	 */
+	ROUND_ROBIN,
+
+	/**
+	 * The target with the fewest sends in progress.
+	 */
+	LEAST_OUTSTANDING,
+
+	/**
+	 * The target with the lowest recent send time (an exponentially weighted moving
+	 * average), weighted by its sends in progress.
+	 */
+	LATENCY
+
+}
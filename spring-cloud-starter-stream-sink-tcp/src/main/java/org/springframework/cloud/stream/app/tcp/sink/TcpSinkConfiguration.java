@@ -16,20 +16,46 @@
 
 package org.springframework.cloud.stream.app.tcp.sink;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionOutcome;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.SpringBootCondition;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Binder;
 import org.springframework.cloud.stream.annotation.EnableBinding;
+import org.springframework.cloud.stream.app.tcp.CoalescingSerializer;
+import org.springframework.cloud.stream.app.tcp.CoalescingStatistics;
+import org.springframework.cloud.stream.app.tcp.ConnectionExecutorFactoryBean;
 import org.springframework.cloud.stream.app.tcp.EncoderDecoderFactoryBean;
+import org.springframework.cloud.stream.app.tcp.IdleConnectionTimingWheel;
+import org.springframework.cloud.stream.app.tcp.ReverseLookupCache;
+import org.springframework.cloud.stream.app.tcp.ReverseLookupConnectionSupport;
 import org.springframework.cloud.stream.app.tcp.TcpConnectionFactoryProperties;
+import org.springframework.cloud.stream.config.BindingServiceProperties;
 import org.springframework.cloud.stream.messaging.Sink;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ConditionContext;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.core.type.AnnotatedTypeMetadata;
 import org.springframework.integration.annotation.ServiceActivator;
 import org.springframework.integration.ip.config.TcpConnectionFactoryFactoryBean;
 import org.springframework.integration.ip.tcp.TcpSendingMessageHandler;
-import org.springframework.integration.ip.tcp.connection.AbstractConnectionFactory;
+import org.springframework.integration.ip.tcp.connection.AbstractClientConnectionFactory;
 import org.springframework.integration.ip.tcp.connection.TcpMessageMapper;
+import org.springframework.integration.ip.tcp.connection.ThreadAffinityClientConnectionFactory;
 import org.springframework.integration.ip.tcp.serializer.AbstractByteArraySerializer;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.util.Assert;
+import org.springframework.util.ObjectUtils;
 
 /**
  * A sink application that sends data over TCP.
@@ -47,36 +73,199 @@ public class TcpSinkConfiguration {
 	@Autowired
 	private TcpConnectionFactoryProperties tcpConnectionProperties;
 
+	@Autowired
+	private ObjectProvider<ReverseLookupCache> reverseLookupCache;
+
+	@Autowired
+	private ObjectProvider<IdleConnectionTimingWheel> idleTimingWheel;
+
 	@Bean
 	@ServiceActivator(inputChannel = Sink.INPUT)
-	public TcpSendingMessageHandler handler(
-			@Qualifier("tcpSinkConnectionFactory") AbstractConnectionFactory connectionFactory) {
+	@Conditional(NoHostsCondition.class)
+	public MessageHandler handler(
+			@Qualifier("tcpSinkConnectionFactory") AbstractClientConnectionFactory connectionFactory,
+			@Qualifier("tcpSinkEncoder") AbstractByteArraySerializer encoder,
+			BeanFactory beanFactory) {
 		TcpSendingMessageHandler handler = new TcpSendingMessageHandler();
-		handler.setConnectionFactory(connectionFactory);
+		handler.setConnectionFactory(sendingConnectionFactory(connectionFactory));
+		MessageHandler wrapped = asyncIfEnabled(awaitCoalesced(handler, encoder));
+		if (wrapped != handler) {
+			// only the bean itself is initialized by the container
+			handler.setBeanFactory(beanFactory);
+			handler.afterPropertiesSet();
+		}
+		return wrapped;
+	}
+
+	@Bean
+	@ServiceActivator(inputChannel = Sink.INPUT)
+	@Conditional(HostsCondition.class)
+	public MessageHandler tcpSinkLoadBalancer(
+			@Qualifier("tcpSinkConnectionFactory") AbstractClientConnectionFactory connectionFactory,
+			@Qualifier("tcpSinkEncoder") AbstractByteArraySerializer encoder,
+			@Qualifier("tcpSinkMapper") TcpMessageMapper mapper,
+			@Qualifier("tcpSinkExecutor") Executor executor,
+			BeanFactory beanFactory, ApplicationEventPublisher applicationEventPublisher) throws Exception {
+
+		String[] hosts = this.properties.getHosts();
+		List<TcpSendingMessageHandler> handlers = new ArrayList<>();
+		for (int i = 0; i < hosts.length; i++) {
+			AbstractClientConnectionFactory target = connectionFactory;
+			if (i > 0) {
+				TcpConnectionFactoryFactoryBean factoryBean = clientConnectionFactory(hosts[i], encoder, mapper,
+						executor);
+				factoryBean.setBeanFactory(beanFactory);
+				factoryBean.setApplicationEventPublisher(applicationEventPublisher);
+				factoryBean.afterPropertiesSet();
+				target = (AbstractClientConnectionFactory) factoryBean.getObject();
+			}
+			TcpSendingMessageHandler handler = new TcpSendingMessageHandler();
+			handler.setConnectionFactory(sendingConnectionFactory(target));
+			handler.setBeanFactory(beanFactory);
+			handler.afterPropertiesSet();
+			handlers.add(handler);
+		}
+		// each target waits for its own writes, so that failed writes fail over
+		return asyncIfEnabled(new TcpSinkLoadBalancer(Arrays.asList(hosts), handlers,
+				this.properties.getLoadBalancing(), this.properties.getFailoverBackoff(),
+				this.properties.isWarmConnections(),
+				encoder instanceof CoalescingSerializer ? (CoalescingSerializer) encoder : null));
+	}
+
+	private MessageHandler awaitCoalesced(MessageHandler handler, AbstractByteArraySerializer encoder) {
+		if (encoder instanceof CoalescingSerializer) {
+			return new CoalescedSendingMessageHandler(handler, (CoalescingSerializer) encoder);
+		}
+		return handler;
+	}
+
+	private MessageHandler asyncIfEnabled(MessageHandler handler) {
+		if (this.properties.getAsyncMaxInFlight() > 0) {
+			return new AsyncSendingMessageHandler(handler, this.properties.getAsyncMaxInFlight(),
+					this.properties.getAsyncWriters());
+		}
 		return handler;
 	}
 
+	private AbstractClientConnectionFactory sendingConnectionFactory(AbstractClientConnectionFactory target) {
+		AbstractClientConnectionFactory connectionFactory = target;
+		if (this.properties.getPoolSize() > 0 || this.properties.isThreadAffinity()) {
+			Assert.state(!this.properties.isClose(),
+					"'tcp.close' cannot be used with 'tcp.pool-size' or 'tcp.thread-affinity'");
+		}
+		if (this.properties.getPoolSize() > 0) {
+			TcpSinkConnectionPool pool = new TcpSinkConnectionPool(target, this.properties.getPoolSize(),
+					this.properties.getPoolMinConnections());
+			pool.setConnectionWaitTimeout(this.properties.getPoolWaitTimeout());
+			connectionFactory = pool;
+		}
+		if (this.properties.isThreadAffinity()) {
+			// the delegate must be single-use; each thread then keeps its own connection
+			connectionFactory.setSingleUse(true);
+			connectionFactory = new ThreadAffinityClientConnectionFactory(connectionFactory);
+		}
+		return connectionFactory;
+	}
+
 	@Bean
 	public TcpConnectionFactoryFactoryBean tcpSinkConnectionFactory(
 			@Qualifier("tcpSinkEncoder") AbstractByteArraySerializer encoder,
-			@Qualifier("tcpSinkMapper") TcpMessageMapper mapper) throws Exception {
+			@Qualifier("tcpSinkMapper") TcpMessageMapper mapper,
+			@Qualifier("tcpSinkExecutor") Executor executor) throws Exception {
+		String[] hosts = this.properties.getHosts();
+		return clientConnectionFactory(ObjectUtils.isEmpty(hosts) ? this.properties.getHost() : hosts[0], encoder,
+				mapper, executor);
+	}
+
+	/*
+	 * A factory for a target: host:port, [IPv6 address]:port, or a host for the default port.
+	 */
+	private TcpConnectionFactoryFactoryBean clientConnectionFactory(String target,
+			AbstractByteArraySerializer encoder, TcpMessageMapper mapper, Executor executor) {
+
+		String host = target;
+		int port = this.tcpConnectionProperties.getPort();
+		int colon = target.lastIndexOf(':');
+		if (colon > 0 && (target.indexOf(':') == colon || target.charAt(colon - 1) == ']')) {
+			host = target.substring(0, colon);
+			port = Integer.parseInt(target.substring(colon + 1).trim());
+		}
+		if (host.startsWith("[") && host.endsWith("]")) {
+			host = host.substring(1, host.length() - 1);
+		}
 		TcpConnectionFactoryFactoryBean factoryBean = new TcpConnectionFactoryFactoryBean();
 		factoryBean.setType("client");
-		factoryBean.setHost(this.properties.getHost());
-		factoryBean.setPort(this.tcpConnectionProperties.getPort());
+		factoryBean.setHost(host.trim());
+		factoryBean.setPort(port);
 		factoryBean.setUsingNio(this.tcpConnectionProperties.isNio());
 		factoryBean.setUsingDirectBuffers(this.tcpConnectionProperties.isUseDirectBuffers());
 		factoryBean.setLookupHost(this.tcpConnectionProperties.isReverseLookup());
+		ReverseLookupCache reverseLookupCache = this.reverseLookupCache.getIfAvailable();
+		if (reverseLookupCache != null) {
+			ReverseLookupConnectionSupport connectionSupport = new ReverseLookupConnectionSupport(reverseLookupCache);
+			factoryBean.setNetConnectionSupport(connectionSupport);
+			factoryBean.setNioConnectionSupport(connectionSupport);
+		}
 		factoryBean.setSerializer(encoder);
-		factoryBean.setSoTimeout(this.tcpConnectionProperties.getSocketTimeout());
+		// the timing wheel, if any, closes idle connections instead of the factory
+		factoryBean.setSoTimeout(this.idleTimingWheel.getIfAvailable() != null ? 0
+				: this.tcpConnectionProperties.getSocketTimeout());
+		factoryBean.setTaskExecutor(executor);
 		factoryBean.setMapper(mapper);
 		factoryBean.setSingleUse(this.properties.isClose());
 		return factoryBean;
 	}
 
 	@Bean
-	public EncoderDecoderFactoryBean tcpSinkEncoder() {
-		return new EncoderDecoderFactoryBean(this.properties.getEncoder());
+	public ConnectionExecutorFactoryBean tcpSinkExecutor() {
+		return new ConnectionExecutorFactoryBean(this.tcpConnectionProperties, "tcp-sink-");
+	}
+
+	@Bean
+	@ConditionalOnExpression("${tcp.reverse-lookup:false}")
+	public ReverseLookupCache tcpSinkReverseLookupCache() {
+		return new ReverseLookupCache(this.tcpConnectionProperties.getReverseLookupCacheSize(),
+				this.tcpConnectionProperties.getReverseLookupTtl(),
+				this.tcpConnectionProperties.getReverseLookupNegativeTtl());
+	}
+
+	@Bean
+	@ConditionalOnExpression("${tcp.idle-timing-wheel:false} and ${tcp.nio:false} "
+			+ "and ${tcp.socket-timeout:120000} > 0")
+	public IdleConnectionTimingWheel tcpSinkIdleTimingWheel() {
+		return new IdleConnectionTimingWheel(this.tcpConnectionProperties.getSocketTimeout());
+	}
+
+	@Bean
+	@ConditionalOnExpression("${tcp.coalesce-delay:0} > 0")
+	public CoalescingStatistics tcpSinkCoalescingStatistics() {
+		return new CoalescingStatistics();
+	}
+
+	@Bean
+	public EncoderDecoderFactoryBean tcpSinkEncoder(ObjectProvider<CoalescingStatistics> coalescingStatistics,
+			BindingServiceProperties bindingServiceProperties) {
+		EncoderDecoderFactoryBean factoryBean = new EncoderDecoderFactoryBean(this.properties.getEncoder());
+		factoryBean.setDelimiter(this.tcpConnectionProperties.getDelimiter());
+		factoryBean.setCompressionLevel(this.properties.getCompressionLevel());
+		factoryBean.setCompressionThreshold(this.properties.getCompressionThreshold());
+		if (this.properties.getCoalesceDelay() > 0) {
+			// buffered frames would be lost when a single-use connection is closed after each send
+			Assert.state(!this.properties.isClose(), "'tcp.close' cannot be used with 'tcp.coalesce-delay'");
+			// each send waits until its frame is written, so frames are only collected from concurrent
+			// senders sharing a connection
+			Assert.state(this.properties.getPoolSize() == 0 && !this.properties.isThreadAffinity(),
+					"'tcp.pool-size' and 'tcp.thread-affinity' cannot be used with 'tcp.coalesce-delay'");
+			int senders = this.properties.getAsyncMaxInFlight() > 0 ? this.properties.getAsyncWriters()
+					: bindingServiceProperties.getConsumerProperties(Sink.INPUT).getConcurrency();
+			Assert.state(senders > 1, "'tcp.coalesce-delay' requires concurrent senders: 'tcp.async-writers' "
+					+ "greater than 1 with 'tcp.async-max-in-flight', or a consumer concurrency greater than 1");
+			factoryBean.setCoalesceDelay(this.properties.getCoalesceDelay());
+			factoryBean.setCoalesceBytes(this.properties.getCoalesceBytes());
+			factoryBean.setCoalesceFrames(this.properties.getCoalesceFrames());
+			factoryBean.setCoalescingStatistics(coalescingStatistics.getIfAvailable());
+		}
+		return factoryBean;
 	}
 
 	@Bean
@@ -86,4 +275,36 @@ public class TcpSinkConfiguration {
 		return mapper;
 	}
 
+	/**
+	 * Matches when 'tcp.hosts' is set, in any form that binds to the property, such as
+	 * a comma-delimited list or indexed entries ({@code tcp.hosts[0]}).
+	 */
+	static class HostsCondition extends SpringBootCondition {
+
+		@Override
+		public ConditionOutcome getMatchOutcome(ConditionContext context, AnnotatedTypeMetadata metadata) {
+			String[] hosts = Binder.get(context.getEnvironment()).bind("tcp.hosts", String[].class).orElse(null);
+			boolean match = ObjectUtils.isEmpty(hosts) != matchIfHosts();
+			return new ConditionOutcome(match, ObjectUtils.isEmpty(hosts) ? "'tcp.hosts' is not set"
+					: "'tcp.hosts' is " + Arrays.toString(hosts));
+		}
+
+		protected boolean matchIfHosts() {
+			return true;
+		}
+
+	}
+
+	/**
+	 * Matches when 'tcp.hosts' is not set.
+	 */
+	static class NoHostsCondition extends HostsCondition {
+
+		@Override
+		protected boolean matchIfHosts() {
+			return false;
+		}
+
+	}
+
 }
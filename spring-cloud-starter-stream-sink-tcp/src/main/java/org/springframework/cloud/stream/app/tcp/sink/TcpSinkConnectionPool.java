@@ -0,0 +1,64 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.app.tcp.sink;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.integration.ip.tcp.connection.AbstractClientConnectionFactory;
+import org.springframework.integration.ip.tcp.connection.CachingClientConnectionFactory;
+import org.springframework.integration.ip.tcp.connection.TcpConnection;
+
+/**
+ * A {@link CachingClientConnectionFactory} that opens a minimum number of connections
+ * when it is started, so that the first sends do not wait for connections to be
+ * established. A pooled connection that has been closed (by the peer, or when idle for
+ * the socket timeout) is discarded when it is next borrowed and replaced as needed.
+ */
+class TcpSinkConnectionPool extends CachingClientConnectionFactory {
+
+	private static final Log logger = LogFactory.getLog(TcpSinkConnectionPool.class);
+
+	private final int minConnections;
+
+	TcpSinkConnectionPool(AbstractClientConnectionFactory target, int maxConnections, int minConnections) {
+		super(target, maxConnections);
+		this.minConnections = Math.min(minConnections, maxConnections);
+	}
+
+	@Override
+	public void start() {
+		super.start();
+		List<TcpConnection> connections = new ArrayList<>(this.minConnections);
+		try {
+			while (connections.size() < this.minConnections) {
+				connections.add(getConnection());
+			}
+		}
+		catch (Exception e) {
+			logger.warn("Opened " + connections.size() + " of " + this.minConnections
+					+ " pooled connections; the rest will be opened when needed", e);
+		}
+		for (TcpConnection connection : connections) {
+			// returns the connection to the pool
+			connection.close();
+		}
+	}
+
+}
@@ -0,0 +1,335 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.app.tcp.sink;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.cloud.stream.app.tcp.CoalescingSerializer;
+import org.springframework.context.Lifecycle;
+import org.springframework.integration.ip.tcp.TcpSendingMessageHandler;
+import org.springframework.integration.ip.tcp.connection.AbstractConnectionFactory;
+import org.springframework.integration.ip.tcp.connection.CachingClientConnectionFactory;
+import org.springframework.integration.ip.tcp.connection.TcpConnection;
+import org.springframework.integration.ip.tcp.connection.ThreadAffinityClientConnectionFactory;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.MessagingException;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.Assert;
+
+/**
+ * Sends each message to one of several targets, each a {@link TcpSendingMessageHandler}
+ * with its own connection factory, chosen according to the {@link LoadBalancing}. When
+ * a send fails, the target is skipped for the failover backoff and the message is sent
+ * to the next target; the exception is thrown only when every target has failed. With a
+ * {@link CoalescingSerializer}, a send to a target waits until its frame is written, so
+ * that a failure to write the batch holding it also fails over.
+ * <p>
+ * With warm connections, each target's shared connection is opened when the balancer
+ * starts, so that failing over does not wait for a connection to be established. When a
+ * target fails, its connection is opened again in the background once its backoff has
+ * elapsed; the target is skipped for another backoff if that fails, so messages are not
+ * sent to a target that is still down. A pool is warmed by its minimum connections when
+ * it starts and by one connection on recovery. Connections are not warmed with thread
+ * affinity, since a connection opened by the balancer would be bound to its own thread.
+ */
+@ManagedResource
+public class TcpSinkLoadBalancer implements MessageHandler, Lifecycle {
+
+	private static final Log logger = LogFactory.getLog(TcpSinkLoadBalancer.class);
+
+	private static final double EWMA_WEIGHT = 0.2;
+
+	private final Target[] targets;
+
+	private final LoadBalancing loadBalancing;
+
+	private final long failoverBackoff;
+
+	private final boolean warmConnections;
+
+	private final AtomicInteger next = new AtomicInteger();
+
+	private volatile ScheduledExecutorService warmer;
+
+	private volatile boolean running;
+
+	/**
+	 * Construct an instance.
+	 * @param names the target names (host:port), for logging and metrics.
+	 * @param handlers the handler for each target.
+	 * @param loadBalancing how targets are chosen.
+	 * @param failoverBackoff the time (ms) for which a failed target is skipped.
+	 * @param warmConnections whether to open the targets' connections on start.
+	 * @param coalescingSerializer the serializer used by the targets' connections when it
+	 * coalesces frames, or null.
+	 */
+	public TcpSinkLoadBalancer(List<String> names, List<TcpSendingMessageHandler> handlers,
+			LoadBalancing loadBalancing, long failoverBackoff, boolean warmConnections,
+			CoalescingSerializer coalescingSerializer) {
+
+		Assert.isTrue(names.size() == handlers.size(), "A name is required for each handler");
+		Assert.isTrue(!handlers.isEmpty() && handlers.size() <= Long.SIZE, "Between 1 and 64 targets are supported");
+		Assert.notNull(loadBalancing, "'loadBalancing' cannot be null");
+		this.targets = new Target[handlers.size()];
+		for (int i = 0; i < this.targets.length; i++) {
+			TcpSendingMessageHandler handler = handlers.get(i);
+			this.targets[i] = new Target(names.get(i), handler, coalescingSerializer != null
+					? new CoalescedSendingMessageHandler(handler, coalescingSerializer) : handler);
+		}
+		this.loadBalancing = loadBalancing;
+		this.failoverBackoff = failoverBackoff;
+		this.warmConnections = warmConnections;
+	}
+
+	@ManagedAttribute(description = "How targets are chosen")
+	public String getLoadBalancing() {
+		return this.loadBalancing.name();
+	}
+
+	@ManagedAttribute(description = "Sends, failures, sends in progress, average send time (us) and state of "
+			+ "each target")
+	public String[] getTargets() {
+		long now = System.currentTimeMillis();
+		String[] targets = new String[this.targets.length];
+		for (int i = 0; i < targets.length; i++) {
+			Target target = this.targets[i];
+			targets[i] = target.name + " sent=" + target.sent.get() + " failures=" + target.failures.get()
+					+ " outstanding=" + target.outstanding.get() + " latency=" + (long) (target.latency / 1000)
+					+ (target.isAvailable(now) ? " up" : " down");
+		}
+		return targets;
+	}
+
+	@Override
+	public void handleMessage(Message<?> message) throws MessagingException {
+		long tried = 0;
+		MessagingException failure = null;
+		for (int attempt = 0; attempt < this.targets.length; attempt++) {
+			long now = System.currentTimeMillis();
+			int index = select(tried, now);
+			tried |= 1L << index;
+			Target target = this.targets[index];
+			target.outstanding.incrementAndGet();
+			long start = System.nanoTime();
+			try {
+				target.sender.handleMessage(message);
+				target.sent(System.nanoTime() - start);
+				return;
+			}
+			catch (MessagingException e) {
+				target.failed(now + this.failoverBackoff);
+				if (logger.isWarnEnabled()) {
+					logger.warn("Send to " + target.name + " failed; skipping it for "
+							+ this.failoverBackoff + "ms", e);
+				}
+				scheduleWarm(target);
+				failure = e;
+			}
+			finally {
+				target.outstanding.decrementAndGet();
+			}
+		}
+		throw failure;
+	}
+
+	/*
+	 * The best untried target that is available, or the untried target that has been
+	 * unavailable the longest when none is.
+	 */
+	private int select(long tried, long now) {
+		int best = -1;
+		double bestScore = Double.MAX_VALUE;
+		int start = this.loadBalancing == LoadBalancing.ROUND_ROBIN
+				? (this.next.getAndIncrement() & Integer.MAX_VALUE) % this.targets.length
+				: 0;
+		for (int n = 0; n < this.targets.length; n++) {
+			int i = (start + n) % this.targets.length;
+			Target target = this.targets[i];
+			if ((tried & (1L << i)) != 0 || !target.isAvailable(now)) {
+				continue;
+			}
+			if (this.loadBalancing == LoadBalancing.ROUND_ROBIN) {
+				return i;
+			}
+			double score = this.loadBalancing == LoadBalancing.LEAST_OUTSTANDING
+					? target.outstanding.get()
+					: target.latency * (target.outstanding.get() + 1);
+			if (score < bestScore) {
+				best = i;
+				bestScore = score;
+			}
+		}
+		if (best < 0) {
+			long earliest = Long.MAX_VALUE;
+			for (int i = 0; i < this.targets.length; i++) {
+				if ((tried & (1L << i)) == 0 && this.targets[i].availableAt < earliest) {
+					best = i;
+					earliest = this.targets[i].availableAt;
+				}
+			}
+		}
+		return best;
+	}
+
+	@Override
+	public void start() {
+		if (this.warmConnections) {
+			CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("tcp-sink-warm-");
+			threadFactory.setDaemon(true);
+			this.warmer = Executors.newSingleThreadScheduledExecutor(threadFactory);
+		}
+		for (Target target : this.targets) {
+			target.handler.start();
+			AbstractConnectionFactory connectionFactory = target.handler.getConnectionFactory();
+			// a pool is warmed by its minimum connections
+			if (canWarm(connectionFactory) && !(connectionFactory instanceof CachingClientConnectionFactory)) {
+				warm(target);
+			}
+		}
+		this.running = true;
+	}
+
+	private boolean canWarm(AbstractConnectionFactory connectionFactory) {
+		return this.warmConnections && !(connectionFactory instanceof ThreadAffinityClientConnectionFactory)
+				&& (connectionFactory instanceof CachingClientConnectionFactory || !connectionFactory.isSingleUse());
+	}
+
+	private boolean warm(Target target) {
+		AbstractConnectionFactory connectionFactory = target.handler.getConnectionFactory();
+		try {
+			TcpConnection connection = connectionFactory.getConnection();
+			if (connectionFactory instanceof CachingClientConnectionFactory) {
+				// returns it to the pool
+				connection.close();
+			}
+			return true;
+		}
+		catch (Exception e) {
+			logger.warn("Failed to open a connection to " + target.name, e);
+			return false;
+		}
+	}
+
+	/*
+	 * Open the target's connection once its backoff has elapsed, unless already scheduled.
+	 */
+	private void scheduleWarm(Target target) {
+		ScheduledExecutorService warmer = this.warmer;
+		if (warmer != null && canWarm(target.handler.getConnectionFactory())
+				&& target.warming.compareAndSet(false, true)) {
+			try {
+				warmer.schedule(() -> rewarm(target), this.failoverBackoff, TimeUnit.MILLISECONDS);
+			}
+			catch (RejectedExecutionException e) {
+				// stopped
+				target.warming.set(false);
+			}
+		}
+	}
+
+	private void rewarm(Target target) {
+		target.warming.set(false);
+		if (!this.running) {
+			return;
+		}
+		if (warm(target)) {
+			if (logger.isInfoEnabled()) {
+				logger.info("Reconnected to " + target.name);
+			}
+		}
+		else {
+			target.failed(System.currentTimeMillis() + this.failoverBackoff);
+			scheduleWarm(target);
+		}
+	}
+
+	@Override
+	public void stop() {
+		this.running = false;
+		ScheduledExecutorService warmer = this.warmer;
+		if (warmer != null) {
+			warmer.shutdownNow();
+			this.warmer = null;
+		}
+		for (Target target : this.targets) {
+			target.handler.stop();
+		}
+	}
+
+	@Override
+	public boolean isRunning() {
+		return this.running;
+	}
+
+	private static final class Target {
+
+		private final String name;
+
+		private final TcpSendingMessageHandler handler;
+
+		private final MessageHandler sender;
+
+		private final AtomicInteger outstanding = new AtomicInteger();
+
+		private final AtomicLong sent = new AtomicLong();
+
+		private final AtomicLong failures = new AtomicLong();
+
+		private final AtomicBoolean warming = new AtomicBoolean();
+
+		private volatile double latency;
+
+		private volatile long availableAt;
+
+		Target(String name, TcpSendingMessageHandler handler, MessageHandler sender) {
+			this.name = name;
+			this.handler = handler;
+			this.sender = sender;
+		}
+
+		boolean isAvailable(long now) {
+			return this.availableAt <= now;
+		}
+
+		void sent(long nanos) {
+			this.sent.incrementAndGet();
+			this.availableAt = 0;
+			double latency = this.latency;
+			// racy updates lose the odd sample, which an average can afford
+			this.latency = latency == 0 ? nanos : latency + EWMA_WEIGHT * (nanos - latency);
+		}
+
+		void failed(long availableAt) {
+			this.failures.incrementAndGet();
+			this.availableAt = availableAt;
+		}
+
+	}
+
+}
@@ -15,10 +15,13 @@
  */
 package org.springframework.cloud.stream.app.tcp.sink;
 
+import javax.validation.constraints.AssertTrue;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.cloud.stream.app.tcp.Encoding;
+import org.springframework.util.ObjectUtils;
 import org.springframework.validation.annotation.Validated;
 
 /**
@@ -42,6 +45,16 @@ public class TcpSinkProperties {
 	 */
 	private Encoding encoder = Encoding.CRLF;
 
+	/**
+	 * The compression level (0-9, or -1 for the default) when the encoder is DEFLATE.
+	 */
+	private int compressionLevel = -1;
+
+	/**
+	 * The minimum message size to compress when the encoder is DEFLATE; smaller messages are sent as is.
+	 */
+	private int compressionThreshold = 256;
+
 	/**
 	 * The charset used when converting from bytes to String.
 	 */
@@ -52,7 +65,91 @@ public class TcpSinkProperties {
 	 */
 	private boolean close;
 
-	@NotNull
+	/**
+	 * The maximum number of pooled connections, each used by one send at a time; 0 for a single shared
+	 * connection. Pooled connections idle for 'socketTimeout' are closed and replaced when needed.
+	 */
+	private int poolSize;
+
+	/**
+	 * The number of pooled connections opened when the sink starts.
+	 */
+	private int poolMinConnections;
+
+	/**
+	 * The time (ms) to wait for a pooled connection when all are in use.
+	 */
+	private int poolWaitTimeout = 10000;
+
+	/**
+	 * Whether each sending thread keeps its own connection (taken from the pool, if any), so that
+	 * threads do not contend for connections.
+	 */
+	private boolean threadAffinity;
+
+	/**
+	 * The targets (host:port, or host for 'port') to which to send, instead of 'host'; each message is
+	 * sent to one of them, failing over to the others.
+	 */
+	private String[] hosts;
+
+	/**
+	 * How the target for each message is chosen when there are several 'hosts' (ROUND_ROBIN,
+	 * LEAST_OUTSTANDING, LATENCY).
+	 */
+	private LoadBalancing loadBalancing = LoadBalancing.ROUND_ROBIN;
+
+	/**
+	 * The time (ms) for which a target that failed is skipped, unless all targets have failed.
+	 */
+	private long failoverBackoff = 5000;
+
+	/**
+	 * Whether to open a connection to each of the 'hosts' when the sink starts, and to a failed target
+	 * when its backoff has elapsed, so that failing over does not wait for a connection; with a pool,
+	 * 'poolMinConnections' applies on start. Not applied with 'threadAffinity'.
+	 */
+	private boolean warmConnections = true;
+
+	/**
+	 * The maximum time (microseconds) for which encoded messages are collected on each connection
+	 * before being written together; 0 to write each message as it is sent. A send returns once its message is
+	 * written, so messages are only collected from concurrent senders on a connection: more than one of
+	 * 'asyncWriters' or of the consumer concurrency is required, and 'poolSize' and 'threadAffinity' cannot be used.
+	 */
+	private long coalesceDelay;
+
+	/**
+	 * The number of collected bytes at which coalesced messages are written.
+	 */
+	private int coalesceBytes = 16 * 1024;
+
+	/**
+	 * The number of collected messages at which coalesced messages are written; 0 for no limit.
+	 */
+	private int coalesceFrames;
+
+	/**
+	 * The maximum number of messages queued or being sent when messages are sent asynchronously
+	 * by writer threads; 0 to send each message on the binder's consumer thread.
+	 * The message is acknowledged to the binder when it is queued, so a message that cannot be sent is only
+	 * reported to the error channel and is not redelivered (at most once), unless the binder provides an
+	 * acknowledgment callback. Requires 'asyncAtMostOnce'.
+	 */
+	private int asyncMaxInFlight;
+
+	/**
+	 * Must be true to send asynchronously ('asyncMaxInFlight'), accepting that messages that cannot be sent
+	 * are lost unless the binder provides acknowledgment callbacks, which message-driven binders do not.
+	 */
+	private boolean asyncAtMostOnce;
+
+	/**
+	 * The number of writer threads when sending asynchronously; with more than one, messages may
+	 * be sent out of order.
+	 */
+	private int asyncWriters = 1;
+
 	public String getHost() {
 		return host;
 	}
@@ -70,6 +167,22 @@ public class TcpSinkProperties {
 		this.encoder = encoder;
 	}
 
+	public int getCompressionLevel() {
+		return this.compressionLevel;
+	}
+
+	public void setCompressionLevel(int compressionLevel) {
+		this.compressionLevel = compressionLevel;
+	}
+
+	public int getCompressionThreshold() {
+		return this.compressionThreshold;
+	}
+
+	public void setCompressionThreshold(int compressionThreshold) {
+		this.compressionThreshold = compressionThreshold;
+	}
+
 	@NotNull
 	public String getCharset() {
 		return charset;
@@ -87,4 +200,133 @@ public class TcpSinkProperties {
 		this.close = close;
 	}
 
+	public int getPoolSize() {
+		return this.poolSize;
+	}
+
+	public void setPoolSize(int poolSize) {
+		this.poolSize = poolSize;
+	}
+
+	public int getPoolMinConnections() {
+		return this.poolMinConnections;
+	}
+
+	public void setPoolMinConnections(int poolMinConnections) {
+		this.poolMinConnections = poolMinConnections;
+	}
+
+	@Min(0)
+	public int getPoolWaitTimeout() {
+		return this.poolWaitTimeout;
+	}
+
+	public void setPoolWaitTimeout(int poolWaitTimeout) {
+		this.poolWaitTimeout = poolWaitTimeout;
+	}
+
+	public boolean isThreadAffinity() {
+		return this.threadAffinity;
+	}
+
+	public void setThreadAffinity(boolean threadAffinity) {
+		this.threadAffinity = threadAffinity;
+	}
+
+	public String[] getHosts() {
+		return this.hosts;
+	}
+
+	public void setHosts(String[] hosts) {
+		this.hosts = hosts;
+	}
+
+	@NotNull
+	public LoadBalancing getLoadBalancing() {
+		return this.loadBalancing;
+	}
+
+	public void setLoadBalancing(LoadBalancing loadBalancing) {
+		this.loadBalancing = loadBalancing;
+	}
+
+	public long getFailoverBackoff() {
+		return this.failoverBackoff;
+	}
+
+	public void setFailoverBackoff(long failoverBackoff) {
+		this.failoverBackoff = failoverBackoff;
+	}
+
+	public boolean isWarmConnections() {
+		return this.warmConnections;
+	}
+
+	public void setWarmConnections(boolean warmConnections) {
+		this.warmConnections = warmConnections;
+	}
+
+	public long getCoalesceDelay() {
+		return this.coalesceDelay;
+	}
+
+	public void setCoalesceDelay(long coalesceDelay) {
+		this.coalesceDelay = coalesceDelay;
+	}
+
+	@Min(1)
+	public int getCoalesceBytes() {
+		return this.coalesceBytes;
+	}
+
+	public void setCoalesceBytes(int coalesceBytes) {
+		this.coalesceBytes = coalesceBytes;
+	}
+
+	@Min(0)
+	public int getCoalesceFrames() {
+		return this.coalesceFrames;
+	}
+
+	public void setCoalesceFrames(int coalesceFrames) {
+		this.coalesceFrames = coalesceFrames;
+	}
+
+	@Min(0)
+	public int getAsyncMaxInFlight() {
+		return this.asyncMaxInFlight;
+	}
+
+	public void setAsyncMaxInFlight(int asyncMaxInFlight) {
+		this.asyncMaxInFlight = asyncMaxInFlight;
+	}
+
+	public boolean isAsyncAtMostOnce() {
+		return this.asyncAtMostOnce;
+	}
+
+	public void setAsyncAtMostOnce(boolean asyncAtMostOnce) {
+		this.asyncAtMostOnce = asyncAtMostOnce;
+	}
+
+	@Min(1)
+	public int getAsyncWriters() {
+		return this.asyncWriters;
+	}
+
+	public void setAsyncWriters(int asyncWriters) {
+		this.asyncWriters = asyncWriters;
+	}
+
+	@AssertTrue(message = "'tcp.host' or 'tcp.hosts' is required")
+	public boolean isHostSet() {
+		return this.host != null || !ObjectUtils.isEmpty(this.hosts);
+	}
+
+	@AssertTrue(message = "'tcp.async-max-in-flight' loses messages that cannot be sent; "
+			+ "set 'tcp.async-at-most-once' to accept at-most-once delivery")
+	public boolean isAsyncDeliveryAccepted() {
+		return this.asyncMaxInFlight == 0 || this.asyncAtMostOnce;
+	}
+
 }
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.app.tcp.sink;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import org.springframework.messaging.MessageHandlingException;
+import org.springframework.messaging.support.GenericMessage;
+
+/**
+ * Tests for {@link AsyncSendingMessageHandler}.
+ */
+public class AsyncSendingMessageHandlerTests {
+
+	@Test
+	public void concurrentStop() throws Exception {
+		AtomicLong delivered = new AtomicLong();
+		AsyncSendingMessageHandler handler = new AsyncSendingMessageHandler(m -> delivered.incrementAndGet(), 10, 2);
+		handler.start();
+		AtomicLong accepted = new AtomicLong();
+		CountDownLatch sending = new CountDownLatch(4);
+		ExecutorService senders = Executors.newFixedThreadPool(4);
+		for (int i = 0; i < 4; i++) {
+			senders.execute(() -> {
+				sending.countDown();
+				while (true) {
+					try {
+						handler.handleMessage(new GenericMessage<>("foo"));
+						accepted.incrementAndGet();
+					}
+					catch (MessageHandlingException e) {
+						return;
+					}
+				}
+			});
+		}
+		assertTrue(sending.await(10, TimeUnit.SECONDS));
+		Thread.sleep(50);
+		handler.stop();
+		senders.shutdown();
+		assertTrue(senders.awaitTermination(10, TimeUnit.SECONDS));
+		assertEquals(accepted.get(), handler.getSent() + handler.getFailed());
+		assertEquals(delivered.get(), handler.getSent());
+		assertEquals(0, handler.getInFlight());
+	}
+
+}
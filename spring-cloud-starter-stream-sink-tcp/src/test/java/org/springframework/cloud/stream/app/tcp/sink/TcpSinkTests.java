@@ -18,9 +18,11 @@ package org.springframework.cloud.stream.app.tcp.sink;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.ServerSocket;
 import java.net.Socket;
@@ -43,12 +45,21 @@ import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cloud.stream.app.tcp.CoalescingSerializer;
+import org.springframework.cloud.stream.app.tcp.CoalescingStatistics;
+import org.springframework.cloud.stream.app.tcp.Crc32cFrameSerializer;
+import org.springframework.cloud.stream.app.tcp.DeflateFrameSerializer;
+import org.springframework.cloud.stream.app.tcp.HorspoolDelimitedFrameSerializer;
+import org.springframework.cloud.stream.app.tcp.VarintLengthHeaderFrameSerializer;
 import org.springframework.cloud.stream.messaging.Sink;
 import org.springframework.cloud.stream.test.binder.MessageCollector;
 import org.springframework.context.ApplicationContext;
+import org.springframework.integration.ip.tcp.TcpSendingMessageHandler;
 import org.springframework.integration.ip.tcp.connection.AbstractClientConnectionFactory;
+import org.springframework.integration.ip.tcp.connection.CachingClientConnectionFactory;
 import org.springframework.integration.ip.tcp.connection.TcpNetClientConnectionFactory;
 import org.springframework.integration.ip.tcp.connection.TcpNioClientConnectionFactory;
+import org.springframework.integration.ip.tcp.connection.ThreadAffinityClientConnectionFactory;
 import org.springframework.integration.ip.tcp.serializer.AbstractByteArraySerializer;
 import org.springframework.integration.ip.tcp.serializer.ByteArrayCrLfSerializer;
 import org.springframework.integration.ip.tcp.serializer.ByteArrayLengthHeaderSerializer;
@@ -201,6 +212,62 @@ public abstract class TcpSinkTests {
 
 	}
 
+	@TestPropertySource(properties = { "tcp.encoder = VARINT" })
+	public static class VARINTTests extends TcpSinkTests {
+
+		@Test
+		public void test() throws Exception {
+			doTest(new VarintLengthHeaderFrameSerializer());
+		}
+
+	}
+
+	@TestPropertySource(properties = { "tcp.encoder = DEFLATE", "tcp.compressionThreshold = 0" })
+	public static class DEFLATETests extends TcpSinkTests {
+
+		@Test
+		public void test() throws Exception {
+			doTest(new DeflateFrameSerializer());
+		}
+
+		@Test
+		public void compressed() throws Exception {
+			StringBuilder payload = new StringBuilder();
+			while (payload.length() < 2000) {
+				payload.append("foo bar ");
+			}
+			ByteArrayOutputStream frame = new ByteArrayOutputStream();
+			this.ctx.getBean("tcpSinkEncoder", DeflateFrameSerializer.class)
+					.serialize(payload.toString().getBytes(), frame);
+			assertEquals(1, frame.toByteArray()[4]);
+			assertThat(frame.size(), Matchers.lessThan(payload.length() / 10));
+			server.setDecoder(new DeflateFrameSerializer());
+			assertTrue(channels.input().send(new GenericMessage<>(payload.toString())));
+			assertEquals(payload.toString(), server.queue.poll(10, TimeUnit.SECONDS));
+		}
+
+	}
+
+	@TestPropertySource(properties = { "tcp.encoder = DELIMITER", "tcp.delimiter = \\r\\n\\r\\n" })
+	public static class DELIMITERTests extends TcpSinkTests {
+
+		@Test
+		public void test() throws Exception {
+			doTest(new HorspoolDelimitedFrameSerializer(new byte[] { '\r', '\n', '\r', '\n' }));
+		}
+
+	}
+
+	@TestPropertySource(properties = { "tcp.encoder = L4_CRC32C" })
+	public static class L4CRC32CTests extends TcpSinkTests {
+
+		@Test
+		public void test() throws Exception {
+			doTest(new Crc32cFrameSerializer());
+		}
+
+	}
+
 	@TestPropertySource(properties = { "tcp.encoder = RAW", "tcp.close = true" })
 	public static class RAWTests extends TcpSinkTests {
 
@@ -211,6 +278,120 @@ public abstract class TcpSinkTests {
 
 	}
 
+	@TestPropertySource(properties = { "tcp.poolSize = 1", "tcp.poolMinConnections = 1" })
+	public static class PoolTests extends TcpSinkTests {
+
+		@Autowired
+		private TcpSendingMessageHandler handler;
+
+		@Test
+		public void test() throws Exception {
+			assertThat(this.handler.getConnectionFactory(), Matchers.instanceOf(CachingClientConnectionFactory.class));
+			CachingClientConnectionFactory pool = (CachingClientConnectionFactory) this.handler.getConnectionFactory();
+			assertEquals(1, pool.getIdleCount());
+			doTest(new ByteArrayCrLfSerializer());
+			assertEquals(1, pool.getAllocatedCount());
+			assertEquals(1, pool.getIdleCount());
+		}
+
+	}
+
+	@TestPropertySource(properties = { "tcp.threadAffinity = true" })
+	public static class ThreadAffinityTests extends TcpSinkTests {
+
+		@Autowired
+		private TcpSendingMessageHandler handler;
+
+		@Test
+		public void test() throws Exception {
+			assertThat(this.handler.getConnectionFactory(),
+					Matchers.instanceOf(ThreadAffinityClientConnectionFactory.class));
+			assertTrue(this.connectionFactory.isSingleUse());
+			doTest(new ByteArrayCrLfSerializer());
+		}
+
+	}
+
+	@TestPropertySource(properties = { "tcp.hosts = localhost:1,localhost:${tcp.sink.test.port}",
+			"tcp.failoverBackoff = 60000" })
+	public static class LoadBalancerTests extends TcpSinkTests {
+
+		@Autowired
+		private TcpSinkLoadBalancer loadBalancer;
+
+		@Test
+		public void test() throws Exception {
+			assertEquals(1, this.connectionFactory.getPort());
+			doTest(new ByteArrayCrLfSerializer());
+			String[] targets = this.loadBalancer.getTargets();
+			assertThat(targets[0], Matchers.containsString("failures=1"));
+			assertThat(targets[0], Matchers.endsWith("down"));
+			assertThat(targets[1], Matchers.containsString("sent=2"));
+		}
+
+	}
+
+	@TestPropertySource(properties = { "tcp.hosts[0] = localhost:1", "tcp.hosts[1] = localhost:${tcp.sink.test.port}",
+			"tcp.failoverBackoff = 100" })
+	public static class IndexedHostsLoadBalancerTests extends TcpSinkTests {
+
+		@Autowired
+		private TcpSinkLoadBalancer loadBalancer;
+
+		@Test
+		public void test() throws Exception {
+			assertEquals(1, this.connectionFactory.getPort());
+			doTest(new ByteArrayCrLfSerializer());
+			// the failed target is reconnected in the background, without sends, and fails again
+			long failures = failures(this.loadBalancer.getTargets()[0]);
+			int n = 0;
+			while (n++ < 100 && failures(this.loadBalancer.getTargets()[0]) == failures) {
+				Thread.sleep(100);
+			}
+			assertThat(failures(this.loadBalancer.getTargets()[0]), Matchers.greaterThan(failures));
+		}
+
+		private static long failures(String target) {
+			return Long.parseLong(target.replaceAll(".* failures=(\\d+) .*", "$1"));
+		}
+
+	}
+
+	@TestPropertySource(properties = { "tcp.coalesceDelay = 10000", "tcp.coalesceFrames = 10",
+			"spring.cloud.stream.bindings.input.consumer.concurrency = 2" })
+	public static class CoalescingTests extends TcpSinkTests {
+
+		@Test
+		public void test() throws Exception {
+			assertThat(this.ctx.getBean("handler"), Matchers.instanceOf(CoalescedSendingMessageHandler.class));
+			CoalescingStatistics statistics = this.ctx.getBean(CoalescingStatistics.class);
+			assertSame(statistics, this.ctx.getBean("tcpSinkEncoder", CoalescingSerializer.class).getStatistics());
+			doTest(new ByteArrayCrLfSerializer());
+			assertEquals(2, statistics.getBatches());
+			assertEquals(2, statistics.getDeadlineFlushes());
+			assertEquals(1.0, statistics.getAverageBatchFrames(), 0);
+		}
+
+	}
+
+	@TestPropertySource(properties = { "tcp.asyncMaxInFlight = 10", "tcp.asyncAtMostOnce = true" })
+	public static class AsyncTests extends TcpSinkTests {
+
+		@Test
+		public void test() throws Exception {
+			AsyncSendingMessageHandler handler = this.ctx.getBean("handler", AsyncSendingMessageHandler.class);
+			assertThat(handler.getDelegate(), Matchers.instanceOf(TcpSendingMessageHandler.class));
+			doTest(new ByteArrayCrLfSerializer());
+			int n = 0;
+			while (n++ < 100 && handler.getSent() < 2) {
+				Thread.sleep(100);
+			}
+			assertEquals(2, handler.getSent());
+			assertEquals(0, handler.getInFlight());
+		}
+
+	}
+
 	/*
 	 * Sends two messages and asserts they arrive as expected on the other side using
 	 * the supplied decoder.
@@ -16,19 +16,44 @@
 
 package org.springframework.cloud.stream.app.tcp.client.source;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cloud.stream.annotation.EnableBinding;
+import org.springframework.cloud.stream.app.tcp.AbstractFrameSerializer;
+import org.springframework.cloud.stream.app.tcp.ChecksumFailureCounter;
+import org.springframework.cloud.stream.app.tcp.ConnectionExecutorFactoryBean;
 import org.springframework.cloud.stream.app.tcp.EncoderDecoderFactoryBean;
+import org.springframework.cloud.stream.app.tcp.FlowControlInterceptor;
+import org.springframework.cloud.stream.app.tcp.FrameBufferPool;
+import org.springframework.cloud.stream.app.tcp.FrameConnectionSupport;
+import org.springframework.cloud.stream.app.tcp.IdleConnectionTimingWheel;
+import org.springframework.cloud.stream.app.tcp.InboundTcpMessageMapper;
+import org.springframework.cloud.stream.app.tcp.ReverseLookupCache;
+import org.springframework.cloud.stream.app.tcp.ReverseLookupConnectionSupport;
+import org.springframework.cloud.stream.app.tcp.SegmentSpool;
+import org.springframework.cloud.stream.app.tcp.SpoolingOutputChannel;
 import org.springframework.cloud.stream.app.tcp.TcpConnectionFactoryProperties;
 import org.springframework.cloud.stream.messaging.Source;
 import org.springframework.context.annotation.Bean;
+import org.springframework.integration.annotation.ServiceActivator;
+import org.springframework.integration.config.GlobalChannelInterceptor;
 import org.springframework.integration.ip.config.TcpConnectionFactoryFactoryBean;
 import org.springframework.integration.ip.tcp.TcpReceivingChannelAdapter;
 import org.springframework.integration.ip.tcp.connection.AbstractConnectionFactory;
 import org.springframework.integration.ip.tcp.connection.TcpMessageMapper;
 import org.springframework.integration.ip.tcp.serializer.AbstractByteArraySerializer;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.util.StringUtils;
 
 /**
  * A source application that acts as a TCP client.
@@ -47,6 +72,12 @@ public class TcpClientSourceConfiguration {
 	@Autowired
 	private TcpConnectionFactoryProperties tcpConnectionProperties;
 
+	@Autowired
+	private ObjectProvider<ReverseLookupCache> reverseLookupCache;
+
+	@Autowired
+	private ObjectProvider<IdleConnectionTimingWheel> idleTimingWheel;
+
 	@Bean
 	public TcpReceivingChannelAdapter adapter(
 			@Qualifier("tcpClientConnectionFactory") AbstractConnectionFactory connectionFactory) {
@@ -54,14 +85,16 @@ public class TcpClientSourceConfiguration {
 		adapter.setConnectionFactory(connectionFactory);
 		adapter.setClientMode(true);
 		adapter.setRetryInterval(this.properties.getRetryInterval());
-		adapter.setOutputChannelName(Source.OUTPUT);
+		adapter.setOutputChannelName(StringUtils.hasText(this.properties.getSpoolDirectory())
+				? "tcpClientSpoolChannel" : Source.OUTPUT);
 		return adapter;
 	}
 
 	@Bean
 	public TcpConnectionFactoryFactoryBean tcpClientConnectionFactory(
 			@Qualifier("tcpClientMapper") TcpMessageMapper mapper,
-			@Qualifier("tcpClientDecoder") AbstractByteArraySerializer decoder) throws Exception {
+			@Qualifier("tcpClientDecoder") AbstractByteArraySerializer decoder,
+			@Qualifier("tcpClientExecutor") Executor executor) throws Exception {
 		TcpConnectionFactoryFactoryBean factoryBean = new TcpConnectionFactoryFactoryBean();
 		factoryBean.setType("client");
 		factoryBean.setHost(this.properties.getHost());
@@ -69,23 +102,124 @@ public class TcpClientSourceConfiguration {
 		factoryBean.setUsingNio(this.tcpConnectionProperties.isNio());
 		factoryBean.setUsingDirectBuffers(this.tcpConnectionProperties.isUseDirectBuffers());
 		factoryBean.setLookupHost(this.tcpConnectionProperties.isReverseLookup());
+		ReverseLookupCache reverseLookupCache = this.reverseLookupCache.getIfAvailable();
+		// the frame serializers read blocking connections in bulk through a buffered stream
+		boolean bufferedInput = decoder instanceof AbstractFrameSerializer;
+		// with NIO, data read while flow control pauses a connection waits in its pipe
+		boolean flowControlNio = this.tcpConnectionProperties.isNio()
+				&& (this.properties.getHighWatermark() > 0 || this.properties.getConnectionHighWatermark() > 0);
+		if (reverseLookupCache != null || bufferedInput || flowControlNio) {
+			FrameConnectionSupport connectionSupport = reverseLookupCache != null
+					? new ReverseLookupConnectionSupport(reverseLookupCache) : new FrameConnectionSupport();
+			connectionSupport.setBufferedInput(bufferedInput);
+			if (flowControlNio) {
+				connectionSupport.setPipeTimeout(FrameConnectionSupport.DEFAULT_PIPE_TIMEOUT
+						+ this.properties.getFlowControlMaxPause());
+			}
+			factoryBean.setNetConnectionSupport(connectionSupport);
+			factoryBean.setNioConnectionSupport(connectionSupport);
+		}
 		factoryBean.setDeserializer(decoder);
-		factoryBean.setSoTimeout(this.tcpConnectionProperties.getSocketTimeout());
+		// the timing wheel, if any, closes idle connections instead of the factory
+		factoryBean.setSoTimeout(this.idleTimingWheel.getIfAvailable() != null ? 0
+				: this.tcpConnectionProperties.getSocketTimeout());
+		factoryBean.setTaskExecutor(executor);
 		factoryBean.setMapper(mapper);
 		return factoryBean;
 	}
 
 	@Bean
 	public TcpMessageMapper tcpClientMapper() {
-		TcpMessageMapper mapper = new TcpMessageMapper();
+		InboundTcpMessageMapper mapper = new InboundTcpMessageMapper();
 		mapper.setCharset(this.properties.getCharset());
+		mapper.setPayloadType(this.properties.getPayloadType());
+		if (this.properties.getLeanHeaders() != null) {
+			mapper.setLeanHeaders(Arrays.asList(this.properties.getLeanHeaders()));
+		}
 		return mapper;
 	}
 
 	@Bean
-	public EncoderDecoderFactoryBean tcpClientDecoder() {
+	public ConnectionExecutorFactoryBean tcpClientExecutor() {
+		return new ConnectionExecutorFactoryBean(this.tcpConnectionProperties, "tcp-client-");
+	}
+
+	@Bean
+	@ConditionalOnExpression("${tcp.reverse-lookup:false}")
+	public ReverseLookupCache tcpClientReverseLookupCache() {
+		return new ReverseLookupCache(this.tcpConnectionProperties.getReverseLookupCacheSize(),
+				this.tcpConnectionProperties.getReverseLookupTtl(),
+				this.tcpConnectionProperties.getReverseLookupNegativeTtl());
+	}
+
+	@Bean
+	@ConditionalOnExpression("${tcp.idle-timing-wheel:false} and ${tcp.nio:false} "
+			+ "and ${tcp.socket-timeout:120000} > 0")
+	public IdleConnectionTimingWheel tcpClientIdleTimingWheel() {
+		return new IdleConnectionTimingWheel(this.tcpConnectionProperties.getSocketTimeout());
+	}
+
+	@Bean
+	@GlobalChannelInterceptor(patterns = Source.OUTPUT)
+	@ConditionalOnExpression("${tcp.high-watermark:0} > 0 or ${tcp.connection-high-watermark:0} > 0")
+	public FlowControlInterceptor tcpClientFlowControl() {
+		FlowControlInterceptor flowControl = new FlowControlInterceptor(this.properties.getHighWatermark(),
+				this.properties.getLowWatermark(), this.properties.getConnectionHighWatermark(),
+				this.properties.getConnectionLowWatermark());
+		if (StringUtils.hasText(this.properties.getFlowControlConfirmChannel())) {
+			flowControl.setConfirmTimeout(this.properties.getFlowControlConfirmTimeout());
+		}
+		if (this.tcpConnectionProperties.isNio()) {
+			// the paused thread is the assembler, so the pause must end before the reader's pipe times out
+			flowControl.setMaxPause(this.properties.getFlowControlMaxPause());
+		}
+		return flowControl;
+	}
+
+	@Bean
+	@ServiceActivator(inputChannel = "${tcp.flow-control-confirm-channel}")
+	@ConditionalOnExpression("(${tcp.high-watermark:0} > 0 or ${tcp.connection-high-watermark:0} > 0) "
+			+ "and '${tcp.flow-control-confirm-channel:}' != ''")
+	public MessageHandler tcpClientFlowControlConfirmer(
+			@Qualifier("tcpClientFlowControl") FlowControlInterceptor flowControl) {
+		return flowControl::confirm;
+	}
+
+	@Bean
+	@ConditionalOnExpression("'${tcp.spool-directory:}' != ''")
+	public SegmentSpool tcpClientSpool() throws IOException {
+		return new SegmentSpool(new File(this.properties.getSpoolDirectory()), this.properties.getSpoolSegmentSize(),
+				this.properties.getSpoolMaxBytes(), this.properties.getSpoolFsync());
+	}
+
+	@Bean
+	@ConditionalOnExpression("'${tcp.spool-directory:}' != ''")
+	public SpoolingOutputChannel tcpClientSpoolChannel(@Qualifier(Source.OUTPUT) MessageChannel output,
+			@Qualifier("tcpClientSpool") SegmentSpool spool) {
+		SpoolingOutputChannel channel = new SpoolingOutputChannel(output, spool,
+				this.properties.getSpoolRetryInterval());
+		channel.setMaxAttempts(this.properties.getSpoolMaxAttempts());
+		return channel;
+	}
+
+	@Bean
+	@ConditionalOnProperty(prefix = "tcp", name = "decoder", havingValue = "L4_CRC32C")
+	public ChecksumFailureCounter tcpClientChecksumFailureCounter() {
+		return new ChecksumFailureCounter();
+	}
+
+	@Bean
+	public EncoderDecoderFactoryBean tcpClientDecoder(ObjectProvider<ChecksumFailureCounter> checksumFailureCounter) {
 		EncoderDecoderFactoryBean factoryBean = new EncoderDecoderFactoryBean(this.properties.getDecoder());
+		factoryBean.setChecksumFailureCounter(checksumFailureCounter.getIfAvailable());
+		factoryBean.setDelimiter(this.tcpConnectionProperties.getDelimiter());
 		factoryBean.setMaxMessageSize(this.properties.getBufferSize());
+		factoryBean.setInPlaceDecoding(this.properties.isInPlaceDecoding());
+		factoryBean.setDelimiterScan(this.properties.getDelimiterScan());
+		factoryBean.setBufferPool(new FrameBufferPool(this.properties.getBufferPoolSize(),
+				this.properties.getBufferPoolMaxRetained()));
+		factoryBean.setStreaming(this.properties.isStreaming());
+		factoryBean.setMaxFrameSize(this.properties.getMaxFrameSize());
 		return factoryBean;
 	}
 
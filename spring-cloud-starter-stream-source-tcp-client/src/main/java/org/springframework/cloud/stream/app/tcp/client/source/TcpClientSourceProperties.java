@@ -16,10 +16,14 @@
 
 package org.springframework.cloud.stream.app.tcp.client.source;
 
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.cloud.stream.app.tcp.DelimiterScan;
 import org.springframework.cloud.stream.app.tcp.Encoding;
+import org.springframework.cloud.stream.app.tcp.FsyncPolicy;
+import org.springframework.cloud.stream.app.tcp.PayloadType;
 import org.springframework.validation.annotation.Validated;
 
 /**
@@ -48,16 +52,138 @@ public class TcpClientSourceProperties {
 	 */
 	private int bufferSize = 2048;
 
+	/**
+	 * Whether to decode in a reused buffer and copy each message out once at its exact size,
+	 * rather than allocating a buffer of 'bufferSize' for every message.
+	 */
+	private boolean inPlaceDecoding;
+
+	/**
+	 * How the delimiter-based decoders (CRLF, LF, NULL, STXETX) search for the end of a message;
+	 * SWAR examines eight bytes at a time on blocking (not NIO) connections and implies in place decoding.
+	 */
+	private DelimiterScan delimiterScan = DelimiterScan.BYTE;
+
+	/**
+	 * When decoding in place, the maximum number of working buffers retained for reuse per size class.
+	 */
+	private int bufferPoolSize = 16;
+
+	/**
+	 * When decoding in place, the maximum number of bytes retained for reuse across all size classes.
+	 */
+	private long bufferPoolMaxRetained = 16 * 1024 * 1024;
+
+	/**
+	 * Whether to deliver messages larger than 'bufferSize' as a sequence of chunks, with correlation
+	 * and sequence headers, rather than rejecting them; not supported by the DEFLATE and L4_CRC32C decoders.
+	 */
+	private boolean streaming;
+
+	/**
+	 * When streaming, the maximum total size of a message delivered in chunks; 0 for no limit.
+	 */
+	private long maxFrameSize;
+
+	/**
+	 * The total number of messages in flight to the binder at which reading from all connections
+	 * pauses; 0 for no limit.
+	 */
+	private int highWatermark;
+
+	/**
+	 * The total number of messages in flight at which reading resumes; 0 for half the high watermark.
+	 */
+	private int lowWatermark;
+
+	/**
+	 * The number of messages in flight to the binder from a connection at which reading from that
+	 * connection pauses; 0 for no limit.
+	 */
+	private int connectionHighWatermark;
+
+	/**
+	 * The number of messages in flight from a connection at which reading from it resumes; 0 for half
+	 * the connection high watermark.
+	 */
+	private int connectionLowWatermark;
+
+	/**
+	 * The name of a channel to which the binder sends a confirmation of each message it has sent
+	 * (such as the Kafka binder's recordMetadataChannel or the Rabbit binder's confirmAckChannel);
+	 * when set, messages count towards the watermarks until they are confirmed, rather than only
+	 * while they are being sent.
+	 */
+	private String flowControlConfirmChannel;
+
+	/**
+	 * The time (ms) after which a message that has not been confirmed no longer counts towards
+	 * the watermarks.
+	 */
+	private long flowControlConfirmTimeout = 30000;
+
+	/**
+	 * With NIO, the maximum time (ms) for which reading a connection pauses for flow control; the
+	 * message is then sent even though the watermark is still exceeded. The connections' pipe timeout
+	 * is raised by the same amount, so that a paused connection is not closed while its data waits.
+	 */
+	private long flowControlMaxPause = 30000;
+
 	/**
 	 * The charset used when converting from bytes to String.
 	 */
 	private String charset = "UTF-8";
 
+	/**
+	 * The type of the payload of received messages; STRING payloads are decoded with 'charset'.
+	 */
+	private PayloadType payloadType = PayloadType.BYTES;
+
+	/**
+	 * The connection headers to add to each message (ip_connectionId, ip_address, ip_hostname,
+	 * ip_tcp_remotePort, ip_localInetAddress), computed once per connection; all the standard
+	 * headers when not set.
+	 */
+	private String[] leanHeaders;
+
 	/**
 	 * Retry interval (in milliseconds) to check the connection and reconnect.
 	 */
 	private long retryInterval = 60000;
 
+	/**
+	 * A directory in which to spool messages while the binder cannot accept them; they are sent, in
+	 * order, when it recovers. No spooling when not set.
+	 */
+	private String spoolDirectory;
+
+	/**
+	 * The size of each memory-mapped spool segment file; the maximum size of a spooled message is
+	 * 5 bytes less.
+	 */
+	private int spoolSegmentSize = 64 * 1024 * 1024;
+
+	/**
+	 * The maximum total size of the spool segment files; messages that do not fit are rejected.
+	 */
+	private long spoolMaxBytes = 1024L * 1024 * 1024;
+
+	/**
+	 * When spooled messages are forced to disk (NEVER, SEGMENT, ALWAYS).
+	 */
+	private FsyncPolicy spoolFsync = FsyncPolicy.SEGMENT;
+
+	/**
+	 * The time (ms) to wait before retrying to send a spooled message.
+	 */
+	private long spoolRetryInterval = 1000;
+
+	/**
+	 * The number of attempts to send a spooled message after which it is discarded, so that it
+	 * does not hold back those behind it; 0 to retry until it is sent.
+	 */
+	private int spoolMaxAttempts;
+
 	@NotNull
 	public String getHost() {
 		return host;
@@ -84,6 +210,39 @@ public class TcpClientSourceProperties {
 		this.bufferSize = bufferSize;
 	}
 
+	public boolean isInPlaceDecoding() {
+		return this.inPlaceDecoding;
+	}
+
+	public void setInPlaceDecoding(boolean inPlaceDecoding) {
+		this.inPlaceDecoding = inPlaceDecoding;
+	}
+
+	@NotNull
+	public DelimiterScan getDelimiterScan() {
+		return this.delimiterScan;
+	}
+
+	public void setDelimiterScan(DelimiterScan delimiterScan) {
+		this.delimiterScan = delimiterScan;
+	}
+
+	public int getBufferPoolSize() {
+		return this.bufferPoolSize;
+	}
+
+	public void setBufferPoolSize(int bufferPoolSize) {
+		this.bufferPoolSize = bufferPoolSize;
+	}
+
+	public long getBufferPoolMaxRetained() {
+		return this.bufferPoolMaxRetained;
+	}
+
+	public void setBufferPoolMaxRetained(long bufferPoolMaxRetained) {
+		this.bufferPoolMaxRetained = bufferPoolMaxRetained;
+	}
+
 	public String getCharset() {
 		return this.charset;
 	}
@@ -100,4 +259,144 @@ public class TcpClientSourceProperties {
 		this.retryInterval = retryInterval;
 	}
 
+	public boolean isStreaming() {
+		return this.streaming;
+	}
+
+	public void setStreaming(boolean streaming) {
+		this.streaming = streaming;
+	}
+
+	public long getMaxFrameSize() {
+		return this.maxFrameSize;
+	}
+
+	public void setMaxFrameSize(long maxFrameSize) {
+		this.maxFrameSize = maxFrameSize;
+	}
+
+	public int getHighWatermark() {
+		return this.highWatermark;
+	}
+
+	public void setHighWatermark(int highWatermark) {
+		this.highWatermark = highWatermark;
+	}
+
+	public int getLowWatermark() {
+		return this.lowWatermark;
+	}
+
+	public void setLowWatermark(int lowWatermark) {
+		this.lowWatermark = lowWatermark;
+	}
+
+	public int getConnectionHighWatermark() {
+		return this.connectionHighWatermark;
+	}
+
+	public void setConnectionHighWatermark(int connectionHighWatermark) {
+		this.connectionHighWatermark = connectionHighWatermark;
+	}
+
+	public int getConnectionLowWatermark() {
+		return this.connectionLowWatermark;
+	}
+
+	public void setConnectionLowWatermark(int connectionLowWatermark) {
+		this.connectionLowWatermark = connectionLowWatermark;
+	}
+
+	public String getFlowControlConfirmChannel() {
+		return this.flowControlConfirmChannel;
+	}
+
+	public void setFlowControlConfirmChannel(String flowControlConfirmChannel) {
+		this.flowControlConfirmChannel = flowControlConfirmChannel;
+	}
+
+	public long getFlowControlConfirmTimeout() {
+		return this.flowControlConfirmTimeout;
+	}
+
+	public void setFlowControlConfirmTimeout(long flowControlConfirmTimeout) {
+		this.flowControlConfirmTimeout = flowControlConfirmTimeout;
+	}
+
+	public long getFlowControlMaxPause() {
+		return this.flowControlMaxPause;
+	}
+
+	public void setFlowControlMaxPause(long flowControlMaxPause) {
+		this.flowControlMaxPause = flowControlMaxPause;
+	}
+
+	public String[] getLeanHeaders() {
+		return this.leanHeaders;
+	}
+
+	public void setLeanHeaders(String[] leanHeaders) {
+		this.leanHeaders = leanHeaders;
+	}
+
+	@NotNull
+	public PayloadType getPayloadType() {
+		return this.payloadType;
+	}
+
+	public void setPayloadType(PayloadType payloadType) {
+		this.payloadType = payloadType;
+	}
+
+	public String getSpoolDirectory() {
+		return this.spoolDirectory;
+	}
+
+	public void setSpoolDirectory(String spoolDirectory) {
+		this.spoolDirectory = spoolDirectory;
+	}
+
+	@Min(6)
+	public int getSpoolSegmentSize() {
+		return this.spoolSegmentSize;
+	}
+
+	public void setSpoolSegmentSize(int spoolSegmentSize) {
+		this.spoolSegmentSize = spoolSegmentSize;
+	}
+
+	public long getSpoolMaxBytes() {
+		return this.spoolMaxBytes;
+	}
+
+	public void setSpoolMaxBytes(long spoolMaxBytes) {
+		this.spoolMaxBytes = spoolMaxBytes;
+	}
+
+	@NotNull
+	public FsyncPolicy getSpoolFsync() {
+		return this.spoolFsync;
+	}
+
+	public void setSpoolFsync(FsyncPolicy spoolFsync) {
+		this.spoolFsync = spoolFsync;
+	}
+
+	@Min(1)
+	public long getSpoolRetryInterval() {
+		return this.spoolRetryInterval;
+	}
+
+	public void setSpoolRetryInterval(long spoolRetryInterval) {
+		this.spoolRetryInterval = spoolRetryInterval;
+	}
+
+	public int getSpoolMaxAttempts() {
+		return this.spoolMaxAttempts;
+	}
+
+	public void setSpoolMaxAttempts(int spoolMaxAttempts) {
+		this.spoolMaxAttempts = spoolMaxAttempts;
+	}
+
 }
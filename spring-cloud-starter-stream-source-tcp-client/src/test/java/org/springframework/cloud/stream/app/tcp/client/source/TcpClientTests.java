@@ -19,11 +19,13 @@ package org.springframework.cloud.stream.app.tcp.client.source;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
 import java.io.OutputStream;
 import java.net.ServerSocket;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
 
 import javax.net.ServerSocketFactory;
@@ -37,9 +39,11 @@ import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cloud.stream.app.tcp.InboundTcpMessageMapper;
 import org.springframework.cloud.stream.messaging.Source;
 import org.springframework.cloud.stream.test.binder.MessageCollector;
 import org.springframework.context.annotation.Import;
+import org.springframework.integration.IntegrationMessageHeaderAccessor;
 import org.springframework.integration.ip.tcp.connection.AbstractConnectionFactory;
 import org.springframework.integration.ip.tcp.connection.TcpNioClientConnectionFactory;
 import org.springframework.integration.ip.tcp.serializer.ByteArrayLfSerializer;
@@ -120,6 +124,46 @@ public abstract class TcpClientTests {
 
 	}
 
+	@TestPropertySource(properties = "tcp.payloadType = STRING")
+	public static class StringPayloadTests extends TcpClientTests {
+
+		@Test
+		public void testOutput() throws Exception {
+			OutputStream outputStream = serverSocket.accept().getOutputStream();
+			outputStream.write("Test\u00e9\r\n".getBytes("UTF-8"));
+			Message<?> message = messageCollector.forChannel(source.output()).poll(5000, TimeUnit.MILLISECONDS);
+			assertNotNull(message);
+			assertEquals("Test\u00e9", message.getPayload());
+		}
+
+	}
+
+	@TestPropertySource(properties = { "tcp.decoder = LF", "tcp.bufferSize = 4", "tcp.streaming = true",
+			"tcp.nio = true" })
+	public static class StreamingTests extends TcpClientTests {
+
+		@Test
+		public void testOutput() throws Exception {
+			OutputStream outputStream = serverSocket.accept().getOutputStream();
+			outputStream.write("foo\nfoo bar\n".getBytes());
+			BlockingQueue<Message<?>> messages = messageCollector.forChannel(source.output());
+			Message<?> message = messages.poll(5000, TimeUnit.MILLISECONDS);
+			assertEquals("foo", new String((byte[]) message.getPayload()));
+			assertNull(message.getHeaders().get(IntegrationMessageHeaderAccessor.SEQUENCE_NUMBER));
+			message = messages.poll(5000, TimeUnit.MILLISECONDS);
+			assertEquals("foo ", new String((byte[]) message.getPayload()));
+			assertEquals(1, message.getHeaders().get(IntegrationMessageHeaderAccessor.SEQUENCE_NUMBER));
+			assertEquals(false, message.getHeaders().get(InboundTcpMessageMapper.LAST_CHUNK));
+			Object correlationId = message.getHeaders().get(IntegrationMessageHeaderAccessor.CORRELATION_ID);
+			message = messages.poll(5000, TimeUnit.MILLISECONDS);
+			assertEquals("bar", new String((byte[]) message.getPayload()));
+			assertEquals(2, message.getHeaders().get(IntegrationMessageHeaderAccessor.SEQUENCE_SIZE));
+			assertEquals(true, message.getHeaders().get(InboundTcpMessageMapper.LAST_CHUNK));
+			assertEquals(correlationId, message.getHeaders().get(IntegrationMessageHeaderAccessor.CORRELATION_ID));
+		}
+
+	}
+
 	@SpringBootApplication
 	@Import(TcpClientSourceConfiguration.class)
 	public static class TcpClientApplication {
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.app.tcp.source;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import javax.net.ServerSocketFactory;
+import javax.net.SocketFactory;
+
+import org.springframework.integration.ip.tcp.connection.TcpSocketFactorySupport;
+
+/**
+ * Socket factory support for blocking server connection factories, whose server sockets
+ * submit each accepted socket to a {@link TcpSourceAdmissionControl} before returning it.
+ * A rejected socket is reset and closed inside {@code accept()}, so the connection
+ * factory never sees it and no connection is created for it. NIO server connection
+ * factories open their own channels, so admission control is not available with NIO.
+ */
+public class AdmissionControlSocketSupport implements TcpSocketFactorySupport {
+
+	private static final int DEFAULT_BACKLOG = 50;
+
+	private final TcpSourceAdmissionControl admissionControl;
+
+	private final ReusePortSocketSupport reusePort;
+
+	private final ServerSocketFactory serverSocketFactory = new AdmissionControlServerSocketFactory();
+
+	/**
+	 * Construct an instance.
+	 * @param admissionControl the admission control.
+	 * @param reusePort the socket support enabling {@code SO_REUSEPORT} on the server
+	 * sockets, or null.
+	 */
+	public AdmissionControlSocketSupport(TcpSourceAdmissionControl admissionControl,
+			ReusePortSocketSupport reusePort) {
+
+		this.admissionControl = admissionControl;
+		this.reusePort = reusePort;
+	}
+
+	@Override
+	public ServerSocketFactory getServerSocketFactory() {
+		return this.serverSocketFactory;
+	}
+
+	@Override
+	public SocketFactory getSocketFactory() {
+		return SocketFactory.getDefault();
+	}
+
+	private final class AdmissionControlServerSocketFactory extends ServerSocketFactory {
+
+		@Override
+		public ServerSocket createServerSocket() throws IOException {
+			ServerSocket serverSocket = new AdmissionControlServerSocket();
+			if (AdmissionControlSocketSupport.this.reusePort != null) {
+				AdmissionControlSocketSupport.this.reusePort.reusePort(serverSocket);
+			}
+			return serverSocket;
+		}
+
+		@Override
+		public ServerSocket createServerSocket(int port) throws IOException {
+			return createServerSocket(port, DEFAULT_BACKLOG, null);
+		}
+
+		@Override
+		public ServerSocket createServerSocket(int port, int backlog) throws IOException {
+			return createServerSocket(port, backlog, null);
+		}
+
+		@Override
+		public ServerSocket createServerSocket(int port, int backlog, InetAddress address) throws IOException {
+			ServerSocket serverSocket = createServerSocket();
+			try {
+				serverSocket.bind(new InetSocketAddress(address, port), backlog);
+			}
+			catch (IOException e) {
+				serverSocket.close();
+				throw e;
+			}
+			return serverSocket;
+		}
+
+	}
+
+	private final class AdmissionControlServerSocket extends ServerSocket {
+
+		AdmissionControlServerSocket() throws IOException {
+			super();
+		}
+
+		@Override
+		public Socket accept() throws IOException {
+			while (true) {
+				Socket socket = super.accept();
+				if (AdmissionControlSocketSupport.this.admissionControl.admit(socket)) {
+					return socket;
+				}
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.app.tcp.source;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+
+import org.springframework.integration.aggregator.AbstractAggregatingMessageGroupProcessor;
+import org.springframework.integration.store.MessageGroup;
+import org.springframework.messaging.Message;
+
+/**
+ * Combines a batch of frames received on a connection into a single payload, each frame
+ * preceded by its length as a four byte big-endian integer (the same layout as the
+ * {@code L4} encoding).
+ */
+public class FrameBatchMessageGroupProcessor extends AbstractAggregatingMessageGroupProcessor {
+
+	@Override
+	protected Object aggregatePayloads(MessageGroup group, Map<String, Object> defaultHeaders) {
+		Collection<Message<?>> messages = group.getMessages();
+		byte[][] frames = new byte[messages.size()][];
+		int length = 0;
+		int i = 0;
+		for (Message<?> message : messages) {
+			Object payload = message.getPayload();
+			byte[] frame = payload instanceof byte[]
+					? (byte[]) payload
+					: payload.toString().getBytes(StandardCharsets.UTF_8);
+			frames[i++] = frame;
+			length += Integer.BYTES + frame.length;
+		}
+		ByteBuffer batch = ByteBuffer.allocate(length);
+		for (byte[] frame : frames) {
+			batch.putInt(frame.length).put(frame);
+		}
+		return batch.array();
+	}
+
+}
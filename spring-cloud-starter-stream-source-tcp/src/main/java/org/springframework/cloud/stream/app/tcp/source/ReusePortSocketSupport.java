@@ -0,0 +1,134 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.app.tcp.source;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.SocketOption;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ServerSocketChannel;
+
+import javax.net.ServerSocketFactory;
+import javax.net.SocketFactory;
+
+import org.springframework.integration.ip.tcp.connection.DefaultTcpSocketSupport;
+import org.springframework.integration.ip.tcp.connection.TcpSocketFactorySupport;
+
+/**
+ * Socket support that enables {@code SO_REUSEPORT} on server sockets before they are
+ * bound, so that several server connection factories can listen on the same port and
+ * the kernel can spread incoming connections across them. For NIO, the option is set
+ * on the channel; for blocking sockets, the server socket factory creates and binds the
+ * socket itself. Requires Java 9 or later and an operating system supporting the option.
+ */
+public class ReusePortSocketSupport extends DefaultTcpSocketSupport implements TcpSocketFactorySupport {
+
+	private static final int DEFAULT_BACKLOG = 50;
+
+	private final SocketOption<Boolean> reusePort;
+
+	private final Method setOption;
+
+	private final ServerSocketFactory serverSocketFactory = new ReusePortServerSocketFactory();
+
+	@SuppressWarnings("unchecked")
+	public ReusePortSocketSupport() {
+		try {
+			this.reusePort = (SocketOption<Boolean>) StandardSocketOptions.class.getField("SO_REUSEPORT").get(null);
+			this.setOption = ServerSocket.class.getMethod("setOption", SocketOption.class, Object.class);
+		}
+		catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("SO_REUSEPORT requires Java 9 or later", e);
+		}
+	}
+
+	@Override
+	public void postProcessServerSocket(ServerSocket serverSocket) {
+		super.postProcessServerSocket(serverSocket);
+		ServerSocketChannel channel = serverSocket.getChannel();
+		if (channel != null) {
+			try {
+				channel.setOption(this.reusePort, true);
+			}
+			catch (IOException e) {
+				throw new IllegalStateException("Failed to set SO_REUSEPORT", e);
+			}
+		}
+	}
+
+	/**
+	 * Enable {@code SO_REUSEPORT} on an unbound blocking server socket; the socket is
+	 * closed if the option cannot be set.
+	 * @param serverSocket the server socket.
+	 * @throws IOException if the option cannot be set.
+	 */
+	void reusePort(ServerSocket serverSocket) throws IOException {
+		try {
+			this.setOption.invoke(serverSocket, this.reusePort, Boolean.TRUE);
+		}
+		catch (InvocationTargetException e) {
+			serverSocket.close();
+			throw new IOException("Failed to set SO_REUSEPORT", e.getCause());
+		}
+		catch (IllegalAccessException e) {
+			serverSocket.close();
+			throw new IOException("Failed to set SO_REUSEPORT", e);
+		}
+	}
+
+	@Override
+	public ServerSocketFactory getServerSocketFactory() {
+		return this.serverSocketFactory;
+	}
+
+	@Override
+	public SocketFactory getSocketFactory() {
+		return SocketFactory.getDefault();
+	}
+
+	private final class ReusePortServerSocketFactory extends ServerSocketFactory {
+
+		@Override
+		public ServerSocket createServerSocket() throws IOException {
+			ServerSocket serverSocket = new ServerSocket();
+			reusePort(serverSocket);
+			return serverSocket;
+		}
+
+		@Override
+		public ServerSocket createServerSocket(int port) throws IOException {
+			return createServerSocket(port, DEFAULT_BACKLOG, null);
+		}
+
+		@Override
+		public ServerSocket createServerSocket(int port, int backlog) throws IOException {
+			return createServerSocket(port, backlog, null);
+		}
+
+		@Override
+		public ServerSocket createServerSocket(int port, int backlog, InetAddress address) throws IOException {
+			ServerSocket serverSocket = createServerSocket();
+			serverSocket.bind(new InetSocketAddress(address, port), backlog);
+			return serverSocket;
+		}
+
+	}
+
+}
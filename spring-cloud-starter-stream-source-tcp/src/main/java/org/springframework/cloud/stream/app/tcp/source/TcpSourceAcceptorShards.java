@@ -0,0 +1,176 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.app.tcp.source;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.integration.ip.tcp.TcpReceivingChannelAdapter;
+import org.springframework.integration.ip.tcp.connection.AbstractServerConnectionFactory;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+/**
+ * Starts additional server connection factories (shards), each with its own acceptor
+ * and, for NIO, its own selector thread, listening on the same port as the primary
+ * factory with {@code SO_REUSEPORT}; each shard sends to the same channel as the
+ * primary adapter. Shards are started once the primary factory is listening, so that
+ * they can share a port chosen by the operating system.
+ */
+@ManagedResource
+public class TcpSourceAcceptorShards implements SmartLifecycle, BeanFactoryAware {
+
+	private static final Log logger = LogFactory.getLog(TcpSourceAcceptorShards.class);
+
+	private static final long LISTEN_TIMEOUT = 10_000;
+
+	private final AbstractServerConnectionFactory primary;
+
+	private final int shards;
+
+	private final IntFunction<AbstractServerConnectionFactory> factoryCreator;
+
+	private final String outputChannelName;
+
+	private final List<AbstractServerConnectionFactory> factories = new ArrayList<>();
+
+	private final List<TcpReceivingChannelAdapter> adapters = new ArrayList<>();
+
+	private BeanFactory beanFactory;
+
+	private volatile boolean running;
+
+	/**
+	 * Construct an instance.
+	 * @param primary the primary connection factory.
+	 * @param shards the number of additional factories.
+	 * @param factoryCreator creates a (configured and initialized) factory for a port.
+	 * @param outputChannelName the channel to which the shards send messages.
+	 */
+	public TcpSourceAcceptorShards(AbstractServerConnectionFactory primary, int shards,
+			IntFunction<AbstractServerConnectionFactory> factoryCreator, String outputChannelName) {
+
+		this.primary = primary;
+		this.shards = shards;
+		this.factoryCreator = factoryCreator;
+		this.outputChannelName = outputChannelName;
+	}
+
+	@Override
+	public void setBeanFactory(BeanFactory beanFactory) throws BeansException {
+		this.beanFactory = beanFactory;
+	}
+
+	/**
+	 * Return the number of open connections on each shard, the primary first.
+	 * @return the connection counts.
+	 */
+	@ManagedAttribute(description = "Open connections per acceptor shard, the primary first")
+	public int[] getConnectionCounts() {
+		List<AbstractServerConnectionFactory> all = new ArrayList<>();
+		all.add(this.primary);
+		synchronized (this.factories) {
+			all.addAll(this.factories);
+		}
+		int[] counts = new int[all.size()];
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] = all.get(i).getOpenConnectionIds().size();
+		}
+		return counts;
+	}
+
+	@Override
+	public void start() {
+		synchronized (this.factories) {
+			if (this.running) {
+				return;
+			}
+			int port = awaitPrimaryPort();
+			for (int i = 0; i < this.shards; i++) {
+				AbstractServerConnectionFactory factory = this.factoryCreator.apply(port);
+				TcpReceivingChannelAdapter adapter = new TcpReceivingChannelAdapter();
+				adapter.setConnectionFactory(factory);
+				adapter.setOutputChannelName(this.outputChannelName);
+				adapter.setBeanFactory(this.beanFactory);
+				adapter.afterPropertiesSet();
+				adapter.start();
+				this.factories.add(factory);
+				this.adapters.add(adapter);
+			}
+			this.running = true;
+			logger.info("Started " + this.shards + " additional acceptor shards on port " + port);
+		}
+	}
+
+	private int awaitPrimaryPort() {
+		long deadline = System.currentTimeMillis() + LISTEN_TIMEOUT;
+		while (!this.primary.isListening() && System.currentTimeMillis() < deadline) {
+			try {
+				Thread.sleep(10);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+		if (!this.primary.isListening()) {
+			throw new IllegalStateException("The primary connection factory is not listening");
+		}
+		return this.primary.getPort();
+	}
+
+	@Override
+	public void stop() {
+		synchronized (this.factories) {
+			for (TcpReceivingChannelAdapter adapter : this.adapters) {
+				adapter.stop();
+			}
+			this.adapters.clear();
+			this.factories.clear();
+			this.running = false;
+		}
+	}
+
+	@Override
+	public void stop(Runnable callback) {
+		stop();
+		callback.run();
+	}
+
+	@Override
+	public boolean isRunning() {
+		return this.running;
+	}
+
+	@Override
+	public boolean isAutoStartup() {
+		return true;
+	}
+
+	@Override
+	public int getPhase() {
+		return Integer.MAX_VALUE;
+	}
+
+}
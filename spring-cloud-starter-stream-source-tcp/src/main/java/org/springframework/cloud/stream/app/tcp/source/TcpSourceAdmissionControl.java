@@ -0,0 +1,258 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.app.tcp.source;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.context.ApplicationListener;
+import org.springframework.integration.ip.tcp.connection.TcpConnection;
+import org.springframework.integration.ip.tcp.connection.TcpConnectionCloseEvent;
+import org.springframework.integration.ip.tcp.connection.TcpConnectionEvent;
+import org.springframework.integration.ip.tcp.connection.TcpConnectionOpenEvent;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedMetric;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.util.Assert;
+
+/**
+ * Decides whether to accept each new connection, based on the total number of open
+ * connections, the number open from the same address and a token bucket limiting the
+ * rate at which connections are accepted. A rejected socket is reset and closed as soon
+ * as it is accepted, before a connection is created for it (see
+ * {@link AdmissionControlSocketSupport}); rejections are logged at debug level and
+ * counted by reason.
+ * <p>
+ * A slot is taken when a socket is admitted, and bound to its connection when the
+ * connection's open event is published on the accepting thread; it is released when
+ * the connection's close event is published. If no connection is opened for an
+ * admitted socket (its creation failed), its slot is released when the next socket is
+ * accepted on the same thread. A limit of zero disables that check.
+ */
+@ManagedResource
+public class TcpSourceAdmissionControl implements ApplicationListener<TcpConnectionEvent> {
+
+	private static final Log logger = LogFactory.getLog(TcpSourceAdmissionControl.class);
+
+	private final Map<String, Integer> connectionsByAddress = new HashMap<>();
+
+	private final Map<String, String> addressesByConnection = new HashMap<>();
+
+	// the address of the socket last admitted on this thread, until its connection is opened
+	private final ThreadLocal<String> pending = new ThreadLocal<>();
+
+	private final int maxConnections;
+
+	private final int maxConnectionsPerAddress;
+
+	private final double acceptRate;
+
+	private final double acceptBurst;
+
+	private final AtomicLong rejectedMaxConnections = new AtomicLong();
+
+	private final AtomicLong rejectedMaxConnectionsPerAddress = new AtomicLong();
+
+	private final AtomicLong rejectedAcceptRate = new AtomicLong();
+
+	private final AtomicLong failedConnections = new AtomicLong();
+
+	private int openConnections;
+
+	private double tokens;
+
+	private long lastRefill = System.nanoTime();
+
+	/**
+	 * Construct an instance.
+	 * @param maxConnections the maximum number of open connections.
+	 * @param maxConnectionsPerAddress the maximum number of open connections from one address.
+	 * @param acceptRate the sustained number of connections accepted per second.
+	 * @param acceptBurst the number of connections that can be accepted at once, when none
+	 * have been accepted for a while; at least the rate.
+	 */
+	public TcpSourceAdmissionControl(int maxConnections, int maxConnectionsPerAddress, int acceptRate,
+			int acceptBurst) {
+
+		Assert.isTrue(maxConnections >= 0 && maxConnectionsPerAddress >= 0 && acceptRate >= 0 && acceptBurst >= 0,
+				"Admission limits cannot be negative");
+		this.maxConnections = maxConnections;
+		this.maxConnectionsPerAddress = maxConnectionsPerAddress;
+		this.acceptRate = acceptRate;
+		this.acceptBurst = Math.max(acceptBurst, acceptRate);
+		this.tokens = this.acceptBurst;
+	}
+
+	@ManagedAttribute(description = "The maximum number of open connections")
+	public int getMaxConnections() {
+		return this.maxConnections;
+	}
+
+	@ManagedAttribute(description = "The maximum number of open connections from one address")
+	public int getMaxConnectionsPerAddress() {
+		return this.maxConnectionsPerAddress;
+	}
+
+	@ManagedAttribute(description = "The sustained number of connections accepted per second")
+	public double getAcceptRate() {
+		return this.acceptRate;
+	}
+
+	@ManagedMetric(description = "Open connections")
+	public synchronized int getOpenConnections() {
+		return this.openConnections;
+	}
+
+	@ManagedMetric(description = "Connections rejected because the maximum number were open")
+	public long getRejectedMaxConnections() {
+		return this.rejectedMaxConnections.get();
+	}
+
+	@ManagedMetric(description = "Connections rejected because the maximum number were open from their address")
+	public long getRejectedMaxConnectionsPerAddress() {
+		return this.rejectedMaxConnectionsPerAddress.get();
+	}
+
+	@ManagedMetric(description = "Connections rejected because they exceeded the accept rate")
+	public long getRejectedAcceptRate() {
+		return this.rejectedAcceptRate.get();
+	}
+
+	@ManagedMetric(description = "Admitted connections for which no connection was opened")
+	public long getFailedConnections() {
+		return this.failedConnections.get();
+	}
+
+	@ManagedMetric(description = "Connections rejected for any reason")
+	public long getRejectedConnections() {
+		return this.rejectedMaxConnections.get() + this.rejectedMaxConnectionsPerAddress.get()
+				+ this.rejectedAcceptRate.get();
+	}
+
+	/**
+	 * Admit a newly accepted socket, or reset and close it.
+	 * @param socket the socket.
+	 * @return true if the socket was admitted.
+	 */
+	public boolean admit(Socket socket) {
+		String address = socket.getInetAddress().getHostAddress();
+		AtomicLong rejections = null;
+		String reason = null;
+		synchronized (this) {
+			String failed = this.pending.get();
+			if (failed != null) {
+				this.pending.remove();
+				this.failedConnections.incrementAndGet();
+				release(failed);
+			}
+			int fromAddress = this.connectionsByAddress.getOrDefault(address, 0);
+			if (this.maxConnections > 0 && this.openConnections >= this.maxConnections) {
+				rejections = this.rejectedMaxConnections;
+				reason = "maximum connections";
+			}
+			else if (this.maxConnectionsPerAddress > 0 && fromAddress >= this.maxConnectionsPerAddress) {
+				rejections = this.rejectedMaxConnectionsPerAddress;
+				reason = "maximum connections per address";
+			}
+			else if (this.acceptRate > 0 && !takeToken()) {
+				rejections = this.rejectedAcceptRate;
+				reason = "accept rate";
+			}
+			else {
+				this.openConnections++;
+				this.connectionsByAddress.put(address, fromAddress + 1);
+				this.pending.set(address);
+			}
+		}
+		if (rejections != null) {
+			rejections.incrementAndGet();
+			if (logger.isDebugEnabled()) {
+				logger.debug("Connection from " + address + ":" + socket.getPort() + " rejected: " + reason);
+			}
+			reject(socket);
+			return false;
+		}
+		return true;
+	}
+
+	private boolean takeToken() {
+		long now = System.nanoTime();
+		this.tokens = Math.min(this.acceptBurst,
+				this.tokens + (now - this.lastRefill) * this.acceptRate / TimeUnit.SECONDS.toNanos(1));
+		this.lastRefill = now;
+		if (this.tokens >= 1) {
+			this.tokens--;
+			return true;
+		}
+		return false;
+	}
+
+	private void reject(Socket socket) {
+		try (Socket rejected = socket) {
+			rejected.setSoLinger(true, 0);
+		}
+		catch (IOException e) {
+			logger.debug("Failed to close a rejected socket", e);
+		}
+	}
+
+	@Override
+	public void onApplicationEvent(TcpConnectionEvent event) {
+		if (event instanceof TcpConnectionOpenEvent) {
+			// published on the thread that accepted the socket
+			String address = this.pending.get();
+			if (address != null) {
+				this.pending.remove();
+				synchronized (this) {
+					if (((TcpConnection) event.getSource()).isOpen()) {
+						this.addressesByConnection.put(event.getConnectionId(), address);
+					}
+					else {
+						// already closed, before its open event was published
+						release(address);
+					}
+				}
+			}
+		}
+		else if (event instanceof TcpConnectionCloseEvent) {
+			synchronized (this) {
+				String address = this.addressesByConnection.remove(event.getConnectionId());
+				if (address != null) {
+					release(address);
+				}
+			}
+		}
+	}
+
+	private void release(String address) {
+		this.openConnections--;
+		int fromAddress = this.connectionsByAddress.getOrDefault(address, 0);
+		if (fromAddress > 1) {
+			this.connectionsByAddress.put(address, fromAddress - 1);
+		}
+		else {
+			this.connectionsByAddress.remove(address);
+		}
+	}
+
+}
@@ -16,18 +16,55 @@
 
 package org.springframework.cloud.stream.app.tcp.source;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cloud.stream.annotation.EnableBinding;
-import org.springframework.cloud.stream.app.tcp.TcpConnectionFactoryProperties;
+import org.springframework.cloud.stream.app.tcp.AbstractFrameSerializer;
+import org.springframework.cloud.stream.app.tcp.ChecksumFailureCounter;
+import org.springframework.cloud.stream.app.tcp.ConnectionExecutorFactoryBean;
 import org.springframework.cloud.stream.app.tcp.EncoderDecoderFactoryBean;
+import org.springframework.cloud.stream.app.tcp.FlowControlInterceptor;
+import org.springframework.cloud.stream.app.tcp.FrameBufferPool;
+import org.springframework.cloud.stream.app.tcp.FrameConnectionSupport;
+import org.springframework.cloud.stream.app.tcp.IdleConnectionTimingWheel;
+import org.springframework.cloud.stream.app.tcp.InboundTcpMessageMapper;
+import org.springframework.cloud.stream.app.tcp.ReverseLookupCache;
+import org.springframework.cloud.stream.app.tcp.ReverseLookupConnectionSupport;
+import org.springframework.cloud.stream.app.tcp.SegmentSpool;
+import org.springframework.cloud.stream.app.tcp.SpoolingOutputChannel;
+import org.springframework.cloud.stream.app.tcp.TcpConnectionFactoryProperties;
 import org.springframework.cloud.stream.messaging.Source;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.integration.aggregator.AggregatingMessageHandler;
+import org.springframework.integration.aggregator.HeaderAttributeCorrelationStrategy;
+import org.springframework.integration.aggregator.MessageCountReleaseStrategy;
+import org.springframework.integration.annotation.ServiceActivator;
+import org.springframework.integration.config.GlobalChannelInterceptor;
+import org.springframework.integration.expression.ValueExpression;
+import org.springframework.integration.ip.IpHeaders;
 import org.springframework.integration.ip.config.TcpConnectionFactoryFactoryBean;
 import org.springframework.integration.ip.tcp.TcpReceivingChannelAdapter;
 import org.springframework.integration.ip.tcp.connection.AbstractConnectionFactory;
+import org.springframework.integration.ip.tcp.connection.AbstractServerConnectionFactory;
+import org.springframework.integration.ip.tcp.connection.TcpMessageMapper;
 import org.springframework.integration.ip.tcp.serializer.AbstractByteArraySerializer;
+import org.springframework.integration.store.SimpleMessageStore;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
 
 /**
  * A source module that receives data over TCP.
@@ -39,40 +76,245 @@ import org.springframework.integration.ip.tcp.serializer.AbstractByteArraySerial
 @EnableConfigurationProperties({TcpSourceProperties.class, TcpConnectionFactoryProperties.class})
 public class TcpSourceConfiguration {
 
+	private static final String BATCH_CHANNEL = "tcpSourceBatchChannel";
+
+	private static final String SPOOL_CHANNEL = "tcpSourceSpoolChannel";
+
 	@Autowired
 	private TcpSourceProperties properties;
 
 	@Autowired
 	private TcpConnectionFactoryProperties tcpConnectionProperties;
 
+	@Autowired
+	private ObjectProvider<ReverseLookupCache> reverseLookupCache;
+
+	@Autowired
+	private ObjectProvider<IdleConnectionTimingWheel> idleTimingWheel;
+
 	@Bean
 	public TcpReceivingChannelAdapter adapter(
 			@Qualifier("tcpSourceConnectionFactory") AbstractConnectionFactory connectionFactory) {
 		TcpReceivingChannelAdapter adapter = new TcpReceivingChannelAdapter();
 		adapter.setConnectionFactory(connectionFactory);
-		adapter.setOutputChannelName(Source.OUTPUT);
+		adapter.setOutputChannelName(outputChannelName());
 		return adapter;
 	}
 
 	@Bean
 	public TcpConnectionFactoryFactoryBean tcpSourceConnectionFactory(
-			@Qualifier("tcpSourceDecoder") AbstractByteArraySerializer decoder) throws Exception {
+			@Qualifier("tcpSourceMapper") TcpMessageMapper mapper,
+			@Qualifier("tcpSourceDecoder") AbstractByteArraySerializer decoder,
+			@Qualifier("tcpSourceExecutor") Executor executor,
+			ObjectProvider<TcpSourceAdmissionControl> admissionControl) throws Exception {
+		return serverConnectionFactory(mapper, decoder, executor, admissionControl.getIfAvailable(),
+				this.tcpConnectionProperties.getPort());
+	}
+
+	@Bean
+	@ConditionalOnExpression("${tcp.acceptor-shards:1} > 1")
+	public TcpSourceAcceptorShards tcpSourceAcceptorShards(
+			@Qualifier("tcpSourceConnectionFactory") AbstractServerConnectionFactory connectionFactory,
+			@Qualifier("tcpSourceMapper") TcpMessageMapper mapper,
+			@Qualifier("tcpSourceDecoder") AbstractByteArraySerializer decoder,
+			@Qualifier("tcpSourceExecutor") Executor executor,
+			ObjectProvider<TcpSourceAdmissionControl> admissionControl,
+			BeanFactory beanFactory, ApplicationEventPublisher applicationEventPublisher) {
+
+		return new TcpSourceAcceptorShards(connectionFactory, this.properties.getAcceptorShards() - 1, port -> {
+			TcpConnectionFactoryFactoryBean factoryBean = serverConnectionFactory(mapper, decoder, executor,
+					admissionControl.getIfAvailable(), port);
+			factoryBean.setBeanFactory(beanFactory);
+			factoryBean.setApplicationEventPublisher(applicationEventPublisher);
+			try {
+				factoryBean.afterPropertiesSet();
+				return (AbstractServerConnectionFactory) factoryBean.getObject();
+			}
+			catch (Exception e) {
+				throw new IllegalStateException("Failed to create an acceptor shard", e);
+			}
+		}, outputChannelName());
+	}
+
+	private String outputChannelName() {
+		if (this.properties.getBatchSize() > 1) {
+			return BATCH_CHANNEL;
+		}
+		return StringUtils.hasText(this.properties.getSpoolDirectory()) ? SPOOL_CHANNEL : Source.OUTPUT;
+	}
+
+	private TcpConnectionFactoryFactoryBean serverConnectionFactory(TcpMessageMapper mapper,
+			AbstractByteArraySerializer decoder, Executor executor, TcpSourceAdmissionControl admissionControl,
+			int port) {
+
 		TcpConnectionFactoryFactoryBean factoryBean = new TcpConnectionFactoryFactoryBean();
 		factoryBean.setType("server");
-		factoryBean.setPort(this.tcpConnectionProperties.getPort());
+		factoryBean.setPort(port);
 		factoryBean.setUsingNio(this.tcpConnectionProperties.isNio());
 		factoryBean.setUsingDirectBuffers(this.tcpConnectionProperties.isUseDirectBuffers());
 		factoryBean.setLookupHost(this.tcpConnectionProperties.isReverseLookup());
+		ReverseLookupCache reverseLookupCache = this.reverseLookupCache.getIfAvailable();
+		// the frame serializers read blocking connections in bulk through a buffered stream
+		boolean bufferedInput = decoder instanceof AbstractFrameSerializer;
+		// with NIO, data read while flow control pauses a connection waits in its pipe
+		boolean flowControlNio = this.tcpConnectionProperties.isNio()
+				&& (this.properties.getHighWatermark() > 0 || this.properties.getConnectionHighWatermark() > 0);
+		if (reverseLookupCache != null || bufferedInput || flowControlNio) {
+			FrameConnectionSupport connectionSupport = reverseLookupCache != null
+					? new ReverseLookupConnectionSupport(reverseLookupCache) : new FrameConnectionSupport();
+			connectionSupport.setBufferedInput(bufferedInput);
+			if (flowControlNio) {
+				connectionSupport.setPipeTimeout(FrameConnectionSupport.DEFAULT_PIPE_TIMEOUT
+						+ this.properties.getFlowControlMaxPause());
+			}
+			factoryBean.setNetConnectionSupport(connectionSupport);
+			factoryBean.setNioConnectionSupport(connectionSupport);
+		}
 		factoryBean.setDeserializer(decoder);
-		factoryBean.setSoTimeout(this.tcpConnectionProperties.getSocketTimeout());
+		// the timing wheel, if any, closes idle connections instead of the factory
+		factoryBean.setSoTimeout(this.idleTimingWheel.getIfAvailable() != null ? 0
+				: this.tcpConnectionProperties.getSocketTimeout());
+		factoryBean.setTaskExecutor(executor);
+		factoryBean.setMapper(mapper);
+		ReusePortSocketSupport reusePort = null;
+		if (this.properties.getAcceptorShards() > 1) {
+			reusePort = new ReusePortSocketSupport();
+			factoryBean.setSocketSupport(reusePort);
+			factoryBean.setSocketFactorySupport(reusePort);
+		}
+		if (admissionControl != null) {
+			// rejected sockets are closed by the server socket, before a connection is created
+			factoryBean.setSocketFactorySupport(new AdmissionControlSocketSupport(admissionControl, reusePort));
+		}
 		return factoryBean;
 	}
 
 	@Bean
-	public EncoderDecoderFactoryBean tcpSourceDecoder() {
+	@ConditionalOnExpression("${tcp.max-connections:0} > 0 or ${tcp.max-connections-per-address:0} > 0 "
+			+ "or ${tcp.accept-rate:0} > 0")
+	public TcpSourceAdmissionControl tcpSourceAdmissionControl() {
+		Assert.state(!this.tcpConnectionProperties.isNio(), "'tcp.max-connections', "
+				+ "'tcp.max-connections-per-address' and 'tcp.accept-rate' cannot be used with 'tcp.nio'");
+		return new TcpSourceAdmissionControl(this.properties.getMaxConnections(),
+				this.properties.getMaxConnectionsPerAddress(), this.properties.getAcceptRate(),
+				this.properties.getAcceptBurst());
+	}
+
+	@Bean
+	public TcpMessageMapper tcpSourceMapper() {
+		InboundTcpMessageMapper mapper = new InboundTcpMessageMapper();
+		if (this.properties.getLeanHeaders() != null) {
+			mapper.setLeanHeaders(Arrays.asList(this.properties.getLeanHeaders()));
+		}
+		return mapper;
+	}
+
+	@Bean
+	public ConnectionExecutorFactoryBean tcpSourceExecutor() {
+		return new ConnectionExecutorFactoryBean(this.tcpConnectionProperties, "tcp-source-");
+	}
+
+	@Bean
+	@ConditionalOnExpression("${tcp.reverse-lookup:false}")
+	public ReverseLookupCache tcpSourceReverseLookupCache() {
+		return new ReverseLookupCache(this.tcpConnectionProperties.getReverseLookupCacheSize(),
+				this.tcpConnectionProperties.getReverseLookupTtl(),
+				this.tcpConnectionProperties.getReverseLookupNegativeTtl());
+	}
+
+	@Bean
+	@ConditionalOnExpression("${tcp.idle-timing-wheel:false} and ${tcp.nio:false} "
+			+ "and ${tcp.socket-timeout:120000} > 0")
+	public IdleConnectionTimingWheel tcpSourceIdleTimingWheel() {
+		return new IdleConnectionTimingWheel(this.tcpConnectionProperties.getSocketTimeout());
+	}
+
+	@Bean
+	@GlobalChannelInterceptor(patterns = Source.OUTPUT)
+	@ConditionalOnExpression("${tcp.high-watermark:0} > 0 or ${tcp.connection-high-watermark:0} > 0")
+	public FlowControlInterceptor tcpSourceFlowControl() {
+		FlowControlInterceptor flowControl = new FlowControlInterceptor(this.properties.getHighWatermark(),
+				this.properties.getLowWatermark(), this.properties.getConnectionHighWatermark(),
+				this.properties.getConnectionLowWatermark());
+		if (StringUtils.hasText(this.properties.getFlowControlConfirmChannel())) {
+			flowControl.setConfirmTimeout(this.properties.getFlowControlConfirmTimeout());
+		}
+		if (this.tcpConnectionProperties.isNio()) {
+			// the paused thread is the assembler, so the pause must end before the reader's pipe times out
+			flowControl.setMaxPause(this.properties.getFlowControlMaxPause());
+		}
+		return flowControl;
+	}
+
+	@Bean
+	@ServiceActivator(inputChannel = "${tcp.flow-control-confirm-channel}")
+	@ConditionalOnExpression("(${tcp.high-watermark:0} > 0 or ${tcp.connection-high-watermark:0} > 0) "
+			+ "and '${tcp.flow-control-confirm-channel:}' != ''")
+	public MessageHandler tcpSourceFlowControlConfirmer(
+			@Qualifier("tcpSourceFlowControl") FlowControlInterceptor flowControl) {
+		return flowControl::confirm;
+	}
+
+	@Bean
+	@ConditionalOnExpression("'${tcp.spool-directory:}' != ''")
+	public SegmentSpool tcpSourceSpool() throws IOException {
+		Assert.state(this.properties.getBatchSize() == 1, "'tcp.spool-directory' cannot be used with batching");
+		return new SegmentSpool(new File(this.properties.getSpoolDirectory()), this.properties.getSpoolSegmentSize(),
+				this.properties.getSpoolMaxBytes(), this.properties.getSpoolFsync());
+	}
+
+	@Bean
+	@ConditionalOnExpression("'${tcp.spool-directory:}' != ''")
+	public SpoolingOutputChannel tcpSourceSpoolChannel(@Qualifier(Source.OUTPUT) MessageChannel output,
+			@Qualifier("tcpSourceSpool") SegmentSpool spool) {
+		SpoolingOutputChannel channel = new SpoolingOutputChannel(output, spool,
+				this.properties.getSpoolRetryInterval());
+		channel.setMaxAttempts(this.properties.getSpoolMaxAttempts());
+		return channel;
+	}
+
+	@Bean
+	@ConditionalOnProperty(prefix = "tcp", name = "decoder", havingValue = "L4_CRC32C")
+	public ChecksumFailureCounter tcpSourceChecksumFailureCounter() {
+		return new ChecksumFailureCounter();
+	}
+
+	@Bean
+	public EncoderDecoderFactoryBean tcpSourceDecoder(ObjectProvider<ChecksumFailureCounter> checksumFailureCounter) {
 		EncoderDecoderFactoryBean factoryBean = new EncoderDecoderFactoryBean(this.properties.getDecoder());
+		factoryBean.setChecksumFailureCounter(checksumFailureCounter.getIfAvailable());
+		factoryBean.setDelimiter(this.tcpConnectionProperties.getDelimiter());
 		factoryBean.setMaxMessageSize(this.properties.getBufferSize());
+		factoryBean.setInPlaceDecoding(this.properties.isInPlaceDecoding());
+		factoryBean.setDelimiterScan(this.properties.getDelimiterScan());
+		factoryBean.setBufferPool(new FrameBufferPool(this.properties.getBufferPoolSize(),
+				this.properties.getBufferPoolMaxRetained()));
+		factoryBean.setStreaming(this.properties.isStreaming());
+		factoryBean.setMaxFrameSize(this.properties.getMaxFrameSize());
 		return factoryBean;
 	}
 
+	/**
+	 * Combines the messages received on each connection into batches of up to
+	 * {@code batchSize} messages, sending incomplete batches after {@code batchTimeout}.
+	 */
+	@Configuration
+	@ConditionalOnExpression("${tcp.batch-size:1} > 1")
+	static class BatchingConfiguration {
+
+		@Bean
+		@ServiceActivator(inputChannel = BATCH_CHANNEL)
+		public AggregatingMessageHandler tcpSourceBatcher(TcpSourceProperties properties) {
+			AggregatingMessageHandler handler = new AggregatingMessageHandler(new FrameBatchMessageGroupProcessor(),
+					new SimpleMessageStore(), new HeaderAttributeCorrelationStrategy(IpHeaders.CONNECTION_ID),
+					new MessageCountReleaseStrategy(properties.getBatchSize()));
+			handler.setGroupTimeoutExpression(new ValueExpression<>(properties.getBatchTimeout()));
+			handler.setSendPartialResultOnExpiry(true);
+			handler.setExpireGroupsUponCompletion(true);
+			handler.setOutputChannelName(Source.OUTPUT);
+			return handler;
+		}
+
+	}
+
 }
@@ -16,10 +16,13 @@
 
 package org.springframework.cloud.stream.app.tcp.source;
 
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.cloud.stream.app.tcp.DelimiterScan;
 import org.springframework.cloud.stream.app.tcp.Encoding;
+import org.springframework.cloud.stream.app.tcp.FsyncPolicy;
 import org.springframework.validation.annotation.Validated;
 
 /**
@@ -43,6 +46,163 @@ public class TcpSourceProperties {
 	 */
 	private int bufferSize = 2048;
 
+	/**
+	 * Whether to decode in a reused buffer and copy each message out once at its exact size,
+	 * rather than allocating a buffer of 'bufferSize' for every message.
+	 */
+	private boolean inPlaceDecoding;
+
+	/**
+	 * How the delimiter-based decoders (CRLF, LF, NULL, STXETX) search for the end of a message;
+	 * SWAR examines eight bytes at a time on blocking (not NIO) connections and implies in place decoding.
+	 */
+	private DelimiterScan delimiterScan = DelimiterScan.BYTE;
+
+	/**
+	 * When decoding in place, the maximum number of working buffers retained for reuse per size class.
+	 */
+	private int bufferPoolSize = 16;
+
+	/**
+	 * When decoding in place, the maximum number of bytes retained for reuse across all size classes.
+	 */
+	private long bufferPoolMaxRetained = 16 * 1024 * 1024;
+
+	/**
+	 * Whether to deliver messages larger than 'bufferSize' as a sequence of chunks, with correlation
+	 * and sequence headers, rather than rejecting them; not supported by the DEFLATE and L4_CRC32C decoders.
+	 */
+	private boolean streaming;
+
+	/**
+	 * When streaming, the maximum total size of a message delivered in chunks; 0 for no limit.
+	 */
+	private long maxFrameSize;
+
+	/**
+	 * The maximum number of messages received on a connection to combine into a single message,
+	 * each preceded by a four byte length; 1 for no batching.
+	 */
+	private int batchSize = 1;
+
+	/**
+	 * When batching, the time (ms) after which an incomplete batch is sent.
+	 */
+	private long batchTimeout = 100;
+
+	/**
+	 * The number of server sockets listening on the port with SO_REUSEPORT, each with its own acceptor
+	 * (and selector when using NIO), so that the kernel spreads connections across them; requires Java 9+.
+	 */
+	private int acceptorShards = 1;
+
+	/**
+	 * The total number of messages in flight to the binder at which reading from all connections
+	 * pauses; 0 for no limit.
+	 */
+	private int highWatermark;
+
+	/**
+	 * The total number of messages in flight at which reading resumes; 0 for half the high watermark.
+	 */
+	private int lowWatermark;
+
+	/**
+	 * The number of messages in flight to the binder from a connection at which reading from that
+	 * connection pauses; 0 for no limit.
+	 */
+	private int connectionHighWatermark;
+
+	/**
+	 * The number of messages in flight from a connection at which reading from it resumes; 0 for half
+	 * the connection high watermark.
+	 */
+	private int connectionLowWatermark;
+
+	/**
+	 * The name of a channel to which the binder sends a confirmation of each message it has sent
+	 * (such as the Kafka binder's recordMetadataChannel or the Rabbit binder's confirmAckChannel);
+	 * when set, messages count towards the watermarks until they are confirmed, rather than only
+	 * while they are being sent.
+	 */
+	private String flowControlConfirmChannel;
+
+	/**
+	 * The time (ms) after which a message that has not been confirmed no longer counts towards
+	 * the watermarks.
+	 */
+	private long flowControlConfirmTimeout = 30000;
+
+	/**
+	 * With NIO, the maximum time (ms) for which reading a connection pauses for flow control; the
+	 * message is then sent even though the watermark is still exceeded. The connections' pipe timeout
+	 * is raised by the same amount, so that a paused connection is not closed while its data waits.
+	 */
+	private long flowControlMaxPause = 30000;
+
+	/**
+	 * The maximum number of open connections; further connections are reset as soon as they are
+	 * accepted. 0 for no limit. Admission control is not supported with NIO.
+	 */
+	private int maxConnections;
+
+	/**
+	 * The maximum number of open connections from one address; 0 for no limit. Not supported with NIO.
+	 */
+	private int maxConnectionsPerAddress;
+
+	/**
+	 * The sustained number of connections accepted per second; connections above the rate are reset
+	 * as soon as they are accepted. 0 for no limit. Not supported with NIO.
+	 */
+	private int acceptRate;
+
+	/**
+	 * The number of connections that can be accepted at once after a quiet period, when limiting the
+	 * accept rate; 0 for the rate itself.
+	 */
+	private int acceptBurst;
+
+	/**
+	 * The connection headers to add to each message (ip_connectionId, ip_address, ip_hostname,
+	 * ip_tcp_remotePort, ip_localInetAddress), computed once per connection; all the standard
+	 * headers when not set.
+	 */
+	private String[] leanHeaders;
+
+	/**
+	 * A directory in which to spool messages while the binder cannot accept them; they are sent, in
+	 * order, when it recovers. No spooling when not set.
+	 */
+	private String spoolDirectory;
+
+	/**
+	 * The size of each memory-mapped spool segment file; the maximum size of a spooled message is
+	 * 5 bytes less.
+	 */
+	private int spoolSegmentSize = 64 * 1024 * 1024;
+
+	/**
+	 * The maximum total size of the spool segment files; messages that do not fit are rejected.
+	 */
+	private long spoolMaxBytes = 1024L * 1024 * 1024;
+
+	/**
+	 * When spooled messages are forced to disk (NEVER, SEGMENT, ALWAYS).
+	 */
+	private FsyncPolicy spoolFsync = FsyncPolicy.SEGMENT;
+
+	/**
+	 * The time (ms) to wait before retrying to send a spooled message.
+	 */
+	private long spoolRetryInterval = 1000;
+
+	/**
+	 * The number of attempts to send a spooled message after which it is discarded, so that it
+	 * does not hold back those behind it; 0 to retry until it is sent.
+	 */
+	private int spoolMaxAttempts;
+
 	@NotNull
 	public Encoding getDecoder() {
 		return this.decoder;
@@ -60,4 +220,227 @@ public class TcpSourceProperties {
 		this.bufferSize = bufferSize;
 	}
 
+	public boolean isInPlaceDecoding() {
+		return this.inPlaceDecoding;
+	}
+
+	public void setInPlaceDecoding(boolean inPlaceDecoding) {
+		this.inPlaceDecoding = inPlaceDecoding;
+	}
+
+	@NotNull
+	public DelimiterScan getDelimiterScan() {
+		return this.delimiterScan;
+	}
+
+	public void setDelimiterScan(DelimiterScan delimiterScan) {
+		this.delimiterScan = delimiterScan;
+	}
+
+	public int getBufferPoolSize() {
+		return this.bufferPoolSize;
+	}
+
+	public void setBufferPoolSize(int bufferPoolSize) {
+		this.bufferPoolSize = bufferPoolSize;
+	}
+
+	public long getBufferPoolMaxRetained() {
+		return this.bufferPoolMaxRetained;
+	}
+
+	public void setBufferPoolMaxRetained(long bufferPoolMaxRetained) {
+		this.bufferPoolMaxRetained = bufferPoolMaxRetained;
+	}
+
+	public boolean isStreaming() {
+		return this.streaming;
+	}
+
+	public void setStreaming(boolean streaming) {
+		this.streaming = streaming;
+	}
+
+	public long getMaxFrameSize() {
+		return this.maxFrameSize;
+	}
+
+	public void setMaxFrameSize(long maxFrameSize) {
+		this.maxFrameSize = maxFrameSize;
+	}
+
+	@Min(1)
+	public int getBatchSize() {
+		return this.batchSize;
+	}
+
+	public void setBatchSize(int batchSize) {
+		this.batchSize = batchSize;
+	}
+
+	public long getBatchTimeout() {
+		return this.batchTimeout;
+	}
+
+	public void setBatchTimeout(long batchTimeout) {
+		this.batchTimeout = batchTimeout;
+	}
+
+	@Min(1)
+	public int getAcceptorShards() {
+		return this.acceptorShards;
+	}
+
+	public void setAcceptorShards(int acceptorShards) {
+		this.acceptorShards = acceptorShards;
+	}
+
+	public int getHighWatermark() {
+		return this.highWatermark;
+	}
+
+	public void setHighWatermark(int highWatermark) {
+		this.highWatermark = highWatermark;
+	}
+
+	public int getLowWatermark() {
+		return this.lowWatermark;
+	}
+
+	public void setLowWatermark(int lowWatermark) {
+		this.lowWatermark = lowWatermark;
+	}
+
+	public int getConnectionHighWatermark() {
+		return this.connectionHighWatermark;
+	}
+
+	public void setConnectionHighWatermark(int connectionHighWatermark) {
+		this.connectionHighWatermark = connectionHighWatermark;
+	}
+
+	public int getConnectionLowWatermark() {
+		return this.connectionLowWatermark;
+	}
+
+	public void setConnectionLowWatermark(int connectionLowWatermark) {
+		this.connectionLowWatermark = connectionLowWatermark;
+	}
+
+	public String getFlowControlConfirmChannel() {
+		return this.flowControlConfirmChannel;
+	}
+
+	public void setFlowControlConfirmChannel(String flowControlConfirmChannel) {
+		this.flowControlConfirmChannel = flowControlConfirmChannel;
+	}
+
+	public long getFlowControlConfirmTimeout() {
+		return this.flowControlConfirmTimeout;
+	}
+
+	public void setFlowControlConfirmTimeout(long flowControlConfirmTimeout) {
+		this.flowControlConfirmTimeout = flowControlConfirmTimeout;
+	}
+
+	public long getFlowControlMaxPause() {
+		return this.flowControlMaxPause;
+	}
+
+	public void setFlowControlMaxPause(long flowControlMaxPause) {
+		this.flowControlMaxPause = flowControlMaxPause;
+	}
+
+	public int getMaxConnections() {
+		return this.maxConnections;
+	}
+
+	public void setMaxConnections(int maxConnections) {
+		this.maxConnections = maxConnections;
+	}
+
+	public int getMaxConnectionsPerAddress() {
+		return this.maxConnectionsPerAddress;
+	}
+
+	public void setMaxConnectionsPerAddress(int maxConnectionsPerAddress) {
+		this.maxConnectionsPerAddress = maxConnectionsPerAddress;
+	}
+
+	public int getAcceptRate() {
+		return this.acceptRate;
+	}
+
+	public void setAcceptRate(int acceptRate) {
+		this.acceptRate = acceptRate;
+	}
+
+	public int getAcceptBurst() {
+		return this.acceptBurst;
+	}
+
+	public void setAcceptBurst(int acceptBurst) {
+		this.acceptBurst = acceptBurst;
+	}
+
+	public String[] getLeanHeaders() {
+		return this.leanHeaders;
+	}
+
+	public void setLeanHeaders(String[] leanHeaders) {
+		this.leanHeaders = leanHeaders;
+	}
+
+	public String getSpoolDirectory() {
+		return this.spoolDirectory;
+	}
+
+	public void setSpoolDirectory(String spoolDirectory) {
+		this.spoolDirectory = spoolDirectory;
+	}
+
+	@Min(6)
+	public int getSpoolSegmentSize() {
+		return this.spoolSegmentSize;
+	}
+
+	public void setSpoolSegmentSize(int spoolSegmentSize) {
+		this.spoolSegmentSize = spoolSegmentSize;
+	}
+
+	public long getSpoolMaxBytes() {
+		return this.spoolMaxBytes;
+	}
+
+	public void setSpoolMaxBytes(long spoolMaxBytes) {
+		this.spoolMaxBytes = spoolMaxBytes;
+	}
+
+	@NotNull
+	public FsyncPolicy getSpoolFsync() {
+		return this.spoolFsync;
+	}
+
+	public void setSpoolFsync(FsyncPolicy spoolFsync) {
+		this.spoolFsync = spoolFsync;
+	}
+
+	@Min(1)
+	public long getSpoolRetryInterval() {
+		return this.spoolRetryInterval;
+	}
+
+	public void setSpoolRetryInterval(long spoolRetryInterval) {
+		this.spoolRetryInterval = spoolRetryInterval;
+	}
+
+	@Min(0)
+	public int getSpoolMaxAttempts() {
+		return this.spoolMaxAttempts;
+	}
+
+	public void setSpoolMaxAttempts(int spoolMaxAttempts) {
+		this.spoolMaxAttempts = spoolMaxAttempts;
+	}
+
 }
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.app.tcp.source;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link TcpSourceAdmissionControl}.
+ */
+public class TcpSourceAdmissionControlTests {
+
+	@Test
+	public void failedConnection() throws Exception {
+		TcpSourceAdmissionControl admissionControl = new TcpSourceAdmissionControl(0, 1, 0, 0);
+		try (ServerSocket server = new ServerSocket(0);
+				Socket first = new Socket("localhost", server.getLocalPort());
+				Socket firstAccepted = server.accept();
+				Socket second = new Socket("localhost", server.getLocalPort());
+				Socket secondAccepted = server.accept()) {
+
+			assertTrue(admissionControl.admit(firstAccepted));
+			// no connection was opened for the first socket
+			assertTrue(admissionControl.admit(secondAccepted));
+			assertEquals(1, admissionControl.getFailedConnections());
+			assertEquals(1, admissionControl.getOpenConnections());
+			assertEquals(0, admissionControl.getRejectedConnections());
+		}
+	}
+
+}
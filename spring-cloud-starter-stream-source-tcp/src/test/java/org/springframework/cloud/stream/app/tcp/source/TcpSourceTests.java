@@ -19,27 +19,70 @@ package org.springframework.cloud.stream.app.tcp.source;
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.springframework.cloud.stream.test.matcher.MessageQueueMatcher.receivesPayloadThat;
 
+import java.io.ByteArrayOutputStream;
 import java.net.Socket;
+import java.net.SocketException;
+import java.net.StandardSocketOptions;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.net.SocketFactory;
 
 import org.hamcrest.Matchers;
+import org.junit.Assume;
+import org.junit.BeforeClass;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cloud.stream.app.tcp.ChecksumFailureCounter;
+import org.springframework.cloud.stream.app.tcp.Crc32cFrameSerializer;
+import org.springframework.cloud.stream.app.tcp.DeflateFrameSerializer;
+import org.springframework.cloud.stream.app.tcp.DelimitedFrameSerializer;
+import org.springframework.cloud.stream.app.tcp.FlowControlInterceptor;
+import org.springframework.cloud.stream.app.tcp.FrameConnectionSupport;
+import org.springframework.cloud.stream.app.tcp.HorspoolDelimitedFrameSerializer;
+import org.springframework.cloud.stream.app.tcp.IdleConnectionTimingWheel;
+import org.springframework.cloud.stream.app.tcp.InboundTcpMessageMapper;
+import org.springframework.cloud.stream.app.tcp.ReverseLookupCache;
+import org.springframework.cloud.stream.app.tcp.SegmentSpool;
+import org.springframework.cloud.stream.app.tcp.SpoolingOutputChannel;
+import org.springframework.cloud.stream.app.tcp.SwarDelimitedFrameSerializer;
 import org.springframework.cloud.stream.messaging.Source;
 import org.springframework.cloud.stream.test.binder.MessageCollector;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.integration.IntegrationMessageHeaderAccessor;
+import org.springframework.integration.ip.IpHeaders;
 import org.springframework.integration.ip.tcp.connection.AbstractServerConnectionFactory;
 import org.springframework.integration.ip.tcp.connection.TcpNetServerConnectionFactory;
 import org.springframework.integration.ip.tcp.connection.TcpNioServerConnectionFactory;
+import org.springframework.integration.ip.tcp.serializer.TcpDeserializationExceptionEvent;
+import org.springframework.integration.support.MessageBuilder;
 import org.springframework.integration.test.util.TestUtils;
+import org.springframework.integration.util.CompositeExecutor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.InterceptableChannel;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.junit4.SpringRunner;
@@ -94,6 +137,51 @@ public abstract class TcpSourceTests {
 
 	}
 
+	@TestPropertySource(properties = { "tcp.nio = true", "tcp.readerThreads = 4", "tcp.selectorThreads = 2",
+			"tcp.executorQueueSize = 10" })
+	public static class ExecutorTests extends TcpSourceTests {
+
+		@Test
+		public void test() throws Exception {
+			assertThat(TestUtils.getPropertyValue(this.connectionFactory, "taskExecutor"),
+					Matchers.instanceOf(CompositeExecutor.class));
+			doTest("", "foo", "\r\n");
+		}
+
+	}
+
+	@TestPropertySource(properties = { "tcp.threading = VIRTUAL" })
+	public static class VirtualThreadingTests extends TcpSourceTests {
+
+		@Test
+		public void test() throws Exception {
+			AtomicReference<Thread> reader = new AtomicReference<>();
+			ChannelInterceptor interceptor = new ChannelInterceptor() {
+
+				@Override
+				public Message<?> preSend(Message<?> message, MessageChannel channel) {
+					reader.set(Thread.currentThread());
+					return message;
+				}
+
+			};
+			((InterceptableChannel) this.channels.output()).addInterceptor(interceptor);
+			doTest("", "foo", "\r\n");
+			((InterceptableChannel) this.channels.output()).removeInterceptor(interceptor);
+			String version = System.getProperty("java.specification.version");
+			int feature = Integer.parseInt(version.startsWith("1.") ? version.substring(2) : version);
+			if (feature >= 21) {
+				assertTrue("not a virtual thread: " + reader.get(),
+						(Boolean) Thread.class.getMethod("isVirtual").invoke(reader.get()));
+			}
+			else {
+				// falls back to the platform threads of the default executor
+				assertThat(reader.get().getName(), Matchers.startsWith("tcp-source-"));
+			}
+		}
+
+	}
+
 	public static class CRLFTests extends TcpSourceTests {
 
 		@Test
@@ -163,6 +251,108 @@ public abstract class TcpSourceTests {
 
 	}
 
+	@TestPropertySource(properties = { "tcp.decoder = VARINT" })
+	public static class VARINTTests extends TcpSourceTests {
+
+		@Test
+		public void test() throws Exception {
+			doTest("\u0003", "foo", "");
+		}
+
+	}
+
+	@TestPropertySource(properties = { "tcp.decoder = DEFLATE" })
+	public static class DEFLATETests extends TcpSourceTests {
+
+		@Test
+		public void test() throws Exception {
+			doTest("\u0000\u0000\u0000\u0004\u0000", "foo", "");
+		}
+
+		@Test
+		public void compressed() throws Exception {
+			byte[] payload = new byte[2000];
+			for (int i = 0; i < payload.length; i++) {
+				payload[i] = (byte) "foo bar ".charAt(i % 8);
+			}
+			ByteArrayOutputStream frame = new ByteArrayOutputStream();
+			new DeflateFrameSerializer().serialize(payload, frame);
+			assertEquals(1, frame.toByteArray()[4]);
+			assertThat(frame.size(), Matchers.lessThan(payload.length / 10));
+			Socket socket = SocketFactory.getDefault().createSocket("localhost", getPort());
+			socket.getOutputStream().write(frame.toByteArray());
+			assertThat(this.messageCollector.forChannel(channels.output()), receivesPayloadThat(is(payload)));
+			socket.close();
+		}
+
+	}
+
+	@TestPropertySource(properties = { "tcp.decoder = L4_CRC32C" })
+	public static class L4_CRC32CTests extends TcpSourceTests {
+
+		@Autowired
+		private ChecksumFailureCounter checksumFailureCounter;
+
+		@Autowired
+		private ConfigurableApplicationContext context;
+
+		@Test
+		public void test() throws Exception {
+			assertSame(this.checksumFailureCounter, TestUtils.getPropertyValue(this.connectionFactory,
+					"deserializer.checksumFailureCounter"));
+			ByteArrayOutputStream frame = new ByteArrayOutputStream();
+			new Crc32cFrameSerializer().serialize("foo".getBytes(), frame);
+			Socket socket = SocketFactory.getDefault().createSocket("localhost", getPort());
+			socket.getOutputStream().write(frame.toByteArray());
+			assertThat(this.messageCollector.forChannel(channels.output()), receivesPayloadThat(is("foo".getBytes())));
+			socket.close();
+		}
+
+		@Test
+		public void corrupted() throws Exception {
+			BlockingQueue<TcpDeserializationExceptionEvent> events = new LinkedBlockingQueue<>();
+			this.context.addApplicationListener((ApplicationListener<ApplicationEvent>) event -> {
+				if (event instanceof TcpDeserializationExceptionEvent) {
+					events.add((TcpDeserializationExceptionEvent) event);
+				}
+			});
+			ByteArrayOutputStream frame = new ByteArrayOutputStream();
+			new Crc32cFrameSerializer().serialize("foo".getBytes(), frame);
+			byte[] corrupt = frame.toByteArray();
+			corrupt[5] = 'x';
+			Socket socket = SocketFactory.getDefault().createSocket("localhost", getPort());
+			socket.setSoTimeout(10000);
+			socket.getOutputStream().write(corrupt);
+			TcpDeserializationExceptionEvent event = events.poll(10, TimeUnit.SECONDS);
+			assertNotNull(event);
+			assertThat(event.getCause().getMessage(), Matchers.startsWith("CRC32C mismatch"));
+			assertThat(event.getBuffer(), is("fxo".getBytes()));
+			assertEquals(1, this.checksumFailureCounter.getChecksumFailures());
+			try {
+				// the connection is closed
+				assertEquals(-1, socket.getInputStream().read());
+			}
+			catch (SocketException e) {
+				// reset
+			}
+			assertNull(this.messageCollector.forChannel(channels.output()).poll(100, TimeUnit.MILLISECONDS));
+			socket.close();
+		}
+
+	}
+
+	@TestPropertySource(properties = { "tcp.decoder = DELIMITER", "tcp.delimiter = <EOR>" })
+	public static class DELIMITERTests extends TcpSourceTests {
+
+		@Test
+		public void test() throws Exception {
+			assertThat(TestUtils.getPropertyValue(this.connectionFactory, "deserializer"),
+					Matchers.instanceOf(HorspoolDelimitedFrameSerializer.class));
+			doTest("", "foo", "<EOR>");
+		}
+
+	}
+
 	@TestPropertySource(properties = { "tcp.decoder = RAW" })
 	public static class RAWTests extends TcpSourceTests {
 
@@ -173,6 +363,437 @@ public abstract class TcpSourceTests {
 
 	}
 
+	@TestPropertySource(properties = { "tcp.inPlaceDecoding = true" })
+	public static class InPlaceCRLFTests extends TcpSourceTests {
+
+		@Test
+		public void test() throws Exception {
+			assertThat(TestUtils.getPropertyValue(this.connectionFactory, "deserializer"),
+					Matchers.instanceOf(DelimitedFrameSerializer.class));
+			assertThat(TestUtils.getPropertyValue(this.connectionFactory, "tcpNetConnectionSupport"),
+					Matchers.instanceOf(FrameConnectionSupport.class));
+			doTest("", "foo", "\r\n");
+			Socket socket = SocketFactory.getDefault().createSocket("localhost", getPort());
+			socket.getOutputStream().write("foo\r\nbar\r\nbaz\r\n".getBytes());
+			assertThat(this.messageCollector.forChannel(channels.output()), receivesPayloadThat(is("foo".getBytes())));
+			assertThat(this.messageCollector.forChannel(channels.output()), receivesPayloadThat(is("bar".getBytes())));
+			assertThat(this.messageCollector.forChannel(channels.output()), receivesPayloadThat(is("baz".getBytes())));
+			socket.close();
+		}
+
+	}
+
+	@TestPropertySource(properties = { "tcp.inPlaceDecoding = true", "tcp.bufferSize = 1048576",
+			"tcp.bufferPoolSize = 4", "tcp.bufferPoolMaxRetained = 65536" })
+	public static class BufferPoolTests extends TcpSourceTests {
+
+		@Test
+		public void test() throws Exception {
+			assertEquals(4, TestUtils.getPropertyValue(this.connectionFactory, "deserializer.bufferPool.poolSize"));
+			assertEquals(65536L,
+					TestUtils.getPropertyValue(this.connectionFactory, "deserializer.bufferPool.maxRetained"));
+			doTest("", "foo", "\r\n");
+		}
+
+	}
+
+	@TestPropertySource(properties = { "tcp.decoder = L4", "tcp.inPlaceDecoding = true" })
+	public static class InPlaceL4Tests extends TcpSourceTests {
+
+		@Test
+		public void test() throws Exception {
+			doTest("\u0000\u0000\u0000\u0003", "foo", "");
+		}
+
+	}
+
+	@TestPropertySource(properties = { "tcp.decoder = LF", "tcp.delimiterScan = SWAR" })
+	public static class SwarLFTests extends TcpSourceTests {
+
+		@Test
+		public void test() throws Exception {
+			assertThat(TestUtils.getPropertyValue(this.connectionFactory, "deserializer"),
+					Matchers.instanceOf(SwarDelimitedFrameSerializer.class));
+			doTest("", "foo bar baz qux", "\n");
+		}
+
+	}
+
+	@TestPropertySource(properties = { "tcp.decoder = LF", "tcp.bufferSize = 4", "tcp.streaming = true" })
+	public static class StreamingTests extends TcpSourceTests {
+
+		@Test
+		public void test() throws Exception {
+			Socket socket = SocketFactory.getDefault().createSocket("localhost", getPort());
+			socket.getOutputStream().write("foo\nfoo bar\n".getBytes());
+			BlockingQueue<Message<?>> messages = this.messageCollector.forChannel(this.channels.output());
+			Message<?> message = messages.poll(10, TimeUnit.SECONDS);
+			assertThat(message.getPayload(), is("foo".getBytes()));
+			assertNull(message.getHeaders().get(IntegrationMessageHeaderAccessor.SEQUENCE_NUMBER));
+			message = messages.poll(10, TimeUnit.SECONDS);
+			assertThat(message.getPayload(), is("foo ".getBytes()));
+			assertEquals(1, message.getHeaders().get(IntegrationMessageHeaderAccessor.SEQUENCE_NUMBER));
+			assertEquals(false, message.getHeaders().get(InboundTcpMessageMapper.LAST_CHUNK));
+			Object correlationId = message.getHeaders().get(IntegrationMessageHeaderAccessor.CORRELATION_ID);
+			message = messages.poll(10, TimeUnit.SECONDS);
+			assertThat(message.getPayload(), is("bar".getBytes()));
+			assertEquals(2, message.getHeaders().get(IntegrationMessageHeaderAccessor.SEQUENCE_NUMBER));
+			assertEquals(2, message.getHeaders().get(IntegrationMessageHeaderAccessor.SEQUENCE_SIZE));
+			assertEquals(true, message.getHeaders().get(InboundTcpMessageMapper.LAST_CHUNK));
+			assertEquals(correlationId, message.getHeaders().get(IntegrationMessageHeaderAccessor.CORRELATION_ID));
+			socket.close();
+		}
+
+	}
+
+	@TestPropertySource(properties = { "tcp.decoder = LF", "tcp.batchSize = 3", "tcp.batchTimeout = 60000" })
+	public static class BatchingTests extends TcpSourceTests {
+
+		@Test
+		public void test() throws Exception {
+			Socket socket = SocketFactory.getDefault().createSocket("localhost", getPort());
+			socket.getOutputStream().write("a\nbb\nc\n".getBytes());
+			assertThat(this.messageCollector.forChannel(this.channels.output()), receivesPayloadThat(
+					is(new byte[] { 0, 0, 0, 1, 'a', 0, 0, 0, 2, 'b', 'b', 0, 0, 0, 1, 'c' })));
+			socket.close();
+		}
+
+	}
+
+	@TestPropertySource(properties = { "tcp.highWatermark = 10", "tcp.connectionHighWatermark = 2" })
+	public static class FlowControlTests extends TcpSourceTests {
+
+		@Autowired
+		private FlowControlInterceptor flowControl;
+
+		@Test
+		public void test() throws Exception {
+			assertThat(((InterceptableChannel) this.channels.output()).getInterceptors(),
+					Matchers.hasItem(this.flowControl));
+			assertEquals(5, this.flowControl.getLowWatermark());
+			assertEquals(1, this.flowControl.getConnectionLowWatermark());
+			doTest("", "foo", "\r\n");
+			assertEquals(0, this.flowControl.getInFlight());
+			assertEquals(0, this.flowControl.getPausedConnections());
+		}
+
+	}
+
+	@TestPropertySource(properties = { "tcp.connectionHighWatermark = 2", "tcp.connectionLowWatermark = 1",
+			"tcp.flowControlConfirmChannel = tcpSourceConfirms" })
+	public static class ConfirmedFlowControlTests extends TcpSourceTests {
+
+		@Autowired
+		private FlowControlInterceptor flowControl;
+
+		@Autowired
+		@Qualifier("tcpSourceConfirms")
+		private MessageChannel confirms;
+
+		@Test
+		public void test() throws Exception {
+			Socket socket = SocketFactory.getDefault().createSocket("localhost", getPort());
+			socket.getOutputStream().write("a\r\nb\r\nc\r\nd\r\n".getBytes());
+			BlockingQueue<Message<?>> messages = this.messageCollector.forChannel(this.channels.output());
+			Message<?> a = messages.poll(10, TimeUnit.SECONDS);
+			Message<?> b = messages.poll(10, TimeUnit.SECONDS);
+			assertThat(b.getPayload(), is("b".getBytes()));
+			// sent but not confirmed by the binder, so the connection stops reading
+			int n = 0;
+			while (n++ < 100 && this.flowControl.getPausedConnections() == 0) {
+				Thread.sleep(100);
+			}
+			assertEquals(1, this.flowControl.getPausedConnections());
+			assertEquals(2, this.flowControl.getInFlight());
+			assertEquals(2, this.flowControl.getUnconfirmed());
+			assertNull(messages.poll(500, TimeUnit.MILLISECONDS));
+			this.confirms.send(a);
+			Message<?> c = messages.poll(10, TimeUnit.SECONDS);
+			assertThat(c.getPayload(), is("c".getBytes()));
+			assertNull(messages.poll(500, TimeUnit.MILLISECONDS));
+			// a confirmation carrying the sent message, as with publisher confirms
+			this.confirms.send(MessageBuilder.withPayload(b).build());
+			Message<?> d = messages.poll(10, TimeUnit.SECONDS);
+			assertThat(d.getPayload(), is("d".getBytes()));
+			this.confirms.send(c);
+			this.confirms.send(d);
+			assertEquals(0, this.flowControl.getInFlight());
+			assertEquals(0, this.flowControl.getUnconfirmed());
+			assertEquals(0, this.flowControl.getPausedConnections());
+			socket.close();
+		}
+
+	}
+
+	@TestPropertySource(properties = { "tcp.maxConnectionsPerAddress = 1" })
+	public static class AdmissionControlTests extends TcpSourceTests {
+
+		@Autowired
+		private TcpSourceAdmissionControl admissionControl;
+
+		@Test
+		public void test() throws Exception {
+			Socket socket = SocketFactory.getDefault().createSocket("localhost", getPort());
+			socket.getOutputStream().write("foo\r\n".getBytes());
+			assertThat(this.messageCollector.forChannel(this.channels.output()),
+					receivesPayloadThat(is("foo".getBytes())));
+			Socket rejected = SocketFactory.getDefault().createSocket("localhost", getPort());
+			rejected.setSoTimeout(10000);
+			try {
+				assertEquals(-1, rejected.getInputStream().read());
+			}
+			catch (SocketException e) {
+				// reset
+			}
+			assertEquals(1, this.admissionControl.getRejectedMaxConnectionsPerAddress());
+			assertEquals(1, this.admissionControl.getOpenConnections());
+			rejected.close();
+			socket.close();
+			int n = 0;
+			while (n++ < 100 && this.admissionControl.getOpenConnections() > 0) {
+				Thread.sleep(100);
+			}
+			assertEquals(0, this.admissionControl.getOpenConnections());
+			socket = SocketFactory.getDefault().createSocket("localhost", getPort());
+			socket.getOutputStream().write("bar\r\n".getBytes());
+			assertThat(this.messageCollector.forChannel(this.channels.output()),
+					receivesPayloadThat(is("bar".getBytes())));
+			assertEquals(0, this.admissionControl.getFailedConnections());
+			socket.close();
+		}
+
+	}
+
+	@TestPropertySource(properties = { "tcp.acceptorShards = 3" })
+	public static class AcceptorShardsTests extends TcpSourceTests {
+
+		@Autowired
+		private TcpSourceAcceptorShards shards;
+
+		@BeforeClass
+		public static void reusePortSupported() {
+			try {
+				StandardSocketOptions.class.getField("SO_REUSEPORT");
+			}
+			catch (NoSuchFieldException e) {
+				Assume.assumeNoException("SO_REUSEPORT requires Java 9 or later", e);
+			}
+		}
+
+		@Test
+		public void test() throws Exception {
+			int port = getPort();
+			int[] counts = this.shards.getConnectionCounts();
+			assertEquals(3, counts.length);
+			// the kernel spreads connections across the shards; open them until each has one
+			Socket[] shardSockets = new Socket[counts.length];
+			List<Socket> sockets = new ArrayList<>();
+			int found = 0;
+			while (found < shardSockets.length && sockets.size() < 200) {
+				Socket socket = SocketFactory.getDefault().createSocket("localhost", port);
+				sockets.add(socket);
+				int[] previous = counts;
+				int n = 0;
+				do {
+					Thread.sleep(10);
+					counts = this.shards.getConnectionCounts();
+				}
+				while (n++ < 500 && Arrays.stream(counts).sum() == Arrays.stream(previous).sum());
+				for (int i = 0; i < counts.length; i++) {
+					if (counts[i] > previous[i] && shardSockets[i] == null) {
+						shardSockets[i] = socket;
+						found++;
+					}
+				}
+			}
+			assertEquals("connections per shard: " + Arrays.toString(counts), shardSockets.length, found);
+			for (int i = 0; i < shardSockets.length; i++) {
+				shardSockets[i].getOutputStream().write(("shard" + i + "\r\n").getBytes());
+				assertThat(this.messageCollector.forChannel(this.channels.output()),
+						receivesPayloadThat(is(("shard" + i).getBytes())));
+			}
+			for (Socket socket : sockets) {
+				socket.close();
+			}
+		}
+
+	}
+
+	@TestPropertySource(properties = { "tcp.nio = true" })
+	public static class NioAcceptorShardsTests extends AcceptorShardsTests {
+
+	}
+
+	@TestPropertySource(properties = { "tcp.reverseLookup = true" })
+	public static class ReverseLookupTests extends TcpSourceTests {
+
+		@Autowired
+		private ReverseLookupCache reverseLookupCache;
+
+		@Test
+		public void test() throws Exception {
+			doTest("", "foo", "\r\n");
+			assertEquals(1, this.reverseLookupCache.getSize());
+			assertEquals(1, this.reverseLookupCache.getMisses());
+		}
+
+	}
+
+	@TestPropertySource(properties = { "tcp.nio = true", "tcp.idleTimingWheel = true", "tcp.socketTimeout = 500" })
+	public static class IdleTimingWheelTests extends TcpSourceTests {
+
+		@Autowired
+		private IdleConnectionTimingWheel idleTimingWheel;
+
+		@Test
+		public void test() throws Exception {
+			assertEquals(0, TestUtils.getPropertyValue(this.connectionFactory, "soTimeout"));
+			Socket socket = SocketFactory.getDefault().createSocket("localhost", getPort());
+			socket.getOutputStream().write("foo\r\n".getBytes());
+			assertThat(this.messageCollector.forChannel(this.channels.output()),
+					receivesPayloadThat(is("foo".getBytes())));
+			socket.setSoTimeout(10000);
+			assertEquals(-1, socket.getInputStream().read());
+			assertEquals(1, this.idleTimingWheel.getIdleConnectionsClosed());
+			socket.close();
+		}
+
+	}
+
+	@TestPropertySource(properties = { "tcp.leanHeaders = ip_connectionId,ip_tcp_remotePort" })
+	public static class LeanHeadersTests extends TcpSourceTests {
+
+		@Test
+		public void test() throws Exception {
+			Socket socket = SocketFactory.getDefault().createSocket("localhost", getPort());
+			socket.getOutputStream().write("foo\r\nbar\r\n".getBytes());
+			BlockingQueue<Message<?>> messages = this.messageCollector.forChannel(this.channels.output());
+			Message<?> foo = messages.poll(10, TimeUnit.SECONDS);
+			Message<?> bar = messages.poll(10, TimeUnit.SECONDS);
+			assertThat(bar.getPayload(), is("bar".getBytes()));
+			assertEquals(socket.getLocalPort(), bar.getHeaders().get(IpHeaders.REMOTE_PORT));
+			assertNull(bar.getHeaders().get(IpHeaders.IP_ADDRESS));
+			assertNull(bar.getHeaders().get(IpHeaders.HOSTNAME));
+			assertSame(foo.getHeaders().get(IpHeaders.CONNECTION_ID), bar.getHeaders().get(IpHeaders.CONNECTION_ID));
+			socket.close();
+		}
+
+	}
+
+	@TestPropertySource(properties = { "tcp.reverseLookup = true", "tcp.leanHeaders = ip_connectionId,ip_hostname" })
+	public static class LeanHeadersReverseLookupTests extends TcpSourceTests {
+
+		@Autowired
+		private ReverseLookupCache reverseLookupCache;
+
+		@Test
+		public void test() throws Exception {
+			Socket socket = SocketFactory.getDefault().createSocket("localhost", getPort());
+			socket.getOutputStream().write("foo\r\n".getBytes());
+			BlockingQueue<Message<?>> messages = this.messageCollector.forChannel(this.channels.output());
+			Message<?> foo = messages.poll(10, TimeUnit.SECONDS);
+			assertNotNull(foo);
+			// not yet resolved when the connection opened
+			String address = socket.getInetAddress().getHostAddress();
+			assertEquals(address, foo.getHeaders().get(IpHeaders.HOSTNAME));
+			int n = 0;
+			String hostName = address;
+			while (n++ < 100 && hostName.equals(address) && this.reverseLookupCache.getLookupFailures() == 0) {
+				Thread.sleep(100);
+				hostName = this.reverseLookupCache.getHostName(socket.getInetAddress());
+			}
+			socket.getOutputStream().write("bar\r\n".getBytes());
+			Message<?> bar = messages.poll(10, TimeUnit.SECONDS);
+			assertThat(bar.getPayload(), is("bar".getBytes()));
+			assertEquals(hostName, bar.getHeaders().get(IpHeaders.HOSTNAME));
+			assertSame(foo.getHeaders().get(IpHeaders.CONNECTION_ID), bar.getHeaders().get(IpHeaders.CONNECTION_ID));
+			assertNull(bar.getHeaders().get(IpHeaders.IP_ADDRESS));
+			socket.close();
+		}
+
+	}
+
+	@TestPropertySource(properties = { "tcp.spoolDirectory = ${java.io.tmpdir}/tcp-source-spool-${random.uuid}",
+			"tcp.spoolSegmentSize = 1024", "tcp.spoolRetryInterval = 100" })
+	public static class SpoolTests extends TcpSourceTests {
+
+		@Autowired
+		private SegmentSpool spool;
+
+		@Test
+		public void test() throws Exception {
+			AtomicBoolean unavailable = new AtomicBoolean(true);
+			ChannelInterceptor interceptor = new ChannelInterceptor() {
+
+				@Override
+				public Message<?> preSend(Message<?> message, MessageChannel channel) {
+					if (unavailable.get()) {
+						throw new MessageDeliveryException(message, "binder unavailable");
+					}
+					return message;
+				}
+
+			};
+			((InterceptableChannel) this.channels.output()).addInterceptor(interceptor);
+			Socket socket = SocketFactory.getDefault().createSocket("localhost", getPort());
+			socket.getOutputStream().write("foo\r\nbar\r\n".getBytes());
+			int n = 0;
+			while (n++ < 100 && this.spool.getRecords() < 2) {
+				Thread.sleep(100);
+			}
+			assertEquals(2, this.spool.getRecords());
+			unavailable.set(false);
+			BlockingQueue<Message<?>> messages = this.messageCollector.forChannel(this.channels.output());
+			Message<?> foo = messages.poll(10, TimeUnit.SECONDS);
+			assertThat(foo.getPayload(), is("foo".getBytes()));
+			assertEquals(true, foo.getHeaders().get(SpoolingOutputChannel.SPOOLED));
+			assertThat(messages.poll(10, TimeUnit.SECONDS).getPayload(), is("bar".getBytes()));
+			socket.getOutputStream().write("baz\r\n".getBytes());
+			Message<?> baz = messages.poll(10, TimeUnit.SECONDS);
+			assertThat(baz.getPayload(), is("baz".getBytes()));
+			assertNull(baz.getHeaders().get(SpoolingOutputChannel.SPOOLED));
+			assertTrue(this.spool.isEmpty());
+			((InterceptableChannel) this.channels.output()).removeInterceptor(interceptor);
+			socket.close();
+		}
+
+	}
+
+	@TestPropertySource(properties = { "tcp.spoolDirectory = ${java.io.tmpdir}/tcp-source-spool-${random.uuid}",
+			"tcp.spoolSegmentSize = 1024", "tcp.spoolRetryInterval = 100", "tcp.spoolMaxAttempts = 3" })
+	public static class SpoolMaxAttemptsTests extends TcpSourceTests {
+
+		@Autowired
+		private SpoolingOutputChannel spoolChannel;
+
+		@Test
+		public void test() throws Exception {
+			ChannelInterceptor interceptor = new ChannelInterceptor() {
+
+				@Override
+				public Message<?> preSend(Message<?> message, MessageChannel channel) {
+					if (Arrays.equals((byte[]) message.getPayload(), "poison".getBytes())) {
+						throw new MessageDeliveryException(message, "cannot be sent");
+					}
+					return message;
+				}
+
+			};
+			((InterceptableChannel) this.channels.output()).addInterceptor(interceptor);
+			Socket socket = SocketFactory.getDefault().createSocket("localhost", getPort());
+			socket.getOutputStream().write("poison\r\nfoo\r\n".getBytes());
+			// held back by the poison message until it is discarded
+			Message<?> foo = this.messageCollector.forChannel(this.channels.output()).poll(10, TimeUnit.SECONDS);
+			assertThat(foo.getPayload(), is("foo".getBytes()));
+			assertEquals(true, foo.getHeaders().get(SpoolingOutputChannel.SPOOLED));
+			assertEquals(1, this.spoolChannel.getDiscarded());
+			assertFalse(this.spoolChannel.discardHead());
+			((InterceptableChannel) this.channels.output()).removeInterceptor(interceptor);
+			socket.close();
+		}
+
+	}
+
 	/*
 	 * Sends two messages with <prefix><payload><suffix> and asserts the
 	 * payload is received on the other side.
@@ -194,7 +815,7 @@ public abstract class TcpSourceTests {
 		socket.close();
 	}
 
-	private int getPort() throws Exception {
+	protected int getPort() throws Exception {
 		int n = 0;
 		while (n++ < 100 && !this.connectionFactory.isListening()) {
 			Thread.sleep(100);
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.app.tcp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import org.springframework.integration.ip.tcp.serializer.AbstractByteArraySerializer;
+import org.springframework.integration.ip.tcp.serializer.SoftEndOfStreamException;
+import org.springframework.util.Assert;
+
+/**
+ * Base class for the frame serializers used when decoding in place. Frames are
+ * assembled in a working buffer from a {@link FrameBufferPool} (rather than a freshly
+ * allocated buffer of {@code maxMessageSize} per frame) and handed out as a single,
+ * exactly sized copy.
+ * <p>
+ * When the connection's stream supports {@link InputStream#mark(int) mark/reset}, as
+ * the streams of blocking connections created by a {@link FrameConnectionSupport} do,
+ * subclasses read whatever is available in bulk and scan it in place, giving back
+ * any bytes that belong to the next frame; otherwise (in particular on NIO
+ * connections) they fall back to reading a byte at a time, so that no data is consumed
+ * beyond the end of the current frame.
+ * <p>
+ * When encoding, the header (if any) is written with a single call; the connections
+ * write through a buffered stream, so no further coalescing is needed here.
+ */
+public abstract class AbstractFrameSerializer extends AbstractByteArraySerializer {
+
+	private FrameBufferPool bufferPool = new FrameBufferPool();
+
+	/**
+	 * Set the pool from which working buffers are obtained.
+	 * @param bufferPool the pool.
+	 */
+	public void setBufferPool(FrameBufferPool bufferPool) {
+		Assert.notNull(bufferPool, "'bufferPool' cannot be null");
+		this.bufferPool = bufferPool;
+	}
+
+	protected FrameBufferPool getBufferPool() {
+		return this.bufferPool;
+	}
+
+	/**
+	 * Obtain a working buffer of at least {@code minCapacity} bytes; it must be
+	 * {@link #releaseBuffer(byte[]) released} when the frame is complete.
+	 * @param minCapacity the minimum capacity.
+	 * @return the buffer.
+	 */
+	protected byte[] acquireBuffer(int minCapacity) {
+		return this.bufferPool.acquire(minCapacity);
+	}
+
+	/**
+	 * Replace a full working buffer with a larger one, preserving its content.
+	 * @param buffer the buffer.
+	 * @param length the number of bytes to preserve.
+	 * @return the new buffer.
+	 */
+	protected byte[] growBuffer(byte[] buffer, int length) {
+		byte[] grown = this.bufferPool.acquire(buffer.length << 1 < 0 ? Integer.MAX_VALUE : buffer.length << 1);
+		System.arraycopy(buffer, 0, grown, 0, length);
+		this.bufferPool.release(buffer);
+		return grown;
+	}
+
+	/**
+	 * Return a working buffer to the pool.
+	 * @param buffer the buffer.
+	 */
+	protected void releaseBuffer(byte[] buffer) {
+		this.bufferPool.release(buffer);
+	}
+
+	/**
+	 * Read the first byte of a frame.
+	 * @param inputStream the stream.
+	 * @return the byte.
+	 * @throws IOException if the stream is closed; a {@link SoftEndOfStreamException}
+	 * if it is closed between frames.
+	 */
+	protected int readFirstByte(InputStream inputStream) throws IOException {
+		int bite = inputStream.read();
+		if (bite < 0) {
+			throw new SoftEndOfStreamException("Stream closed between payloads");
+		}
+		return bite;
+	}
+
+	/**
+	 * Read exactly {@code length} bytes into the buffer.
+	 * @param inputStream the stream.
+	 * @param buffer the buffer.
+	 * @param offset the offset in the buffer.
+	 * @param length the number of bytes.
+	 * @throws IOException if the stream is closed before all the bytes are read.
+	 */
+	protected void readFully(InputStream inputStream, byte[] buffer, int offset, int length) throws IOException {
+		int n = 0;
+		while (n < length) {
+			int len = inputStream.read(buffer, offset + n, length - n);
+			if (len < 0) {
+				throw new IOException("Stream closed after " + n + " of " + length);
+			}
+			n += len;
+		}
+	}
+
+	/**
+	 * Read as many bytes as can be read without blocking (at least one) into the buffer,
+	 * after marking the stream so that the caller can give back whatever it does not
+	 * consume. Must only be called when the stream {@link InputStream#markSupported()
+	 * supports mark}.
+	 * @param inputStream the stream.
+	 * @param buffer the buffer.
+	 * @param offset the offset in the buffer.
+	 * @param length the space available in the buffer.
+	 * @return the number of bytes read, or -1 at the end of the stream.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	protected int readAvailable(InputStream inputStream, byte[] buffer, int offset, int length) throws IOException {
+		int toRead = Math.min(length, Math.max(1, inputStream.available()));
+		inputStream.mark(toRead);
+		return inputStream.read(buffer, offset, toRead);
+	}
+
+	/**
+	 * Give back the bytes read by the last {@link #readAvailable} call, except for the
+	 * first {@code consumed}.
+	 * @param inputStream the stream.
+	 * @param consumed the number of bytes to keep.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	protected void unread(InputStream inputStream, int consumed) throws IOException {
+		inputStream.reset();
+		int remaining = consumed;
+		while (remaining > 0) {
+			long skipped = inputStream.skip(remaining);
+			if (skipped <= 0) {
+				checkClosure(inputStream.read());
+				skipped = 1;
+			}
+			remaining -= skipped;
+		}
+	}
+
+	/**
+	 * Publish a deserialization event and return the exception to throw.
+	 * @param message the exception message.
+	 * @param buffer the buffer containing the partial frame.
+	 * @param offset the number of bytes in the buffer.
+	 * @return the exception.
+	 */
+	protected IOException frameError(String message, byte[] buffer, int offset) {
+		IOException e = new IOException(message);
+		publishEvent(e, buffer, offset);
+		return e;
+	}
+
+	/**
+	 * Write a frame to the stream.
+	 * @param outputStream the stream.
+	 * @param header the header.
+	 * @param headerLength the length of the header.
+	 * @param payload the payload.
+	 * @param payloadLength the length of the payload.
+	 * @param trailer the trailer, or null for none.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	protected void writeFrame(OutputStream outputStream, byte[] header, int headerLength, byte[] payload,
+			int payloadLength, byte[] trailer) throws IOException {
+
+		if (headerLength > 0) {
+			outputStream.write(header, 0, headerLength);
+		}
+		outputStream.write(payload, 0, payloadLength);
+		if (trailer != null) {
+			outputStream.write(trailer);
+		}
+	}
+
+	/**
+	 * Copy the frame out of the working buffer.
+	 * @param buffer the buffer.
+	 * @param offset the offset of the frame.
+	 * @param length the length of the frame.
+	 * @return the exactly sized frame.
+	 */
+	protected byte[] copyFrame(byte[] buffer, int offset, int length) {
+		return Arrays.copyOfRange(buffer, offset, offset + length);
+	}
+
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.app.tcp;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Converts between bytes and characters in a charset. UTF-8, ISO-8859-1 and US-ASCII
+ * are converted by {@code String} itself, which on Java 9 and later checks for ASCII
+ * and Latin-1 text with intrinsics and keeps such text in its compact one-byte form;
+ * decoding into a {@code char[]} first would widen it to UTF-16 and narrow it again.
+ * Other charsets are converted with a decoder, an encoder and output buffers reused
+ * per thread rather than created for each conversion; buffers of more than
+ * {@value #MAX_CACHED_BUFFER_SIZE} characters or bytes are not kept. As with
+ * {@code String}, malformed and unmappable input is replaced rather than rejected.
+ */
+public class CharsetCodec {
+
+	/**
+	 * The capacity of the largest output buffer kept for reuse by each thread.
+	 */
+	public static final int MAX_CACHED_BUFFER_SIZE = 64 * 1024;
+
+	private final Charset charset;
+
+	private final boolean standard;
+
+	private final ThreadLocal<CharsetDecoder> decoders;
+
+	private final ThreadLocal<CharsetEncoder> encoders;
+
+	private final ThreadLocal<CharBuffer> charBuffers = new ThreadLocal<>();
+
+	private final ThreadLocal<ByteBuffer> byteBuffers = new ThreadLocal<>();
+
+	public CharsetCodec(Charset charset) {
+		this.charset = charset;
+		this.standard = StandardCharsets.UTF_8.equals(charset) || StandardCharsets.ISO_8859_1.equals(charset)
+				|| StandardCharsets.US_ASCII.equals(charset);
+		this.decoders = ThreadLocal.withInitial(() -> charset.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE));
+		this.encoders = ThreadLocal.withInitial(() -> charset.newEncoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE));
+	}
+
+	public Charset getCharset() {
+		return this.charset;
+	}
+
+	/**
+	 * Decode the bytes.
+	 * @param bytes the bytes.
+	 * @return the string.
+	 */
+	public String decode(byte[] bytes) {
+		if (this.standard) {
+			return new String(bytes, this.charset);
+		}
+		CharsetDecoder decoder = this.decoders.get();
+		CharBuffer chars = charBuffer((int) Math.ceil(bytes.length * (double) decoder.maxCharsPerByte()));
+		decoder.reset();
+		CoderResult result = decoder.decode(ByteBuffer.wrap(bytes), chars, true);
+		if (!result.isUnderflow() || !decoder.flush(chars).isUnderflow()) {
+			try {
+				return decoder.reset().decode(ByteBuffer.wrap(bytes)).toString();
+			}
+			catch (CharacterCodingException e) {
+				// not thrown when replacing errors
+				return new String(bytes, this.charset);
+			}
+		}
+		return new String(chars.array(), 0, chars.position());
+	}
+
+	/**
+	 * Encode the characters.
+	 * @param chars the characters.
+	 * @return the bytes.
+	 */
+	public byte[] encode(CharSequence chars) {
+		if (this.standard) {
+			return chars.toString().getBytes(this.charset);
+		}
+		CharsetEncoder encoder = this.encoders.get();
+		ByteBuffer bytes = byteBuffer((int) Math.ceil(chars.length() * (double) encoder.maxBytesPerChar()));
+		encoder.reset();
+		CharBuffer in = CharBuffer.wrap(chars);
+		CoderResult result = encoder.encode(in, bytes, true);
+		if (!result.isUnderflow() || !encoder.flush(bytes).isUnderflow()) {
+			try {
+				ByteBuffer out = encoder.reset().encode(CharBuffer.wrap(chars));
+				return Arrays.copyOfRange(out.array(), out.arrayOffset(), out.arrayOffset() + out.limit());
+			}
+			catch (CharacterCodingException e) {
+				// not thrown when replacing errors
+				return chars.toString().getBytes(this.charset);
+			}
+		}
+		return Arrays.copyOf(bytes.array(), bytes.position());
+	}
+
+	private CharBuffer charBuffer(int capacity) {
+		if (capacity > MAX_CACHED_BUFFER_SIZE) {
+			return CharBuffer.allocate(capacity);
+		}
+		CharBuffer buffer = this.charBuffers.get();
+		if (buffer == null || buffer.capacity() < capacity) {
+			buffer = CharBuffer.allocate(capacity);
+			this.charBuffers.set(buffer);
+		}
+		buffer.clear();
+		return buffer;
+	}
+
+	private ByteBuffer byteBuffer(int capacity) {
+		if (capacity > MAX_CACHED_BUFFER_SIZE) {
+			return ByteBuffer.allocate(capacity);
+		}
+		ByteBuffer buffer = this.byteBuffers.get();
+		if (buffer == null || buffer.capacity() < capacity) {
+			buffer = ByteBuffer.allocate(capacity);
+			this.byteBuffers.set(buffer);
+		}
+		buffer.clear();
+		return buffer;
+	}
+
+}
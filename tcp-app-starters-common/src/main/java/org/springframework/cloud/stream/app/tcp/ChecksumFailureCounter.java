@@ -0,0 +1,47 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.app.tcp;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.jmx.export.annotation.ManagedMetric;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+/**
+ * Counts the frames a {@link Crc32cFrameSerializer} rejects because of a checksum
+ * mismatch. The serializer is created by an {@link EncoderDecoderFactoryBean}, so is not
+ * itself exported; register an instance as a bean and set it on the factory bean to
+ * expose the count.
+ */
+@ManagedResource
+public class ChecksumFailureCounter {
+
+	private final AtomicLong checksumFailures = new AtomicLong();
+
+	/**
+	 * Return the number of frames rejected because of a checksum mismatch.
+	 * @return the count.
+	 */
+	@ManagedMetric(description = "Frames rejected because of a CRC32C mismatch")
+	public long getChecksumFailures() {
+		return this.checksumFailures.get();
+	}
+
+	void increment() {
+		this.checksumFailures.incrementAndGet();
+	}
+
+}
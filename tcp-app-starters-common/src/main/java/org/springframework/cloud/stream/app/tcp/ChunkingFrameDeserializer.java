@@ -0,0 +1,346 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.app.tcp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.integration.ip.tcp.connection.TcpConnection;
+import org.springframework.util.Assert;
+
+/**
+ * Wraps a frame serializer so that frames larger than {@code maxMessageSize} are
+ * delivered as a sequence of chunks of at most that size, rather than being rejected;
+ * smaller frames are delivered whole, as before. Only one chunk is buffered at a time,
+ * so that memory use is bounded whatever the size of the frame.
+ * <p>
+ * Supports the length header, varint, delimited and raw encodings. The state of a frame
+ * being delivered in chunks is kept on the connection's {@link FrameInputStream}, so the
+ * connection must be created by a {@link FrameConnectionSupport}. Each chunk is
+ * described by a {@link Chunk}, also kept on the stream, which the
+ * {@link InboundTcpMessageMapper} adds to the message as sequence and correlation
+ * headers.
+ */
+public class ChunkingFrameDeserializer extends AbstractFrameSerializer {
+
+	private final AbstractFrameSerializer delegate;
+
+	private long maxFrameSize;
+
+	public ChunkingFrameDeserializer(AbstractFrameSerializer delegate) {
+		// the checksum of a CRC32C frame follows the data, so no chunk could be checked
+		Assert.isTrue(delegate instanceof DelimitedFrameSerializer
+				|| (delegate instanceof LengthHeaderFrameSerializer && !(delegate instanceof Crc32cFrameSerializer))
+				|| delegate instanceof VarintLengthHeaderFrameSerializer || delegate instanceof RawFrameSerializer,
+				() -> "Messages cannot be delivered in chunks with " + delegate);
+		this.delegate = delegate;
+	}
+
+	/**
+	 * The maximum total size of a frame delivered in chunks; 0 (default) for no limit.
+	 * @param maxFrameSize the maximum size.
+	 */
+	public void setMaxFrameSize(long maxFrameSize) {
+		Assert.isTrue(maxFrameSize >= 0, "'maxFrameSize' cannot be negative");
+		this.maxFrameSize = maxFrameSize;
+	}
+
+	/**
+	 * The maximum size of a message; larger frames are delivered in chunks of this size.
+	 * @param maxMessageSize the maximum message size.
+	 */
+	@Override
+	public void setMaxMessageSize(int maxMessageSize) {
+		super.setMaxMessageSize(maxMessageSize);
+		this.delegate.setMaxMessageSize(maxMessageSize);
+	}
+
+	@Override
+	public void setApplicationEventPublisher(ApplicationEventPublisher applicationEventPublisher) {
+		super.setApplicationEventPublisher(applicationEventPublisher);
+		this.delegate.setApplicationEventPublisher(applicationEventPublisher);
+	}
+
+	@Override
+	public void setBufferPool(FrameBufferPool bufferPool) {
+		super.setBufferPool(bufferPool);
+		this.delegate.setBufferPool(bufferPool);
+	}
+
+	@Override
+	public byte[] deserialize(InputStream inputStream) throws IOException {
+		if (!(inputStream instanceof FrameInputStream)) {
+			throw new IllegalStateException("Messages can only be delivered in chunks on connections created by a "
+					+ FrameConnectionSupport.class.getSimpleName());
+		}
+		FrameInputStream frameInput = (FrameInputStream) inputStream;
+		frameInput.setChunk(null);
+		if (this.delegate instanceof DelimitedFrameSerializer) {
+			return deserializeDelimited(frameInput, (DelimitedFrameSerializer) this.delegate);
+		}
+		else if (this.delegate instanceof RawFrameSerializer) {
+			return deserializeRaw(frameInput);
+		}
+		else {
+			return deserializeLengthHeader(frameInput);
+		}
+	}
+
+	private byte[] deserializeLengthHeader(FrameInputStream inputStream) throws IOException {
+		FrameState state = inputStream.getFrameState();
+		int chunkSize = getMaxMessageSize();
+		if (state.sequence == 0) {
+			long length = this.delegate instanceof LengthHeaderFrameSerializer
+					? ((LengthHeaderFrameSerializer) this.delegate).readLength(inputStream)
+					: ((VarintLengthHeaderFrameSerializer) this.delegate).readLength(inputStream);
+			if (length <= chunkSize) {
+				byte[] frame = new byte[(int) length];
+				readFully(inputStream, frame, 0, frame.length);
+				return frame;
+			}
+			if (this.maxFrameSize > 0 && length > this.maxFrameSize) {
+				throw frameError("Message length " + length + " exceeds max frame size: " + this.maxFrameSize,
+						new byte[0], 0);
+			}
+			state.remaining = length;
+			state.sequenceSize = (int) ((length + chunkSize - 1) / chunkSize);
+		}
+		byte[] chunk = new byte[(int) Math.min(state.remaining, chunkSize)];
+		readFully(inputStream, chunk, 0, chunk.length);
+		state.remaining -= chunk.length;
+		return emit(inputStream, state, chunk, state.remaining == 0);
+	}
+
+	private byte[] deserializeDelimited(FrameInputStream inputStream, DelimitedFrameSerializer delimited)
+			throws IOException {
+
+		FrameState state = inputStream.getFrameState();
+		int length = delimited.getTerminator().length;
+		int chunkSize = getMaxMessageSize();
+		int limit = chunkSize + length;
+		byte[] buffer = acquireBuffer(limit);
+		int n = 0;
+		try {
+			if (state.sequence == 0) {
+				int bite = readFirstByte(inputStream);
+				if (delimited.getStart() >= 0) {
+					if (bite != delimited.getStart()) {
+						throw frameError("Expected " + delimited.getStart() + " to begin message, not " + bite,
+								buffer, 0);
+					}
+				}
+				else {
+					buffer[n++] = (byte) bite;
+				}
+			}
+			else {
+				System.arraycopy(state.carry, 0, buffer, 0, state.carryLength);
+				n = state.carryLength;
+			}
+			boolean bulk = inputStream.markSupported();
+			int index = delimited.indexOf(buffer, 0, n);
+			while (index < 0 && n < limit) {
+				if (bulk) {
+					int len = readAvailable(inputStream, buffer, n, limit - n);
+					checkClosure(len);
+					index = delimited.indexOf(buffer, Math.max(0, n - length + 1), n + len);
+					if (index >= 0) {
+						unread(inputStream, index + length - n);
+					}
+					n += len;
+				}
+				else {
+					int bite = inputStream.read();
+					checkClosure(bite);
+					buffer[n++] = (byte) bite;
+					if (n >= length && delimited.matchesAt(buffer, n - length)) {
+						index = n - length;
+					}
+				}
+			}
+			if (index >= 0) {
+				if (state.sequence == 0) {
+					return copyFrame(buffer, 0, index);
+				}
+				checkFrameSize(state, index, buffer, n);
+				return emit(inputStream, state, copyFrame(buffer, 0, index), true);
+			}
+			checkFrameSize(state, chunkSize, buffer, n);
+			// keep the tail, which may hold the start of the terminator, for the next chunk
+			state.carry(buffer, chunkSize, n - chunkSize);
+			return emit(inputStream, state, copyFrame(buffer, 0, chunkSize), false);
+		}
+		finally {
+			releaseBuffer(buffer);
+		}
+	}
+
+	private byte[] deserializeRaw(FrameInputStream inputStream) throws IOException {
+		FrameState state = inputStream.getFrameState();
+		int chunkSize = getMaxMessageSize();
+		// read one byte beyond the chunk to find out whether it is the last one
+		int limit = chunkSize + 1;
+		byte[] buffer = acquireBuffer(limit);
+		int n = 0;
+		try {
+			if (state.sequence == 0) {
+				buffer[n++] = (byte) readFirstByte(inputStream);
+			}
+			else {
+				System.arraycopy(state.carry, 0, buffer, 0, state.carryLength);
+				n = state.carryLength;
+			}
+			while (n < limit) {
+				int len = inputStream.read(buffer, n, limit - n);
+				if (len < 0) {
+					if (state.sequence == 0) {
+						return copyFrame(buffer, 0, n);
+					}
+					checkFrameSize(state, n, buffer, n);
+					return emit(inputStream, state, copyFrame(buffer, 0, n), true);
+				}
+				n += len;
+			}
+			checkFrameSize(state, chunkSize, buffer, n);
+			state.carry(buffer, chunkSize, n - chunkSize);
+			return emit(inputStream, state, copyFrame(buffer, 0, chunkSize), false);
+		}
+		finally {
+			releaseBuffer(buffer);
+		}
+	}
+
+	private void checkFrameSize(FrameState state, int chunkLength, byte[] buffer, int n) throws IOException {
+		if (this.maxFrameSize > 0 && state.size + chunkLength > this.maxFrameSize) {
+			state.reset();
+			throw frameError("Message exceeds max frame size: " + this.maxFrameSize, buffer, n);
+		}
+	}
+
+	private byte[] emit(FrameInputStream inputStream, FrameState state, byte[] chunk, boolean last) {
+		if (state.sequence == 0) {
+			state.frame++;
+		}
+		state.sequence++;
+		state.size += chunk.length;
+		inputStream.setChunk(new Chunk(state.frame, state.sequence, last ? state.sequence : state.sequenceSize, last));
+		if (last) {
+			state.reset();
+		}
+		return chunk;
+	}
+
+	@Override
+	public void serialize(byte[] bytes, OutputStream outputStream) throws IOException {
+		this.delegate.serialize(bytes, outputStream);
+	}
+
+	/**
+	 * Return and clear the description of the chunk most recently decoded on the
+	 * connection.
+	 * @param connection the connection.
+	 * @return the chunk, or null if the last message was a complete frame.
+	 */
+	static Chunk pollChunk(TcpConnection connection) {
+		FrameInputStream inputStream = FrameConnectionSupport.frameInputStream(connection);
+		return inputStream == null ? null : inputStream.pollChunk();
+	}
+
+	/**
+	 * Describes a chunk of a frame.
+	 */
+	public static final class Chunk {
+
+		private final long frame;
+
+		private final int sequenceNumber;
+
+		private final int sequenceSize;
+
+		private final boolean last;
+
+		Chunk(long frame, int sequenceNumber, int sequenceSize, boolean last) {
+			this.frame = frame;
+			this.sequenceNumber = sequenceNumber;
+			this.sequenceSize = sequenceSize;
+			this.last = last;
+		}
+
+		/**
+		 * Return the number of the frame on its connection, starting at 1; only frames
+		 * delivered in chunks are counted.
+		 * @return the frame number.
+		 */
+		public long getFrame() {
+			return this.frame;
+		}
+
+		public int getSequenceNumber() {
+			return this.sequenceNumber;
+		}
+
+		/**
+		 * Return the number of chunks in the frame, or 0 while it is not yet known, which
+		 * is the case for all but the last chunk with the delimited and raw encodings.
+		 * @return the sequence size.
+		 */
+		public int getSequenceSize() {
+			return this.sequenceSize;
+		}
+
+		public boolean isLast() {
+			return this.last;
+		}
+
+	}
+
+	static final class FrameState {
+
+		private long frame;
+
+		private int sequence;
+
+		private int sequenceSize;
+
+		private long size;
+
+		private long remaining;
+
+		private byte[] carry = new byte[0];
+
+		private int carryLength;
+
+		void carry(byte[] buffer, int offset, int length) {
+			if (this.carry.length < length) {
+				this.carry = new byte[length];
+			}
+			System.arraycopy(buffer, offset, this.carry, 0, length);
+			this.carryLength = length;
+		}
+
+		void reset() {
+			this.sequence = 0;
+			this.sequenceSize = 0;
+			this.size = 0;
+			this.remaining = 0;
+			this.carryLength = 0;
+		}
+
+	}
+
+}
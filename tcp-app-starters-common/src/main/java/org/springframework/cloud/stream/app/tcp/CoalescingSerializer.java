@@ -0,0 +1,332 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.app.tcp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.integration.ip.tcp.serializer.AbstractByteArraySerializer;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.Assert;
+
+/**
+ * Wraps an encoder so that the frames sent on each connection are collected in a write
+ * buffer and written to the connection's stream together, when the buffer holds
+ * {@code maxBytes} or {@code maxFrames} frames, or {@code delay} microseconds after the
+ * first frame of the batch was encoded, whichever comes first. This gives the effect
+ * of Nagle's algorithm with a bounded delay; a payload of at least {@code maxBytes} is
+ * written at once, after any frames already collected.
+ * <p>
+ * A connection serializes one frame at a time, so frames are only collected from
+ * several threads sending on the same connection. A sender should not consider its
+ * frame sent until {@link #awaitWritten()} returns: it waits until the batch holding
+ * the last frame the thread collected has been written, and throws the exception if
+ * the write failed. When writing a batch on its deadline fails, the connection's stream
+ * is closed and every later frame for the connection is rejected, so that the
+ * connection is replaced. Decoding is delegated unchanged.
+ */
+public class CoalescingSerializer extends AbstractByteArraySerializer implements DisposableBean {
+
+	private static final Log logger = LogFactory.getLog(CoalescingSerializer.class);
+
+	private final Map<OutputStream, WriteBuffer> buffers = Collections.synchronizedMap(new WeakHashMap<>());
+
+	// the batch holding the frame last collected by each thread
+	private final ThreadLocal<Pending> pending = ThreadLocal.withInitial(Pending::new);
+
+	private final AbstractByteArraySerializer delegate;
+
+	private final int maxBytes;
+
+	private final int maxFrames;
+
+	private final long delay;
+
+	private final ScheduledExecutorService timer;
+
+	private CoalescingStatistics statistics = new CoalescingStatistics();
+
+	/**
+	 * Construct an instance.
+	 * @param delegate the encoder.
+	 * @param maxBytes the buffered bytes at which a batch is written.
+	 * @param maxFrames the buffered frames at which a batch is written; 0 for no limit.
+	 * @param delay the maximum time (us) for which a frame is buffered.
+	 */
+	public CoalescingSerializer(AbstractByteArraySerializer delegate, int maxBytes, int maxFrames, long delay) {
+		Assert.notNull(delegate, "'delegate' cannot be null");
+		Assert.isTrue(maxBytes > 0, "'maxBytes' must be positive");
+		Assert.isTrue(maxFrames >= 0, "'maxFrames' cannot be negative");
+		Assert.isTrue(delay > 0, "'delay' must be positive");
+		this.delegate = delegate;
+		this.maxBytes = maxBytes;
+		this.maxFrames = maxFrames;
+		this.delay = delay;
+		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("tcp-coalesce-");
+		threadFactory.setDaemon(true);
+		this.timer = Executors.newSingleThreadScheduledExecutor(threadFactory);
+	}
+
+	/**
+	 * Set the statistics to which written batches are added, such as one registered as a
+	 * bean to export them.
+	 * @param statistics the statistics.
+	 */
+	public void setStatistics(CoalescingStatistics statistics) {
+		Assert.notNull(statistics, "'statistics' cannot be null");
+		this.statistics = statistics;
+	}
+
+	public CoalescingStatistics getStatistics() {
+		return this.statistics;
+	}
+
+	public long getDelay() {
+		return this.delay;
+	}
+
+	@Override
+	public void setMaxMessageSize(int maxMessageSize) {
+		this.delegate.setMaxMessageSize(maxMessageSize);
+	}
+
+	@Override
+	public int getMaxMessageSize() {
+		return this.delegate.getMaxMessageSize();
+	}
+
+	@Override
+	public void setApplicationEventPublisher(ApplicationEventPublisher applicationEventPublisher) {
+		this.delegate.setApplicationEventPublisher(applicationEventPublisher);
+	}
+
+	@Override
+	public void serialize(byte[] payload, OutputStream outputStream) throws IOException {
+		WriteBuffer buffer = this.buffers.computeIfAbsent(outputStream, WriteBuffer::new);
+		Pending pending = this.pending.get();
+		pending.buffer = null;
+		synchronized (buffer) {
+			if (buffer.failure != null) {
+				throw new IOException("The connection failed to write coalesced frames", buffer.failure);
+			}
+			if (payload.length >= this.maxBytes) {
+				if (buffer.frames > 0) {
+					buffer.deadline.cancel(false);
+					write(buffer, outputStream, false);
+				}
+				this.delegate.serialize(payload, outputStream);
+				return;
+			}
+			this.delegate.serialize(payload, buffer);
+			if (++buffer.frames == 1) {
+				buffer.started = System.nanoTime();
+				long batch = buffer.batch;
+				buffer.deadline = this.timer.schedule(() -> deadline(buffer, batch), this.delay,
+						TimeUnit.MICROSECONDS);
+			}
+			if (buffer.count >= this.maxBytes || this.maxFrames > 0 && buffer.frames >= this.maxFrames) {
+				buffer.deadline.cancel(false);
+				write(buffer, outputStream, false);
+			}
+			else {
+				pending.buffer = buffer;
+				pending.batch = buffer.batch;
+			}
+		}
+	}
+
+	/**
+	 * Wait until the batch holding the frame last collected by {@link #serialize} on this
+	 * thread has been written; return at once if the frame was written when it was
+	 * serialized.
+	 * @throws IOException if the batch could not be written.
+	 */
+	public void awaitWritten() throws IOException {
+		Pending pending = this.pending.get();
+		WriteBuffer buffer = pending.buffer;
+		if (buffer == null) {
+			return;
+		}
+		pending.buffer = null;
+		synchronized (buffer) {
+			while (buffer.batch == pending.batch) {
+				try {
+					buffer.wait();
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException("Interrupted while waiting for coalesced frames to be written");
+				}
+			}
+			if (buffer.failedBatch == pending.batch) {
+				throw new IOException("Failed to write coalesced frames", buffer.failure);
+			}
+		}
+	}
+
+	private void deadline(WriteBuffer buffer, long batch) {
+		synchronized (buffer) {
+			if (buffer.batch != batch || buffer.frames == 0) {
+				return;
+			}
+			OutputStream outputStream = buffer.outputStream.get();
+			if (outputStream == null) {
+				failed(buffer, new IOException("The connection was closed"));
+				return;
+			}
+			try {
+				this.statistics.deadlineFlushed();
+				write(buffer, outputStream, true);
+			}
+			catch (IOException e) {
+				logger.error("Failed to write coalesced frames; closing the connection", e);
+				try {
+					outputStream.close();
+				}
+				catch (IOException e1) {
+					// already broken
+				}
+			}
+		}
+	}
+
+	private void write(WriteBuffer buffer, OutputStream outputStream, boolean flush) throws IOException {
+		long delay = System.nanoTime() - buffer.started;
+		int count = buffer.count;
+		int frames = buffer.frames;
+		try {
+			outputStream.write(buffer.bytes, 0, count);
+			if (flush) {
+				outputStream.flush();
+			}
+		}
+		catch (IOException e) {
+			failed(buffer, e);
+			throw e;
+		}
+		buffer.reset();
+		this.statistics.batchWritten(frames, count, delay);
+	}
+
+	private void failed(WriteBuffer buffer, IOException cause) {
+		buffer.failure = cause;
+		buffer.failedBatch = buffer.batch;
+		buffer.reset();
+		this.statistics.writeFailed();
+	}
+
+	@Override
+	public byte[] deserialize(InputStream inputStream) throws IOException {
+		return this.delegate.deserialize(inputStream);
+	}
+
+	@Override
+	public void destroy() {
+		this.timer.shutdownNow();
+		List<WriteBuffer> buffers;
+		synchronized (this.buffers) {
+			buffers = new ArrayList<>(this.buffers.values());
+		}
+		for (WriteBuffer buffer : buffers) {
+			deadline(buffer, buffer.batch);
+		}
+	}
+
+	private static final class Pending {
+
+		private WriteBuffer buffer;
+
+		private long batch;
+
+	}
+
+	/**
+	 * The frames buffered for a connection; holds its stream weakly, so that the buffer
+	 * is discarded with the connection. Threads waiting for a batch to be written wait on
+	 * the buffer, and are notified when the batch number changes.
+	 */
+	private static final class WriteBuffer extends OutputStream {
+
+		private final WeakReference<OutputStream> outputStream;
+
+		private byte[] bytes = new byte[1024];
+
+		private int count;
+
+		private int frames;
+
+		private long batch;
+
+		private long started;
+
+		private ScheduledFuture<?> deadline;
+
+		private IOException failure;
+
+		private long failedBatch = -1;
+
+		WriteBuffer(OutputStream outputStream) {
+			this.outputStream = new WeakReference<>(outputStream);
+		}
+
+		@Override
+		public void write(int b) {
+			ensureCapacity(1);
+			this.bytes[this.count++] = (byte) b;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			ensureCapacity(len);
+			System.arraycopy(b, off, this.bytes, this.count, len);
+			this.count += len;
+		}
+
+		private void ensureCapacity(int length) {
+			if (this.count + length > this.bytes.length) {
+				byte[] grown = new byte[Math.max(this.bytes.length << 1, this.count + length)];
+				System.arraycopy(this.bytes, 0, grown, 0, this.count);
+				this.bytes = grown;
+			}
+		}
+
+		void reset() {
+			this.count = 0;
+			this.frames = 0;
+			this.batch++;
+			notifyAll();
+		}
+
+	}
+
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.app.tcp;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.jmx.export.annotation.ManagedMetric;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+/**
+ * Statistics of the batches written by a {@link CoalescingSerializer}. The serializer is
+ * created by an {@link EncoderDecoderFactoryBean}, so is not itself exported; register
+ * an instance as a bean and set it on the factory bean to expose them.
+ */
+@ManagedResource
+public class CoalescingStatistics {
+
+	private final AtomicLong batches = new AtomicLong();
+
+	private final AtomicLong frames = new AtomicLong();
+
+	private final AtomicLong bytes = new AtomicLong();
+
+	private final AtomicLong deadlineFlushes = new AtomicLong();
+
+	private final AtomicLong writeFailures = new AtomicLong();
+
+	private final AtomicLong totalDelay = new AtomicLong();
+
+	private final AtomicLong maxDelay = new AtomicLong();
+
+	@ManagedMetric(description = "Batches written")
+	public long getBatches() {
+		return this.batches.get();
+	}
+
+	@ManagedMetric(description = "Batches written because their deadline was reached")
+	public long getDeadlineFlushes() {
+		return this.deadlineFlushes.get();
+	}
+
+	@ManagedMetric(description = "Batches that could not be written")
+	public long getWriteFailures() {
+		return this.writeFailures.get();
+	}
+
+	@ManagedMetric(description = "Average frames per batch")
+	public double getAverageBatchFrames() {
+		long batches = this.batches.get();
+		return batches == 0 ? 0 : (double) this.frames.get() / batches;
+	}
+
+	@ManagedMetric(description = "Average bytes per batch")
+	public double getAverageBatchBytes() {
+		long batches = this.batches.get();
+		return batches == 0 ? 0 : (double) this.bytes.get() / batches;
+	}
+
+	@ManagedMetric(description = "Average time (us) for which the first frame of a batch was buffered")
+	public double getAverageAddedLatency() {
+		long batches = this.batches.get();
+		return batches == 0 ? 0 : this.totalDelay.get() / 1000.0 / batches;
+	}
+
+	@ManagedMetric(description = "Longest time (us) for which a frame was buffered")
+	public long getMaxAddedLatency() {
+		return TimeUnit.NANOSECONDS.toMicros(this.maxDelay.get());
+	}
+
+	void batchWritten(int frames, int bytes, long delay) {
+		this.batches.incrementAndGet();
+		this.frames.addAndGet(frames);
+		this.bytes.addAndGet(bytes);
+		this.totalDelay.addAndGet(delay);
+		long max = this.maxDelay.get();
+		while (delay > max && !this.maxDelay.compareAndSet(max, delay)) {
+			max = this.maxDelay.get();
+		}
+	}
+
+	void deadlineFlushed() {
+		this.deadlineFlushes.incrementAndGet();
+	}
+
+	void writeFailed() {
+		this.writeFailures.incrementAndGet();
+	}
+
+}
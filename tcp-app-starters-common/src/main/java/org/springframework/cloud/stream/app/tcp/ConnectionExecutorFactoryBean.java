@@ -0,0 +1,158 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.app.tcp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.springframework.beans.factory.config.AbstractFactoryBean;
+import org.springframework.integration.util.CallerBlocksPolicy;
+import org.springframework.integration.util.CompositeExecutor;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.util.Assert;
+
+/**
+ * Factory bean for the executor used by a connection factory, configured from
+ * {@link TcpConnectionFactoryProperties}.
+ * <p>
+ * With blocking sockets, the reader pool runs the acceptor (for a server) and one
+ * reader per connection. With NIO, the selector and socket reads run on the selector
+ * (io) pool and the decoders on the reader pool, combined in a {@link CompositeExecutor}.
+ * A pool with no size configured is unbounded; with neither configured, the executor
+ * is an unbounded cached thread pool, as the connection factory would create itself.
+ * <p>
+ * A saturated selector pool always rejects the task: its tasks are submitted by the
+ * selector itself, which must never run or wait for them. The configured
+ * {@link RejectionPolicy} applies to the reader pool only.
+ * <p>
+ * With {@link Threading#VIRTUAL} and blocking sockets, each connection is read on its
+ * own virtual thread, and the pool settings do not apply.
+ */
+public class ConnectionExecutorFactoryBean extends AbstractFactoryBean<Executor> {
+
+	private final TcpConnectionFactoryProperties properties;
+
+	private final String threadNamePrefix;
+
+	private final List<Object> executors = new ArrayList<>();
+
+	/**
+	 * Construct an instance.
+	 * @param properties the connection factory properties.
+	 * @param threadNamePrefix the prefix for thread names.
+	 */
+	public ConnectionExecutorFactoryBean(TcpConnectionFactoryProperties properties, String threadNamePrefix) {
+		Assert.notNull(properties, "'properties' cannot be null");
+		this.properties = properties;
+		this.threadNamePrefix = threadNamePrefix;
+	}
+
+	@Override
+	protected Executor createInstance() throws Exception {
+		if (this.properties.getThreading() == Threading.VIRTUAL) {
+			if (this.properties.isNio()) {
+				this.logger.info("Virtual threads apply to blocking sockets only; ignored with NIO");
+			}
+			else {
+				ExecutorService executor = virtualThreadPerTaskExecutor();
+				if (executor != null) {
+					this.executors.add(executor);
+					return executor;
+				}
+				this.logger.warn("Virtual threads require Java 21 or later; using platform threads");
+			}
+		}
+		int readerThreads = this.properties.getReaderThreads();
+		int selectorThreads = this.properties.getSelectorThreads();
+		if (readerThreads == 0 && selectorThreads == 0) {
+			ExecutorService executor = Executors.newCachedThreadPool(
+					new CustomizableThreadFactory(this.threadNamePrefix));
+			this.executors.add(executor);
+			return executor;
+		}
+		ThreadPoolTaskExecutor readers = pool(readerThreads, this.threadNamePrefix + "reader-",
+				this.properties.getRejectionPolicy());
+		if (!this.properties.isNio()) {
+			return readers;
+		}
+		Assert.isTrue(selectorThreads != 1, "'selectorThreads' must be at least 2; one runs the selector");
+		return new CompositeExecutor(pool(selectorThreads, this.threadNamePrefix + "io-", RejectionPolicy.ABORT),
+				readers);
+	}
+
+	private ThreadPoolTaskExecutor pool(int threads, String prefix, RejectionPolicy rejectionPolicy) {
+		ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+		if (threads > 0) {
+			executor.setCorePoolSize(threads);
+			executor.setMaxPoolSize(threads);
+			executor.setQueueCapacity(this.properties.getExecutorQueueSize());
+			executor.setRejectedExecutionHandler(rejectedExecutionHandler(rejectionPolicy));
+		}
+		else {
+			executor.setCorePoolSize(0);
+			executor.setQueueCapacity(0);
+		}
+		executor.setThreadNamePrefix(prefix);
+		executor.initialize();
+		this.executors.add(executor);
+		return executor;
+	}
+
+	private static ExecutorService virtualThreadPerTaskExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		}
+		catch (ReflectiveOperationException e) {
+			return null;
+		}
+	}
+
+	private static RejectedExecutionHandler rejectedExecutionHandler(RejectionPolicy rejectionPolicy) {
+		switch (rejectionPolicy) {
+			case CALLER_RUNS:
+				return new ThreadPoolExecutor.CallerRunsPolicy();
+			case CALLER_BLOCKS:
+				return new CallerBlocksPolicy(Long.MAX_VALUE);
+			default:
+				return new ThreadPoolExecutor.AbortPolicy();
+		}
+	}
+
+	@Override
+	protected void destroyInstance(Executor instance) throws Exception {
+		for (Object executor : this.executors) {
+			if (executor instanceof ThreadPoolTaskExecutor) {
+				((ThreadPoolTaskExecutor) executor).shutdown();
+			}
+			else {
+				((ExecutorService) executor).shutdownNow();
+			}
+		}
+		this.executors.clear();
+	}
+
+	@Override
+	public Class<?> getObjectType() {
+		return Executor.class;
+	}
+
+}
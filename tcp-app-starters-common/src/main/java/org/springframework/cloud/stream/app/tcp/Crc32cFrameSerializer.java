@@ -0,0 +1,188 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.app.tcp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Constructor;
+import java.util.zip.Checksum;
+
+import org.springframework.util.Assert;
+
+/**
+ * Frame serializer for {@link Encoding#L4_CRC32C}: data preceded by a four byte length
+ * and followed by the four byte CRC32C of the data. The checksum is computed as each
+ * block of data is read, rather than in a separate pass over the frame; a mismatch
+ * publishes an event, is counted by the {@link ChecksumFailureCounter} and fails the
+ * frame.
+ * <p>
+ * Uses the JDK's intrinsified {@code java.util.zip.CRC32C} when available (Java 9 and
+ * later), or an equivalent table-driven implementation otherwise.
+ */
+public class Crc32cFrameSerializer extends LengthHeaderFrameSerializer {
+
+	private static final int BLOCK_SIZE = 8 * 1024;
+
+	private static final Constructor<? extends Checksum> jdkCrc32c = findJdkCrc32c();
+
+	private final ThreadLocal<Checksum> checksums = new ThreadLocal<>();
+
+	private ChecksumFailureCounter checksumFailureCounter = new ChecksumFailureCounter();
+
+	public Crc32cFrameSerializer() {
+		super(4);
+	}
+
+	/**
+	 * Set the counter of frames rejected because of a checksum mismatch; by default,
+	 * each serializer has its own.
+	 * @param checksumFailureCounter the counter.
+	 */
+	public void setChecksumFailureCounter(ChecksumFailureCounter checksumFailureCounter) {
+		Assert.notNull(checksumFailureCounter, "'checksumFailureCounter' cannot be null");
+		this.checksumFailureCounter = checksumFailureCounter;
+	}
+
+	public ChecksumFailureCounter getChecksumFailureCounter() {
+		return this.checksumFailureCounter;
+	}
+
+	@Override
+	public byte[] deserialize(InputStream inputStream) throws IOException {
+		int length = (int) readLength(inputStream);
+		if (length > getMaxMessageSize()) {
+			throw frameError("Message length " + length + " exceeds max message length: " + getMaxMessageSize(),
+					new byte[0], 0);
+		}
+		byte[] frame = new byte[length];
+		Checksum checksum = checksum();
+		int n = 0;
+		while (n < length) {
+			int len = inputStream.read(frame, n, Math.min(length - n, BLOCK_SIZE));
+			if (len < 0) {
+				throw new IOException("Stream closed after " + n + " of " + length);
+			}
+			checksum.update(frame, n, len);
+			n += len;
+		}
+		byte[] trailer = new byte[4];
+		readFully(inputStream, trailer, 0, 4);
+		int expected = getInt(trailer);
+		int actual = (int) checksum.getValue();
+		if (actual != expected) {
+			this.checksumFailureCounter.increment();
+			throw frameError("CRC32C mismatch: expected " + Integer.toHexString(expected) + ", computed "
+					+ Integer.toHexString(actual), frame, length);
+		}
+		return frame;
+	}
+
+	@Override
+	public void serialize(byte[] bytes, OutputStream outputStream) throws IOException {
+		Checksum checksum = checksum();
+		checksum.update(bytes, 0, bytes.length);
+		writeFrame(outputStream, putInt(bytes.length), 4, bytes, bytes.length, putInt((int) checksum.getValue()));
+	}
+
+	private Checksum checksum() {
+		Checksum checksum = this.checksums.get();
+		if (checksum == null) {
+			checksum = newCrc32c();
+			this.checksums.set(checksum);
+		}
+		else {
+			checksum.reset();
+		}
+		return checksum;
+	}
+
+	private static byte[] putInt(int value) {
+		return new byte[] { (byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value };
+	}
+
+	private static int getInt(byte[] bytes) {
+		return (bytes[0] & 0xff) << 24 | (bytes[1] & 0xff) << 16 | (bytes[2] & 0xff) << 8 | (bytes[3] & 0xff);
+	}
+
+	static Checksum newCrc32c() {
+		if (jdkCrc32c != null) {
+			try {
+				return jdkCrc32c.newInstance();
+			}
+			catch (ReflectiveOperationException e) {
+				// fall through
+			}
+		}
+		return new TableCrc32c();
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Constructor<? extends Checksum> findJdkCrc32c() {
+		try {
+			return (Constructor<? extends Checksum>) Class.forName("java.util.zip.CRC32C").getConstructor();
+		}
+		catch (ClassNotFoundException | NoSuchMethodException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * CRC32C (Castagnoli), one table lookup per byte; used before Java 9.
+	 */
+	static final class TableCrc32c implements Checksum {
+
+		private static final int[] TABLE = new int[256];
+
+		static {
+			for (int i = 0; i < 256; i++) {
+				int crc = i;
+				for (int j = 0; j < 8; j++) {
+					crc = (crc & 1) != 0 ? (crc >>> 1) ^ 0x82F63B78 : crc >>> 1;
+				}
+				TABLE[i] = crc;
+			}
+		}
+
+		private int crc = 0xffffffff;
+
+		@Override
+		public void update(int b) {
+			this.crc = (this.crc >>> 8) ^ TABLE[(this.crc ^ b) & 0xff];
+		}
+
+		@Override
+		public void update(byte[] b, int off, int len) {
+			int value = this.crc;
+			for (int i = off; i < off + len; i++) {
+				value = (value >>> 8) ^ TABLE[(value ^ b[i]) & 0xff];
+			}
+			this.crc = value;
+		}
+
+		@Override
+		public long getValue() {
+			return ~this.crc & 0xffffffffL;
+		}
+
+		@Override
+		public void reset() {
+			this.crc = 0xffffffff;
+		}
+
+	}
+
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.app.tcp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.springframework.util.Assert;
+
+/**
+ * Frame serializer for {@link Encoding#DEFLATE}: each frame is a four byte length
+ * header followed by a flag byte and the payload; when the flag is set, the payload is
+ * the four byte uncompressed length followed by the deflated data, otherwise it is the
+ * data as is. Payloads smaller than the compression threshold, or that do not shrink,
+ * are sent as is.
+ */
+public class DeflateFrameSerializer extends AbstractFrameSerializer {
+
+	private static final int STORED = 0;
+
+	private static final int DEFLATED = 1;
+
+	private final ThreadLocal<Deflater> deflaters = new ThreadLocal<>();
+
+	private final ThreadLocal<Inflater> inflaters = new ThreadLocal<>();
+
+	private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+
+	private int compressionThreshold = 256;
+
+	/**
+	 * The deflate compression level (0-9, or -1 for the default).
+	 * @param compressionLevel the level.
+	 */
+	public void setCompressionLevel(int compressionLevel) {
+		Assert.isTrue(compressionLevel >= Deflater.DEFAULT_COMPRESSION && compressionLevel <= Deflater.BEST_COMPRESSION,
+				"'compressionLevel' must be between -1 and 9");
+		this.compressionLevel = compressionLevel;
+	}
+
+	/**
+	 * The minimum payload size to compress; smaller payloads are sent as is.
+	 * @param compressionThreshold the threshold.
+	 */
+	public void setCompressionThreshold(int compressionThreshold) {
+		this.compressionThreshold = compressionThreshold;
+	}
+
+	@Override
+	public byte[] deserialize(InputStream inputStream) throws IOException {
+		int length = readFirstByte(inputStream);
+		length = (length << 8) | readByte(inputStream);
+		length = (length << 8) | readByte(inputStream);
+		length = (length << 8) | readByte(inputStream);
+		if (length < 1) {
+			throw frameError("Invalid compressed frame length " + length, new byte[0], 0);
+		}
+		int flag = readByte(inputStream);
+		if (flag == STORED) {
+			if (length - 1 > getMaxMessageSize()) {
+				throw frameError("Message length " + (length - 1) + " exceeds max message length: "
+						+ getMaxMessageSize(), new byte[0], 0);
+			}
+			byte[] frame = new byte[length - 1];
+			readFully(inputStream, frame, 0, frame.length);
+			return frame;
+		}
+		if (flag != DEFLATED || length < 5) {
+			throw frameError("Invalid compressed frame flag " + flag, new byte[0], 0);
+		}
+		int uncompressed = 0;
+		for (int i = 0; i < 4; i++) {
+			uncompressed = (uncompressed << 8) | readByte(inputStream);
+		}
+		if (uncompressed < 0 || uncompressed > getMaxMessageSize()) {
+			throw frameError("Message length " + uncompressed + " exceeds max message length: "
+					+ getMaxMessageSize(), new byte[0], 0);
+		}
+		int compressed = length - 5;
+		// only data that shrinks is deflated
+		if (compressed > getMaxMessageSize()) {
+			throw frameError("Compressed length " + compressed + " exceeds max message length: "
+					+ getMaxMessageSize(), new byte[0], 0);
+		}
+		byte[] buffer = acquireBuffer(compressed);
+		try {
+			readFully(inputStream, buffer, 0, compressed);
+			return inflate(buffer, compressed, uncompressed);
+		}
+		finally {
+			releaseBuffer(buffer);
+		}
+	}
+
+	private byte[] inflate(byte[] buffer, int compressed, int uncompressed) throws IOException {
+		Inflater inflater = this.inflaters.get();
+		if (inflater == null) {
+			inflater = new Inflater();
+			this.inflaters.set(inflater);
+		}
+		inflater.reset();
+		inflater.setInput(buffer, 0, compressed);
+		byte[] frame = new byte[uncompressed];
+		try {
+			int n = 0;
+			while (n < uncompressed) {
+				int len = inflater.inflate(frame, n, uncompressed - n);
+				if (len == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+					break;
+				}
+				n += len;
+			}
+			if (n != uncompressed || !inflater.finished()) {
+				throw frameError("Compressed data does not match length " + uncompressed, buffer, compressed);
+			}
+		}
+		catch (DataFormatException e) {
+			throw frameError("Invalid compressed data: " + e.getMessage(), buffer, compressed);
+		}
+		return frame;
+	}
+
+	private int readByte(InputStream inputStream) throws IOException {
+		int bite = inputStream.read();
+		checkClosure(bite);
+		return bite;
+	}
+
+	@Override
+	public void serialize(byte[] bytes, OutputStream outputStream) throws IOException {
+		byte[] header = new byte[9];
+		if (bytes.length >= this.compressionThreshold && bytes.length > 0) {
+			byte[] buffer = acquireBuffer(bytes.length);
+			try {
+				int compressed = deflate(bytes, buffer);
+				if (compressed >= 0) {
+					putInt(header, 0, compressed + 5);
+					header[4] = DEFLATED;
+					putInt(header, 5, bytes.length);
+					writeFrame(outputStream, header, 9, buffer, compressed, null);
+					return;
+				}
+			}
+			finally {
+				releaseBuffer(buffer);
+			}
+		}
+		putInt(header, 0, bytes.length + 1);
+		header[4] = STORED;
+		writeFrame(outputStream, header, 5, bytes, bytes.length, null);
+	}
+
+	/*
+	 * Deflate into the buffer; return the compressed length, or -1 if the data does not
+	 * shrink.
+	 */
+	private int deflate(byte[] bytes, byte[] buffer) {
+		Deflater deflater = this.deflaters.get();
+		if (deflater == null) {
+			deflater = new Deflater(this.compressionLevel);
+			this.deflaters.set(deflater);
+		}
+		deflater.reset();
+		deflater.setInput(bytes);
+		deflater.finish();
+		int limit = Math.min(buffer.length, bytes.length - 5);
+		int n = 0;
+		while (n < limit && !deflater.finished()) {
+			n += deflater.deflate(buffer, n, limit - n);
+		}
+		return deflater.finished() ? n : -1;
+	}
+
+	private static void putInt(byte[] bytes, int offset, int value) {
+		bytes[offset] = (byte) (value >>> 24);
+		bytes[offset + 1] = (byte) (value >>> 16);
+		bytes[offset + 2] = (byte) (value >>> 8);
+		bytes[offset + 3] = (byte) value;
+	}
+
+}
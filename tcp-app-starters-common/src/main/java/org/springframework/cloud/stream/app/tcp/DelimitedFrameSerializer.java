@@ -0,0 +1,158 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.app.tcp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.springframework.util.Assert;
+
+/**
+ * Frame serializer for data terminated by a delimiter and, optionally, preceded by a
+ * start byte; covers {@link Encoding#CRLF}, {@link Encoding#LF}, {@link Encoding#NULL}
+ * and {@link Encoding#STXETX}.
+ */
+public class DelimitedFrameSerializer extends AbstractFrameSerializer {
+
+	private static final byte[] EMPTY = new byte[0];
+
+	private final int start;
+
+	private final byte[] terminator;
+
+	/**
+	 * Construct an instance for data terminated by the supplied bytes.
+	 * @param terminator the terminator.
+	 */
+	public DelimitedFrameSerializer(byte[] terminator) {
+		this(-1, terminator);
+	}
+
+	/**
+	 * Construct an instance for data preceded by {@code start} and terminated by the
+	 * supplied bytes.
+	 * @param start the start byte, or -1 for none.
+	 * @param terminator the terminator.
+	 */
+	public DelimitedFrameSerializer(int start, byte[] terminator) {
+		Assert.isTrue(terminator != null && terminator.length > 0, "'terminator' cannot be empty");
+		this.start = start;
+		this.terminator = terminator.clone();
+	}
+
+	protected int getStart() {
+		return this.start;
+	}
+
+	protected byte[] getTerminator() {
+		return this.terminator;
+	}
+
+	@Override
+	public byte[] deserialize(InputStream inputStream) throws IOException {
+		int bite = readFirstByte(inputStream);
+		byte[] buffer = acquireBuffer(FrameBufferPool.MIN_CAPACITY);
+		int n = 0;
+		try {
+			if (this.start >= 0) {
+				if (bite != this.start) {
+					throw frameError("Expected " + this.start + " to begin message, not " + bite, buffer, 0);
+				}
+			}
+			else {
+				buffer[n++] = (byte) bite;
+			}
+			int length = this.terminator.length;
+			int limit = getMaxMessageSize() + length;
+			boolean bulk = inputStream.markSupported();
+			int index = indexOf(buffer, 0, n);
+			while (index < 0) {
+				if (n >= limit) {
+					throw frameError("Terminator not found before max message length: " + getMaxMessageSize(),
+							buffer, n);
+				}
+				if (n == buffer.length) {
+					buffer = growBuffer(buffer, n);
+				}
+				if (bulk) {
+					int len = readAvailable(inputStream, buffer, n, Math.min(buffer.length, limit) - n);
+					checkClosure(len);
+					index = indexOf(buffer, Math.max(0, n - length + 1), n + len);
+					if (index >= 0) {
+						unread(inputStream, index + length - n);
+					}
+					n += len;
+				}
+				else {
+					bite = inputStream.read();
+					checkClosure(bite);
+					buffer[n++] = (byte) bite;
+					if (n >= length && endsWithTerminator(buffer, n)) {
+						index = n - length;
+					}
+				}
+			}
+			return copyFrame(buffer, 0, index);
+		}
+		finally {
+			releaseBuffer(buffer);
+		}
+	}
+
+	/**
+	 * Find the first complete terminator in the buffer.
+	 * @param buffer the buffer.
+	 * @param from the index from which to search.
+	 * @param to the end (exclusive) of the data in the buffer.
+	 * @return the index of the terminator, or -1 if not found.
+	 */
+	protected int indexOf(byte[] buffer, int from, int to) {
+		byte first = this.terminator[0];
+		int last = to - this.terminator.length;
+		for (int i = from; i <= last; i++) {
+			if (buffer[i] == first && matchesAt(buffer, i)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private boolean endsWithTerminator(byte[] buffer, int end) {
+		return buffer[end - 1] == this.terminator[this.terminator.length - 1]
+				&& matchesAt(buffer, end - this.terminator.length);
+	}
+
+	protected boolean matchesAt(byte[] buffer, int index) {
+		for (int i = 0; i < this.terminator.length; i++) {
+			if (buffer[index + i] != this.terminator[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public void serialize(byte[] bytes, OutputStream outputStream) throws IOException {
+		if (this.start >= 0) {
+			writeFrame(outputStream, new byte[] { (byte) this.start }, 1, bytes, bytes.length, this.terminator);
+		}
+		else {
+			writeFrame(outputStream, EMPTY, 0, bytes, bytes.length, this.terminator);
+		}
+	}
+
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.app.tcp;
+
+/**
+ * How the delimiter-based decoders search for the end of a message.
+ */
+public enum DelimiterScan {
+
+	/**
+	 * Examine one byte at a time.
+	 */
+	BYTE,
+
+	/**
+	 * Examine eight bytes at a time, using SIMD-within-a-register arithmetic on
+	 * {@code long} words, when the data is read in bulk (on blocking connections).
+	 */
+	SWAR
+
+}
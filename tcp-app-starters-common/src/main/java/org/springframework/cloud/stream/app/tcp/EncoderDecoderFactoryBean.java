@@ -15,6 +15,9 @@
  */
 package org.springframework.cloud.stream.app.tcp;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
 import org.springframework.beans.factory.config.AbstractFactoryBean;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.ApplicationEventPublisherAware;
@@ -43,6 +46,32 @@ public class EncoderDecoderFactoryBean extends AbstractFactoryBean<AbstractByteA
 
 	private Integer maxMessageSize;
 
+	private boolean inPlaceDecoding;
+
+	private DelimiterScan delimiterScan = DelimiterScan.BYTE;
+
+	private FrameBufferPool bufferPool;
+
+	private Integer compressionLevel;
+
+	private Integer compressionThreshold;
+
+	private byte[] delimiter;
+
+	private boolean streaming;
+
+	private long maxFrameSize;
+
+	private long coalesceDelay;
+
+	private int coalesceBytes = 16 * 1024;
+
+	private int coalesceFrames;
+
+	private CoalescingStatistics coalescingStatistics;
+
+	private ChecksumFailureCounter checksumFailureCounter;
+
 	public EncoderDecoderFactoryBean(Encoding encoding) {
 		Assert.notNull(encoding, "'encoding' cannot be null");
 		this.encoding = encoding;
@@ -61,8 +90,163 @@ public class EncoderDecoderFactoryBean extends AbstractFactoryBean<AbstractByteA
 		this.maxMessageSize = maxMessageSize;
 	}
 
+	/**
+	 * Whether to use the {@link AbstractFrameSerializer frame serializers}, which decode
+	 * in a reused buffer and copy each frame out once at its exact size.
+	 * @param inPlaceDecoding true to decode in place.
+	 */
+	public void setInPlaceDecoding(boolean inPlaceDecoding) {
+		this.inPlaceDecoding = inPlaceDecoding;
+	}
+
+	/**
+	 * How the delimiter-based decoders search for the end of a message; anything other
+	 * than {@link DelimiterScan#BYTE} implies in place decoding.
+	 * @param delimiterScan the scan mode.
+	 */
+	public void setDelimiterScan(DelimiterScan delimiterScan) {
+		Assert.notNull(delimiterScan, "'delimiterScan' cannot be null");
+		this.delimiterScan = delimiterScan;
+	}
+
+	/**
+	 * The pool from which the in place decoders obtain their working buffers; by default,
+	 * each codec has its own pool with default settings.
+	 * @param bufferPool the pool.
+	 */
+	public void setBufferPool(FrameBufferPool bufferPool) {
+		this.bufferPool = bufferPool;
+	}
+
+	/**
+	 * The deflate compression level (0-9, or -1 for the default) when encoding with
+	 * {@link Encoding#DEFLATE}.
+	 * @param compressionLevel the level.
+	 */
+	public void setCompressionLevel(int compressionLevel) {
+		this.compressionLevel = compressionLevel;
+	}
+
+	/**
+	 * The minimum payload size to compress when encoding with {@link Encoding#DEFLATE}.
+	 * @param compressionThreshold the threshold.
+	 */
+	public void setCompressionThreshold(int compressionThreshold) {
+		this.compressionThreshold = compressionThreshold;
+	}
+
+	/**
+	 * The delimiter for {@link Encoding#DELIMITER}; Java style escapes ({@code \r},
+	 * {@code \n}, {@code \t}, {@code \0}, {@code \\} and {@code \xHH}) are
+	 * converted to the corresponding bytes, and other characters are encoded as UTF-8.
+	 * @param delimiter the delimiter.
+	 */
+	public void setDelimiter(String delimiter) {
+		this.delimiter = delimiter == null || delimiter.isEmpty() ? null : unescape(delimiter);
+	}
+
+	/**
+	 * Whether frames larger than the maximum message size are decoded as a sequence of
+	 * chunks, rather than rejected; implies in place decoding. Not supported by
+	 * {@link Encoding#DEFLATE} and {@link Encoding#L4_CRC32C}.
+	 * @param streaming true to decode large frames in chunks.
+	 * @see ChunkingFrameDeserializer
+	 */
+	public void setStreaming(boolean streaming) {
+		this.streaming = streaming;
+	}
+
+	/**
+	 * The maximum total size of a frame decoded in chunks; 0 for no limit.
+	 * @param maxFrameSize the maximum frame size.
+	 */
+	public void setMaxFrameSize(long maxFrameSize) {
+		this.maxFrameSize = maxFrameSize;
+	}
+
+	/**
+	 * The maximum time (us) for which encoded frames are collected before being written
+	 * together; 0 (default) to write each frame as it is encoded.
+	 * @param coalesceDelay the delay.
+	 * @see CoalescingSerializer
+	 */
+	public void setCoalesceDelay(long coalesceDelay) {
+		this.coalesceDelay = coalesceDelay;
+	}
+
+	/**
+	 * The number of collected bytes at which coalesced frames are written.
+	 * @param coalesceBytes the number of bytes.
+	 */
+	public void setCoalesceBytes(int coalesceBytes) {
+		this.coalesceBytes = coalesceBytes;
+	}
+
+	/**
+	 * The number of collected frames at which coalesced frames are written; 0 for no limit.
+	 * @param coalesceFrames the number of frames.
+	 */
+	public void setCoalesceFrames(int coalesceFrames) {
+		this.coalesceFrames = coalesceFrames;
+	}
+
+	/**
+	 * The statistics of the batches written when coalescing frames.
+	 * @param coalescingStatistics the statistics.
+	 */
+	public void setCoalescingStatistics(CoalescingStatistics coalescingStatistics) {
+		this.coalescingStatistics = coalescingStatistics;
+	}
+
+	/**
+	 * The counter of frames rejected by the {@link Encoding#L4_CRC32C} decoder because of
+	 * a checksum mismatch.
+	 * @param checksumFailureCounter the counter.
+	 */
+	public void setChecksumFailureCounter(ChecksumFailureCounter checksumFailureCounter) {
+		this.checksumFailureCounter = checksumFailureCounter;
+	}
+
 	@Override
 	protected AbstractByteArraySerializer createInstance() throws Exception {
+		AbstractByteArraySerializer codec;
+		if (this.streaming) {
+			ChunkingFrameDeserializer chunking = new ChunkingFrameDeserializer(createFrameSerializer());
+			chunking.setMaxFrameSize(this.maxFrameSize);
+			codec = chunking;
+		}
+		else if (this.inPlaceDecoding || this.delimiterScan != DelimiterScan.BYTE) {
+			codec = createFrameSerializer();
+		}
+		else {
+			codec = createSerializer();
+		}
+		codec.setApplicationEventPublisher(this.applicationEventPublisher);
+		if (this.bufferPool != null && codec instanceof AbstractFrameSerializer) {
+			((AbstractFrameSerializer) codec).setBufferPool(this.bufferPool);
+		}
+		if (this.maxMessageSize != null) {
+			codec.setMaxMessageSize(this.maxMessageSize);
+		}
+		if (this.coalesceDelay > 0) {
+			CoalescingSerializer coalescing = new CoalescingSerializer(codec, this.coalesceBytes,
+					this.coalesceFrames, this.coalesceDelay);
+			if (this.coalescingStatistics != null) {
+				coalescing.setStatistics(this.coalescingStatistics);
+			}
+			codec = coalescing;
+		}
+		return codec;
+	}
+
+	@Override
+	protected void destroyInstance(AbstractByteArraySerializer instance) throws Exception {
+		if (instance instanceof CoalescingSerializer) {
+			((CoalescingSerializer) instance).destroy();
+		}
+	}
+
+	private AbstractByteArraySerializer createSerializer() {
 		AbstractByteArraySerializer codec;
 		switch (this.encoding) {
 			case CRLF:
@@ -89,16 +273,128 @@ public class EncoderDecoderFactoryBean extends AbstractFactoryBean<AbstractByteA
 			case RAW:
 				codec = new ByteArrayRawSerializer();
 				break;
+			case VARINT:
+				codec = new VarintLengthHeaderFrameSerializer();
+				break;
+			case DEFLATE:
+				codec = createDeflateFrameSerializer();
+				break;
+			case DELIMITER:
+				codec = createHorspoolDelimitedFrameSerializer();
+				break;
+			case L4_CRC32C:
+				codec = createCrc32cFrameSerializer();
+				break;
 			default:
 				throw new IllegalArgumentException("Invalid encoding: " + this.encoding);
 		}
-		codec.setApplicationEventPublisher(this.applicationEventPublisher);
-		if (this.maxMessageSize != null) {
-			codec.setMaxMessageSize(this.maxMessageSize);
-		}
 		return codec;
 	}
 
+	private AbstractFrameSerializer createFrameSerializer() {
+		switch (this.encoding) {
+			case CRLF:
+				return createDelimitedFrameSerializer(-1, new byte[] { '\r', '\n' });
+			case LF:
+				return createDelimitedFrameSerializer(-1, new byte[] { '\n' });
+			case NULL:
+				return createDelimitedFrameSerializer(-1, new byte[] { 0 });
+			case STXETX:
+				return createDelimitedFrameSerializer(0x02, new byte[] { 0x03 });
+			case L1:
+				return new LengthHeaderFrameSerializer(1);
+			case L2:
+				return new LengthHeaderFrameSerializer(2);
+			case L4:
+				return new LengthHeaderFrameSerializer(4);
+			case RAW:
+				return new RawFrameSerializer();
+			case VARINT:
+				return new VarintLengthHeaderFrameSerializer();
+			case DEFLATE:
+				return createDeflateFrameSerializer();
+			case DELIMITER:
+				return createHorspoolDelimitedFrameSerializer();
+			case L4_CRC32C:
+				return createCrc32cFrameSerializer();
+			default:
+				throw new IllegalArgumentException("Invalid encoding: " + this.encoding);
+		}
+	}
+
+	private DeflateFrameSerializer createDeflateFrameSerializer() {
+		DeflateFrameSerializer serializer = new DeflateFrameSerializer();
+		if (this.compressionLevel != null) {
+			serializer.setCompressionLevel(this.compressionLevel);
+		}
+		if (this.compressionThreshold != null) {
+			serializer.setCompressionThreshold(this.compressionThreshold);
+		}
+		return serializer;
+	}
+
+	private Crc32cFrameSerializer createCrc32cFrameSerializer() {
+		Crc32cFrameSerializer serializer = new Crc32cFrameSerializer();
+		if (this.checksumFailureCounter != null) {
+			serializer.setChecksumFailureCounter(this.checksumFailureCounter);
+		}
+		return serializer;
+	}
+
+	private HorspoolDelimitedFrameSerializer createHorspoolDelimitedFrameSerializer() {
+		Assert.state(this.delimiter != null, "A 'delimiter' is required with the DELIMITER encoding");
+		return new HorspoolDelimitedFrameSerializer(this.delimiter);
+	}
+
+	private DelimitedFrameSerializer createDelimitedFrameSerializer(int start, byte[] terminator) {
+		return this.delimiterScan == DelimiterScan.SWAR
+				? new SwarDelimitedFrameSerializer(start, terminator)
+				: new DelimitedFrameSerializer(start, terminator);
+	}
+
+	private static byte[] unescape(String delimiter) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		int i = 0;
+		while (i < delimiter.length()) {
+			int next = delimiter.indexOf('\\', i);
+			if (next < 0 || next == delimiter.length() - 1) {
+				next = delimiter.length();
+			}
+			byte[] literal = delimiter.substring(i, next).getBytes(StandardCharsets.UTF_8);
+			bytes.write(literal, 0, literal.length);
+			if (next == delimiter.length()) {
+				break;
+			}
+			char escaped = delimiter.charAt(next + 1);
+			i = next + 2;
+			switch (escaped) {
+				case 'r':
+					bytes.write('\r');
+					break;
+				case 'n':
+					bytes.write('\n');
+					break;
+				case 't':
+					bytes.write('\t');
+					break;
+				case '0':
+					bytes.write(0);
+					break;
+				case '\\':
+					bytes.write('\\');
+					break;
+				case 'x':
+					Assert.isTrue(i + 2 <= delimiter.length(), "Invalid escape in delimiter: " + delimiter);
+					bytes.write(Integer.parseInt(delimiter.substring(i, i + 2), 16));
+					i += 2;
+					break;
+				default:
+					throw new IllegalArgumentException("Invalid escape in delimiter: " + delimiter);
+			}
+		}
+		return bytes.toByteArray();
+	}
+
 	@Override
 	public Class<?> getObjectType() {
 		return AbstractByteArraySerializer.class;
@@ -20,5 +20,5 @@ package org.springframework.cloud.stream.app.tcp;
  * @author Christian Tzolov
  */
 public enum Encoding {
-	CRLF, LF, NULL, STXETX, RAW, L1, L2, L4;
+	CRLF, LF, NULL, STXETX, RAW, L1, L2, L4, VARINT, DEFLATE, DELIMITER, L4_CRC32C;
 }
@@ -0,0 +1,393 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.app.tcp;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.integration.ip.IpHeaders;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedMetric;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.util.Assert;
+
+/**
+ * A channel interceptor that limits the number of messages in flight to the binder,
+ * both in total and per connection (by the {@link IpHeaders#CONNECTION_ID} header).
+ * When a count reaches its high watermark, further sends (for that connection, or
+ * from any connection) wait until it falls to its low watermark. The waiting thread
+ * is the one that read the message from the socket, so the connection stops reading
+ * while it is paused and TCP flow control pushes back to the sender.
+ * <p>
+ * With NIO, the waiting thread is the connection's assembler, not the thread reading
+ * the socket, which keeps reading into the connection's pipe until it is full and then
+ * closes the connection if the pipe stays full for its timeout. A
+ * {@link #setMaxPause(long) maximum pause} shorter than that timeout bounds the wait,
+ * after which the message is sent even though the watermark is still exceeded.
+ * <p>
+ * By default, a message is in flight only while it is being sent, which bounds the
+ * backlog only for binders that send synchronously. With a
+ * {@link #setConfirmTimeout(long) confirm timeout}, each message is tagged with a
+ * {@link #FLOW_CONTROL_ID} header and stays in flight after it is sent until it is
+ * {@link #confirm(Message) confirmed}, typically from the channel to which the binder
+ * sends its producer confirmations or send results, so that a connection can have
+ * many messages outstanding with an asynchronous producer. Messages whose send fails
+ * are released at once, and messages never confirmed when the timeout expires.
+ * <p>
+ * A watermark of zero disables that limit; a low watermark of zero defaults to half
+ * the high watermark.
+ */
+@ManagedResource
+public class FlowControlInterceptor implements ChannelInterceptor {
+
+	/**
+	 * The header identifying a message awaiting confirmation.
+	 */
+	public static final String FLOW_CONTROL_ID = "tcp_flowControlId";
+
+	private final Object monitor = new Object();
+
+	private final Map<Object, ConnectionState> connections = new HashMap<>();
+
+	// in the order sent, so also in the order they expire
+	private final Map<Long, Unconfirmed> unconfirmed = new LinkedHashMap<>();
+
+	private final int highWatermark;
+
+	private final int lowWatermark;
+
+	private final int connectionHighWatermark;
+
+	private final int connectionLowWatermark;
+
+	private long confirmTimeout;
+
+	private long maxPause;
+
+	private long nextId;
+
+	private int inFlight;
+
+	private boolean paused;
+
+	private int pausedConnections;
+
+	private long expiredConfirmations;
+
+	private long pauseTimeouts;
+
+	/**
+	 * Construct an instance.
+	 * @param highWatermark the total number of messages in flight at which reads pause.
+	 * @param lowWatermark the total number at which they resume.
+	 * @param connectionHighWatermark the number of messages in flight per connection at which
+	 * its reads pause.
+	 * @param connectionLowWatermark the number at which they resume.
+	 */
+	public FlowControlInterceptor(int highWatermark, int lowWatermark, int connectionHighWatermark,
+			int connectionLowWatermark) {
+
+		this.highWatermark = highWatermark;
+		this.lowWatermark = lowWatermark(highWatermark, lowWatermark);
+		this.connectionHighWatermark = connectionHighWatermark;
+		this.connectionLowWatermark = lowWatermark(connectionHighWatermark, connectionLowWatermark);
+	}
+
+	private static int lowWatermark(int high, int low) {
+		Assert.isTrue(high >= 0 && low >= 0, "Watermarks cannot be negative");
+		Assert.isTrue(high == 0 || low < high, "The low watermark must be less than the high watermark");
+		return low > 0 ? low : high / 2;
+	}
+
+	/**
+	 * When positive, messages stay in flight after they are sent until they are
+	 * {@link #confirm(Message) confirmed}, or until this time (ms) has passed; 0 (default)
+	 * to count messages only while they are being sent.
+	 * @param confirmTimeout the timeout.
+	 */
+	public void setConfirmTimeout(long confirmTimeout) {
+		Assert.isTrue(confirmTimeout >= 0, "'confirmTimeout' cannot be negative");
+		this.confirmTimeout = confirmTimeout;
+	}
+
+	/**
+	 * When positive, the maximum time (ms) a send waits while reads are paused, after
+	 * which the message is sent regardless of the watermarks; 0 (default) to wait until
+	 * reads resume.
+	 * @param maxPause the maximum pause.
+	 */
+	public void setMaxPause(long maxPause) {
+		Assert.isTrue(maxPause >= 0, "'maxPause' cannot be negative");
+		this.maxPause = maxPause;
+	}
+
+	@ManagedAttribute(description = "Total messages in flight at which reads pause")
+	public int getHighWatermark() {
+		return this.highWatermark;
+	}
+
+	@ManagedAttribute(description = "Total messages in flight at which reads resume")
+	public int getLowWatermark() {
+		return this.lowWatermark;
+	}
+
+	@ManagedAttribute(description = "Messages in flight per connection at which its reads pause")
+	public int getConnectionHighWatermark() {
+		return this.connectionHighWatermark;
+	}
+
+	@ManagedAttribute(description = "Messages in flight per connection at which its reads resume")
+	public int getConnectionLowWatermark() {
+		return this.connectionLowWatermark;
+	}
+
+	/**
+	 * Return the number of messages currently in flight.
+	 * @return the count.
+	 */
+	@ManagedMetric(description = "Messages in flight")
+	public int getInFlight() {
+		synchronized (this.monitor) {
+			return this.inFlight;
+		}
+	}
+
+	/**
+	 * Return the number of messages sent and awaiting confirmation.
+	 * @return the count.
+	 */
+	@ManagedMetric(description = "Messages sent and awaiting confirmation")
+	public int getUnconfirmed() {
+		synchronized (this.monitor) {
+			return this.unconfirmed.size();
+		}
+	}
+
+	/**
+	 * Return the number of messages released because they were not confirmed in time.
+	 * @return the count.
+	 */
+	@ManagedMetric(description = "Messages released because they were not confirmed in time")
+	public long getExpiredConfirmations() {
+		synchronized (this.monitor) {
+			return this.expiredConfirmations;
+		}
+	}
+
+	/**
+	 * Return the number of messages sent because a pause reached its maximum.
+	 * @return the count.
+	 */
+	@ManagedMetric(description = "Messages sent because a pause reached its maximum")
+	public long getPauseTimeouts() {
+		synchronized (this.monitor) {
+			return this.pauseTimeouts;
+		}
+	}
+
+	/**
+	 * Return the number of connections whose reads are currently paused.
+	 * @return the count.
+	 */
+	@ManagedMetric(description = "Connections whose reads are paused")
+	public int getPausedConnections() {
+		synchronized (this.monitor) {
+			return this.pausedConnections;
+		}
+	}
+
+	@Override
+	public Message<?> preSend(Message<?> message, MessageChannel channel) {
+		Object connectionId = message.getHeaders().get(IpHeaders.CONNECTION_ID);
+		synchronized (this.monitor) {
+			expire();
+			ConnectionState connection = connectionState(connectionId);
+			if (isPaused(connection)) {
+				this.pausedConnections++;
+				long deadline = this.maxPause > 0 ? System.currentTimeMillis() + this.maxPause : 0;
+				try {
+					while (isPaused(connection)) {
+						long wait = nextExpiry();
+						if (deadline > 0) {
+							long remaining = deadline - System.currentTimeMillis();
+							if (remaining <= 0) {
+								this.pauseTimeouts++;
+								break;
+							}
+							wait = wait > 0 ? Math.min(wait, remaining) : remaining;
+						}
+						this.monitor.wait(wait);
+						expire();
+						// the state may have been discarded and replaced while waiting
+						connection = connectionState(connectionId);
+					}
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					release(connectionId, connection);
+					throw new MessageDeliveryException(message, "Interrupted while reads were paused", e);
+				}
+				finally {
+					this.pausedConnections--;
+				}
+			}
+			if (++this.inFlight >= this.highWatermark && this.highWatermark > 0) {
+				this.paused = true;
+			}
+			if (connection != null && ++connection.inFlight >= this.connectionHighWatermark
+					&& this.connectionHighWatermark > 0) {
+				connection.paused = true;
+			}
+			if (this.confirmTimeout > 0) {
+				long id = ++this.nextId;
+				this.unconfirmed.put(id,
+						new Unconfirmed(connectionId, System.currentTimeMillis() + this.confirmTimeout));
+				return MessageBuilder.fromMessage(message)
+						.setHeader(FLOW_CONTROL_ID, id)
+						.build();
+			}
+		}
+		return message;
+	}
+
+	@Override
+	public void afterSendCompletion(Message<?> message, MessageChannel channel, boolean sent, Exception ex) {
+		Object id = message.getHeaders().get(FLOW_CONTROL_ID);
+		synchronized (this.monitor) {
+			if (id == null) {
+				complete(message.getHeaders().get(IpHeaders.CONNECTION_ID));
+			}
+			else if (!sent || ex != null) {
+				// a failed message will never be confirmed
+				confirm(id);
+			}
+		}
+	}
+
+	/**
+	 * Confirm that the binder has sent a message, which is then no longer in flight.
+	 * The message is the one that was sent, or a message whose payload is the one that
+	 * was sent (as with RabbitMQ publisher confirms); in either case, it must carry the
+	 * {@link #FLOW_CONTROL_ID} header. Other messages, and messages already released, are
+	 * ignored.
+	 * @param message the message.
+	 */
+	public void confirm(Message<?> message) {
+		Object id = message.getHeaders().get(FLOW_CONTROL_ID);
+		if (id == null && message.getPayload() instanceof Message) {
+			id = ((Message<?>) message.getPayload()).getHeaders().get(FLOW_CONTROL_ID);
+		}
+		if (id != null) {
+			synchronized (this.monitor) {
+				confirm(id);
+			}
+		}
+	}
+
+	private void confirm(Object id) {
+		Unconfirmed message = this.unconfirmed.remove(id);
+		if (message != null) {
+			complete(message.connectionId);
+		}
+	}
+
+	private void expire() {
+		if (this.unconfirmed.isEmpty()) {
+			return;
+		}
+		long now = System.currentTimeMillis();
+		Iterator<Unconfirmed> iterator = this.unconfirmed.values().iterator();
+		while (iterator.hasNext()) {
+			Unconfirmed message = iterator.next();
+			if (message.expiry > now) {
+				break;
+			}
+			iterator.remove();
+			this.expiredConfirmations++;
+			complete(message.connectionId);
+		}
+	}
+
+	private long nextExpiry() {
+		if (this.unconfirmed.isEmpty()) {
+			return 0;
+		}
+		return Math.max(1, this.unconfirmed.values().iterator().next().expiry - System.currentTimeMillis());
+	}
+
+	private void complete(Object connectionId) {
+		boolean resume = false;
+		if (--this.inFlight <= this.lowWatermark && this.paused) {
+			this.paused = false;
+			resume = true;
+		}
+		ConnectionState connection = connectionId == null ? null : this.connections.get(connectionId);
+		if (connection != null) {
+			if (--connection.inFlight <= this.connectionLowWatermark && connection.paused) {
+				connection.paused = false;
+				resume = true;
+			}
+			release(connectionId, connection);
+		}
+		if (resume) {
+			this.monitor.notifyAll();
+		}
+	}
+
+	private ConnectionState connectionState(Object connectionId) {
+		return connectionId == null ? null
+				: this.connections.computeIfAbsent(connectionId, id -> new ConnectionState());
+	}
+
+	private boolean isPaused(ConnectionState connection) {
+		return this.paused || (connection != null && connection.paused);
+	}
+
+	private void release(Object connectionId, ConnectionState connection) {
+		if (connection != null && connection.inFlight == 0 && !connection.paused) {
+			this.connections.remove(connectionId);
+		}
+	}
+
+	private static final class ConnectionState {
+
+		private int inFlight;
+
+		private boolean paused;
+
+	}
+
+	private static final class Unconfirmed {
+
+		private final Object connectionId;
+
+		private final long expiry;
+
+		Unconfirmed(Object connectionId, long expiry) {
+			this.connectionId = connectionId;
+			this.expiry = expiry;
+		}
+
+	}
+
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.app.tcp;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.util.Assert;
+
+/**
+ * A pool of working buffers for the {@link AbstractFrameSerializer frame serializers}.
+ * Buffers are allocated in power of two size classes so that a small frame never costs
+ * a buffer sized for the largest one. Each thread keeps its most recently released
+ * small buffer; other released buffers are retained, per size class, up to the pool
+ * size and the maximum retained memory, and are otherwise left to the garbage collector.
+ */
+public class FrameBufferPool {
+
+	/**
+	 * The capacity of the smallest size class.
+	 */
+	public static final int MIN_CAPACITY = 256;
+
+	/**
+	 * Buffers larger than this are never held in the per-thread cache.
+	 */
+	public static final int THREAD_CACHE_MAX_CAPACITY = 64 * 1024;
+
+	private static final int MIN_SHIFT = Integer.numberOfTrailingZeros(MIN_CAPACITY);
+
+	private static final int MAX_SHIFT = 30;
+
+	private static final int DEFAULT_POOL_SIZE = 16;
+
+	private static final long DEFAULT_MAX_RETAINED = 16 * 1024 * 1024;
+
+	private final ThreadLocal<byte[]> threadCache = new ThreadLocal<>();
+
+	@SuppressWarnings("unchecked")
+	private final Queue<byte[]>[] free = new Queue[MAX_SHIFT - MIN_SHIFT + 1];
+
+	private final AtomicIntegerArray freeCounts = new AtomicIntegerArray(this.free.length);
+
+	private final AtomicLong retained = new AtomicLong();
+
+	private final int poolSize;
+
+	private final long maxRetained;
+
+	public FrameBufferPool() {
+		this(DEFAULT_POOL_SIZE, DEFAULT_MAX_RETAINED);
+	}
+
+	/**
+	 * Construct a pool.
+	 * @param poolSize the maximum number of buffers retained per size class.
+	 * @param maxRetained the maximum number of bytes retained across all size classes,
+	 * excluding the per-thread caches.
+	 */
+	public FrameBufferPool(int poolSize, long maxRetained) {
+		Assert.isTrue(poolSize >= 0, "'poolSize' cannot be negative");
+		Assert.isTrue(maxRetained >= 0, "'maxRetained' cannot be negative");
+		this.poolSize = poolSize;
+		this.maxRetained = maxRetained;
+		for (int i = 0; i < this.free.length; i++) {
+			this.free[i] = new ConcurrentLinkedQueue<>();
+		}
+	}
+
+	/**
+	 * Obtain a buffer of at least the requested capacity.
+	 * @param minCapacity the minimum capacity.
+	 * @return the buffer.
+	 */
+	public byte[] acquire(int minCapacity) {
+		byte[] cached = this.threadCache.get();
+		if (cached != null && cached.length >= minCapacity) {
+			this.threadCache.set(null);
+			return cached;
+		}
+		int sizeClass = sizeClass(minCapacity);
+		if (sizeClass < 0) {
+			return new byte[minCapacity];
+		}
+		byte[] buffer = this.free[sizeClass].poll();
+		if (buffer != null) {
+			this.freeCounts.decrementAndGet(sizeClass);
+			this.retained.addAndGet(-buffer.length);
+			return buffer;
+		}
+		return new byte[1 << (sizeClass + MIN_SHIFT)];
+	}
+
+	/**
+	 * Return a buffer to the pool.
+	 * @param buffer the buffer.
+	 */
+	public void release(byte[] buffer) {
+		int length = buffer.length;
+		if (length <= THREAD_CACHE_MAX_CAPACITY) {
+			byte[] cached = this.threadCache.get();
+			if (cached == null || cached.length < length) {
+				this.threadCache.set(buffer);
+				if (cached == null) {
+					return;
+				}
+				buffer = cached;
+				length = cached.length;
+			}
+		}
+		int sizeClass = sizeClass(length);
+		if (sizeClass < 0 || length != 1 << (sizeClass + MIN_SHIFT)) {
+			return;
+		}
+		if (this.freeCounts.incrementAndGet(sizeClass) > this.poolSize) {
+			this.freeCounts.decrementAndGet(sizeClass);
+			return;
+		}
+		if (this.retained.addAndGet(length) > this.maxRetained) {
+			this.retained.addAndGet(-length);
+			this.freeCounts.decrementAndGet(sizeClass);
+			return;
+		}
+		this.free[sizeClass].offer(buffer);
+	}
+
+	/**
+	 * Return the number of bytes currently retained by the shared size classes.
+	 * @return the retained bytes.
+	 */
+	public long getRetainedBytes() {
+		return this.retained.get();
+	}
+
+	private static int sizeClass(int capacity) {
+		if (capacity <= MIN_CAPACITY) {
+			return 0;
+		}
+		int shift = 32 - Integer.numberOfLeadingZeros(capacity - 1);
+		return shift > MAX_SHIFT ? -1 : shift - MIN_SHIFT;
+	}
+
+}
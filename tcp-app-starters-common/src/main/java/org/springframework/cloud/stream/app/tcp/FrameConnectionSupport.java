@@ -0,0 +1,200 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.app.tcp;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.channels.SocketChannel;
+import java.util.function.Supplier;
+
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.integration.ip.tcp.connection.TcpConnection;
+import org.springframework.integration.ip.tcp.connection.TcpNetConnection;
+import org.springframework.integration.ip.tcp.connection.TcpNetConnectionSupport;
+import org.springframework.integration.ip.tcp.connection.TcpNioConnection;
+import org.springframework.integration.ip.tcp.connection.TcpNioConnectionSupport;
+
+/**
+ * Connection support for the {@link AbstractFrameSerializer frame serializers}. Each
+ * connection hands its deserializer the same {@link FrameInputStream} for the life of
+ * the connection, which carries the state a {@link ChunkingFrameDeserializer} keeps
+ * between frames. With {@link #setBufferedInput(boolean) buffered input}, the stream of
+ * a blocking connection is buffered, so that the socket is read in bulk and delimited
+ * frames are scanned in place, with the bytes that belong to the next frame kept for
+ * the next call.
+ * <p>
+ * NIO connections are not buffered: the connection only runs its deserializer while
+ * its own stream has data available, so bytes read ahead of the current frame would
+ * not be decoded until more data arrives. Their deserializers read a byte at a time
+ * from data already received by the selector.
+ */
+public class FrameConnectionSupport implements TcpNetConnectionSupport, TcpNioConnectionSupport {
+
+	/**
+	 * The size of the buffer of each blocking connection's input stream.
+	 */
+	public static final int INPUT_BUFFER_SIZE = 8192;
+
+	/**
+	 * The time (ms) for which an NIO connection waits for space in its pipe by default.
+	 */
+	public static final long DEFAULT_PIPE_TIMEOUT = 60000;
+
+	private boolean bufferedInput = true;
+
+	private long pipeTimeout = DEFAULT_PIPE_TIMEOUT;
+
+	/**
+	 * Whether blocking connections read through a buffered, markable stream.
+	 * @param bufferedInput false to read directly from the socket.
+	 */
+	public void setBufferedInput(boolean bufferedInput) {
+		this.bufferedInput = bufferedInput;
+	}
+
+	/**
+	 * The time (ms) for which an NIO connection waits for its assembler to make space in
+	 * its pipe before the connection is closed.
+	 * @param pipeTimeout the timeout.
+	 */
+	public void setPipeTimeout(long pipeTimeout) {
+		this.pipeTimeout = pipeTimeout;
+	}
+
+	@Override
+	public TcpNetConnection createNewConnection(Socket socket, boolean server, boolean lookupHost,
+			ApplicationEventPublisher applicationEventPublisher, String connectionFactoryName) {
+
+		Supplier<String> hostName = lookupHost ? hostName(socket.getInetAddress()) : null;
+		return new FrameNetConnection(socket, server, lookupHost && hostName == null, applicationEventPublisher,
+				connectionFactoryName, hostName, this.bufferedInput);
+	}
+
+	@Override
+	public TcpNioConnection createNewConnection(SocketChannel socketChannel, boolean server, boolean lookupHost,
+			ApplicationEventPublisher applicationEventPublisher, String connectionFactoryName) throws Exception {
+
+		Supplier<String> hostName = lookupHost ? hostName(socketChannel.socket().getInetAddress()) : null;
+		FrameNioConnection connection = new FrameNioConnection(socketChannel, server, lookupHost && hostName == null,
+				applicationEventPublisher, connectionFactoryName, hostName);
+		connection.setPipeTimeout(this.pipeTimeout);
+		return connection;
+	}
+
+	/**
+	 * Return the input stream of a connection created by a {@link FrameConnectionSupport},
+	 * once it has started reading.
+	 * @param connection the connection.
+	 * @return the stream, or null.
+	 */
+	static FrameInputStream frameInputStream(TcpConnection connection) {
+		return connection instanceof FrameConnection ? ((FrameConnection) connection).getFrameInputStream() : null;
+	}
+
+	/**
+	 * Return a supplier of the host name of a connection from the supplied address, when
+	 * host names are looked up; null (default) for the standard blocking lookup.
+	 * @param address the address.
+	 * @return the supplier, or null.
+	 */
+	protected Supplier<String> hostName(InetAddress address) {
+		return null;
+	}
+
+	private interface FrameConnection {
+
+		FrameInputStream getFrameInputStream();
+
+	}
+
+	private static final class FrameNetConnection extends TcpNetConnection implements FrameConnection {
+
+		private final Supplier<String> hostName;
+
+		private final boolean bufferedInput;
+
+		private FrameInputStream inputStream;
+
+		FrameNetConnection(Socket socket, boolean server, boolean lookupHost,
+				ApplicationEventPublisher applicationEventPublisher, String connectionFactoryName,
+				Supplier<String> hostName, boolean bufferedInput) {
+
+			super(socket, server, lookupHost, applicationEventPublisher, connectionFactoryName);
+			this.hostName = hostName;
+			this.bufferedInput = bufferedInput;
+		}
+
+		@Override
+		public String getHostName() {
+			return this.hostName != null ? this.hostName.get() : super.getHostName();
+		}
+
+		@Override
+		protected InputStream inputStream() throws IOException {
+			// only the connection's reader thread reads
+			if (this.inputStream == null) {
+				this.inputStream = new FrameInputStream(this.bufferedInput
+						? new BufferedInputStream(super.inputStream(), INPUT_BUFFER_SIZE) : super.inputStream());
+			}
+			return this.inputStream;
+		}
+
+		@Override
+		public FrameInputStream getFrameInputStream() {
+			return this.inputStream;
+		}
+
+	}
+
+	private static final class FrameNioConnection extends TcpNioConnection implements FrameConnection {
+
+		private final Supplier<String> hostName;
+
+		private FrameInputStream inputStream;
+
+		FrameNioConnection(SocketChannel socketChannel, boolean server, boolean lookupHost,
+				ApplicationEventPublisher applicationEventPublisher, String connectionFactoryName,
+				Supplier<String> hostName) throws Exception {
+
+			super(socketChannel, server, lookupHost, applicationEventPublisher, connectionFactoryName);
+			this.hostName = hostName;
+		}
+
+		@Override
+		public String getHostName() {
+			return this.hostName != null ? this.hostName.get() : super.getHostName();
+		}
+
+		@Override
+		protected InputStream inputStream() {
+			// the connection runs one assembler at a time
+			if (this.inputStream == null) {
+				this.inputStream = new FrameInputStream(super.inputStream());
+			}
+			return this.inputStream;
+		}
+
+		@Override
+		public FrameInputStream getFrameInputStream() {
+			return this.inputStream;
+		}
+
+	}
+
+}
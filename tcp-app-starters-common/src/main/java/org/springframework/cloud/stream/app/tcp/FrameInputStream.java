@@ -0,0 +1,59 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.app.tcp;
+
+import java.io.FilterInputStream;
+import java.io.InputStream;
+
+/**
+ * The input stream of a connection created by a {@link FrameConnectionSupport}, which
+ * the connection hands to its deserializer for every frame. It holds, for the life of
+ * the connection, the state that a {@link ChunkingFrameDeserializer} keeps between the
+ * chunks of a frame, and the description of the chunk it decoded last, which the
+ * {@link InboundTcpMessageMapper} adds to the message.
+ */
+public class FrameInputStream extends FilterInputStream {
+
+	private ChunkingFrameDeserializer.FrameState frameState;
+
+	private ChunkingFrameDeserializer.Chunk chunk;
+
+	public FrameInputStream(InputStream in) {
+		super(in);
+	}
+
+	ChunkingFrameDeserializer.FrameState getFrameState() {
+		if (this.frameState == null) {
+			this.frameState = new ChunkingFrameDeserializer.FrameState();
+		}
+		return this.frameState;
+	}
+
+	void setChunk(ChunkingFrameDeserializer.Chunk chunk) {
+		this.chunk = chunk;
+	}
+
+	/**
+	 * Return and clear the description of the chunk most recently decoded.
+	 * @return the chunk, or null if the last message was a complete frame.
+	 */
+	ChunkingFrameDeserializer.Chunk pollChunk() {
+		ChunkingFrameDeserializer.Chunk polled = this.chunk;
+		this.chunk = null;
+		return polled;
+	}
+
+}
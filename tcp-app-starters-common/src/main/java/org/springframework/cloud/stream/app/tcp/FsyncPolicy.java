@@ -0,0 +1,38 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.app.tcp;
+
+/**
+ * When a {@link SegmentSpool} forces its writes to the storage device.
+ */
+public enum FsyncPolicy {
+
+	/**
+	 * Never; the operating system writes the mapped pages in its own time.
+	 */
+	NEVER,
+
+	/**
+	 * When a segment is full and another is started, and when the spool is closed.
+	 */
+	SEGMENT,
+
+	/**
+	 * After every record; the slowest and safest.
+	 */
+	ALWAYS
+
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.app.tcp;
+
+import java.util.Arrays;
+
+/**
+ * A {@link DelimitedFrameSerializer} for arbitrary, multi-byte delimiters, using a
+ * Boyer-Moore-Horspool search; a mismatch skips ahead by up to the length of the
+ * delimiter rather than by one byte. When data is read in bulk (on blocking connections
+ * created by a {@link FrameConnectionSupport}), each search resumes just before the newly
+ * read bytes, so that a delimiter split across reads is found without rescanning the
+ * frame; otherwise (on NIO connections) only the tail of the frame is compared as each
+ * byte is read.
+ */
+public class HorspoolDelimitedFrameSerializer extends DelimitedFrameSerializer {
+
+	private final int[] skip = new int[256];
+
+	public HorspoolDelimitedFrameSerializer(byte[] delimiter) {
+		super(delimiter);
+		int length = delimiter.length;
+		Arrays.fill(this.skip, length);
+		for (int i = 0; i < length - 1; i++) {
+			this.skip[delimiter[i] & 0xff] = length - 1 - i;
+		}
+	}
+
+	@Override
+	protected int indexOf(byte[] buffer, int from, int to) {
+		byte[] delimiter = getTerminator();
+		int end = delimiter.length - 1;
+		int last = to - delimiter.length;
+		int i = from;
+		while (i <= last) {
+			byte bite = buffer[i + end];
+			if (bite == delimiter[end] && matchesAt(buffer, i)) {
+				return i;
+			}
+			i += this.skip[bite & 0xff];
+		}
+		return -1;
+	}
+
+}
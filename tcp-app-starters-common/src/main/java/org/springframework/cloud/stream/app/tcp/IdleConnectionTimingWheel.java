@@ -0,0 +1,253 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.app.tcp;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.context.ApplicationListener;
+import org.springframework.integration.ip.tcp.connection.TcpConnection;
+import org.springframework.integration.ip.tcp.connection.TcpConnectionCloseEvent;
+import org.springframework.integration.ip.tcp.connection.TcpConnectionEvent;
+import org.springframework.integration.ip.tcp.connection.TcpConnectionOpenEvent;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedMetric;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.Assert;
+
+/**
+ * Closes idle connections using a hashed timing wheel shared by all connections, for
+ * use with NIO connection factories whose own socket timeout is disabled; the factory
+ * would otherwise examine every connection each time it checks for timeouts.
+ * <p>
+ * Each open connection is placed in the wheel's bucket for its deadline (insert and
+ * cancel are constant time). Each tick examines one bucket; a connection that has been
+ * active since it was scheduled is moved to its new deadline, and those that are idle
+ * are closed together once the bucket has been processed. As with the factory's own
+ * timeout, a server connection is idle when nothing has been read for the timeout; a
+ * client connection that has sent within the timeout is given up to twice the timeout
+ * for a reply.
+ */
+@ManagedResource
+public class IdleConnectionTimingWheel implements ApplicationListener<TcpConnectionEvent>, DisposableBean {
+
+	private static final Log logger = LogFactory.getLog(IdleConnectionTimingWheel.class);
+
+	private static final int WHEEL_SIZE = 512;
+
+	private static final long MIN_TICK = 10;
+
+	private static final long MAX_TICK = 1000;
+
+	private final Bucket[] wheel = new Bucket[WHEEL_SIZE];
+
+	private final Map<String, Timeout> timeouts = new HashMap<>();
+
+	private final long timeout;
+
+	private final long tickDuration;
+
+	private final long startTime = System.currentTimeMillis();
+
+	private final ScheduledExecutorService ticker;
+
+	private final AtomicLong idleConnectionsClosed = new AtomicLong();
+
+	private long tick;
+
+	/**
+	 * Construct an instance.
+	 * @param timeout the time (ms) after which an idle connection is closed.
+	 */
+	public IdleConnectionTimingWheel(long timeout) {
+		Assert.isTrue(timeout > 0, "'timeout' must be positive");
+		this.timeout = timeout;
+		this.tickDuration = Math.min(MAX_TICK, Math.max(MIN_TICK, timeout / WHEEL_SIZE));
+		for (int i = 0; i < WHEEL_SIZE; i++) {
+			this.wheel[i] = new Bucket();
+		}
+		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("tcp-idle-timer-");
+		threadFactory.setDaemon(true);
+		this.ticker = Executors.newSingleThreadScheduledExecutor(threadFactory);
+		this.ticker.scheduleAtFixedRate(this::advance, this.tickDuration, this.tickDuration, TimeUnit.MILLISECONDS);
+	}
+
+	@ManagedAttribute(description = "The time (ms) after which an idle connection is closed")
+	public long getTimeout() {
+		return this.timeout;
+	}
+
+	@ManagedMetric(description = "Connections tracked for idleness")
+	public synchronized int getConnections() {
+		return this.timeouts.size();
+	}
+
+	@ManagedMetric(description = "Connections closed because they were idle")
+	public long getIdleConnectionsClosed() {
+		return this.idleConnectionsClosed.get();
+	}
+
+	@Override
+	public void onApplicationEvent(TcpConnectionEvent event) {
+		if (event instanceof TcpConnectionOpenEvent) {
+			TcpConnection connection = (TcpConnection) event.getSource();
+			synchronized (this) {
+				Timeout timeout = new Timeout(connection);
+				if (this.timeouts.putIfAbsent(connection.getConnectionId(), timeout) == null) {
+					schedule(timeout, deadline(connection, System.currentTimeMillis()));
+				}
+			}
+		}
+		else if (event instanceof TcpConnectionCloseEvent) {
+			synchronized (this) {
+				Timeout timeout = this.timeouts.remove(event.getConnectionId());
+				if (timeout != null) {
+					timeout.bucket.remove(timeout);
+				}
+			}
+		}
+	}
+
+	private long deadline(TcpConnection connection, long now) {
+		long lastRead = Math.min(connection.getLastRead(), now);
+		long deadline = lastRead + this.timeout;
+		if (!connection.isServer()) {
+			deadline = Math.max(deadline, Math.min(connection.getLastSend() + this.timeout,
+					lastRead + 2 * this.timeout));
+		}
+		return deadline;
+	}
+
+	private void schedule(Timeout timeout, long deadline) {
+		long deadlineTick = (deadline - this.startTime + this.tickDuration - 1) / this.tickDuration;
+		timeout.deadlineTick = Math.max(deadlineTick, this.tick + 1);
+		this.wheel[(int) (timeout.deadlineTick & (WHEEL_SIZE - 1))].add(timeout);
+	}
+
+	private void advance() {
+		List<TcpConnection> idle = new ArrayList<>();
+		long now = System.currentTimeMillis();
+		synchronized (this) {
+			long target = (now - this.startTime) / this.tickDuration;
+			while (this.tick < target) {
+				this.tick++;
+				Bucket bucket = this.wheel[(int) (this.tick & (WHEEL_SIZE - 1))];
+				Timeout timeout = bucket.head;
+				while (timeout != null) {
+					Timeout next = timeout.next;
+					if (timeout.deadlineTick <= this.tick) {
+						bucket.remove(timeout);
+						long deadline = deadline(timeout.connection, now);
+						if (deadline <= now) {
+							this.timeouts.remove(timeout.connection.getConnectionId());
+							idle.add(timeout.connection);
+						}
+						else {
+							schedule(timeout, deadline);
+						}
+					}
+					timeout = next;
+				}
+			}
+		}
+		for (TcpConnection connection : idle) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Closing idle connection " + connection.getConnectionId());
+			}
+			this.idleConnectionsClosed.incrementAndGet();
+			try {
+				connection.close();
+			}
+			catch (RuntimeException e) {
+				logger.error("Failed to close idle connection " + connection.getConnectionId(), e);
+			}
+		}
+	}
+
+	@Override
+	public void destroy() {
+		this.ticker.shutdownNow();
+	}
+
+	private static final class Timeout {
+
+		private final TcpConnection connection;
+
+		private long deadlineTick;
+
+		private Bucket bucket;
+
+		private Timeout previous;
+
+		private Timeout next;
+
+		Timeout(TcpConnection connection) {
+			this.connection = connection;
+		}
+
+	}
+
+	private static final class Bucket {
+
+		private Timeout head;
+
+		private Timeout tail;
+
+		void add(Timeout timeout) {
+			timeout.bucket = this;
+			timeout.previous = this.tail;
+			timeout.next = null;
+			if (this.tail == null) {
+				this.head = timeout;
+			}
+			else {
+				this.tail.next = timeout;
+			}
+			this.tail = timeout;
+		}
+
+		void remove(Timeout timeout) {
+			if (timeout.previous == null) {
+				this.head = timeout.next;
+			}
+			else {
+				timeout.previous.next = timeout.next;
+			}
+			if (timeout.next == null) {
+				this.tail = timeout.previous;
+			}
+			else {
+				timeout.next.previous = timeout.previous;
+			}
+			timeout.bucket = null;
+			timeout.previous = null;
+			timeout.next = null;
+		}
+
+	}
+
+}
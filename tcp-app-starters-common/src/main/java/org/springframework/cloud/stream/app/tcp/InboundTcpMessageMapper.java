@@ -0,0 +1,254 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.app.tcp;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.integration.IntegrationMessageHeaderAccessor;
+import org.springframework.integration.ip.IpHeaders;
+import org.springframework.integration.ip.tcp.connection.SocketInfo;
+import org.springframework.integration.ip.tcp.connection.TcpConnection;
+import org.springframework.integration.ip.tcp.connection.TcpMessageMapper;
+import org.springframework.integration.support.AbstractIntegrationMessageBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.util.Assert;
+import org.springframework.util.MimeType;
+
+/**
+ * A {@link TcpMessageMapper} for the source apps. When a frame is delivered in chunks by
+ * a {@link ChunkingFrameDeserializer}, each message carries the
+ * {@link IntegrationMessageHeaderAccessor#CORRELATION_ID correlation id} (the connection
+ * id and the frame number), the {@link IntegrationMessageHeaderAccessor#SEQUENCE_NUMBER
+ * sequence number}, the {@link IntegrationMessageHeaderAccessor#SEQUENCE_SIZE sequence
+ * size} (0 until known) and a {@link #LAST_CHUNK} header.
+ * <p>
+ * With {@link #setLeanHeaders(Collection) lean headers}, only the listed connection
+ * headers are added, and their values are computed once per connection rather than
+ * for every message; the header map of the connection whose message was last mapped
+ * on each thread is reused until a message from another connection is mapped. The
+ * {@link IpHeaders#HOSTNAME host name} is the exception: it is obtained from the
+ * connection for each message, since a connection may resolve it after it opens.
+ * The {@link #setApplySequence(boolean) sequence} and
+ * {@link #setAddContentTypeHeader(boolean) content type} headers are added as usual.
+ * <p>
+ * Payloads are converted to and from characters by a {@link CharsetCodec}, which reuses
+ * its decoder and encoder; received payloads are converted according to the
+ * {@link #setPayloadType(PayloadType) payload type}.
+ */
+public class InboundTcpMessageMapper extends TcpMessageMapper {
+
+	/**
+	 * Header indicating whether a message is the last chunk of a frame.
+	 */
+	public static final String LAST_CHUNK = "tcp_lastChunk";
+
+	/**
+	 * The connection headers that can be selected for lean headers.
+	 */
+	public static final List<String> CONNECTION_HEADERS = Collections.unmodifiableList(Arrays.asList(
+			IpHeaders.CONNECTION_ID, IpHeaders.IP_ADDRESS, IpHeaders.HOSTNAME, IpHeaders.REMOTE_PORT,
+			IpHeaders.LOCAL_ADDRESS));
+
+	private static final ThreadLocal<ConnectionHeaders> connectionHeaders = new ThreadLocal<>();
+
+	private Set<String> leanHeaders;
+
+	private PayloadType payloadType = PayloadType.BYTES;
+
+	private CharsetCodec codec = new CharsetCodec(StandardCharsets.UTF_8);
+
+	private boolean applySequence;
+
+	private boolean addContentTypeHeader;
+
+	private String contentType = "application/octet-stream;charset=UTF-8";
+
+	@Override
+	public void setCharset(String charset) {
+		super.setCharset(charset);
+		this.codec = new CharsetCodec(Charset.forName(charset));
+	}
+
+	@Override
+	public void setApplySequence(boolean applySequence) {
+		super.setApplySequence(applySequence);
+		this.applySequence = applySequence;
+	}
+
+	@Override
+	public void setContentType(String contentType) {
+		super.setContentType(contentType);
+		this.contentType = contentType;
+		Charset charset = MimeType.valueOf(contentType).getCharset();
+		if (charset != null) {
+			this.codec = new CharsetCodec(charset);
+		}
+	}
+
+	@Override
+	public void setAddContentTypeHeader(boolean addContentTypeHeader) {
+		super.setAddContentTypeHeader(addContentTypeHeader);
+		this.addContentTypeHeader = addContentTypeHeader;
+	}
+
+	/**
+	 * Set the type of the payload of received messages.
+	 * @param payloadType the payload type.
+	 */
+	public void setPayloadType(PayloadType payloadType) {
+		Assert.notNull(payloadType, "'payloadType' cannot be null");
+		this.payloadType = payloadType;
+	}
+
+	/**
+	 * Add only the listed connection headers (from {@link #CONNECTION_HEADERS}) to each
+	 * message, computing their values once per connection; null (default) for all the
+	 * standard headers.
+	 * @param leanHeaders the header names.
+	 */
+	public void setLeanHeaders(Collection<String> leanHeaders) {
+		if (leanHeaders == null) {
+			this.leanHeaders = null;
+		}
+		else {
+			for (String header : leanHeaders) {
+				Assert.isTrue(CONNECTION_HEADERS.contains(header), () -> "'" + header
+						+ "' is not a connection header; expected one of " + CONNECTION_HEADERS);
+			}
+			this.leanHeaders = new LinkedHashSet<>(leanHeaders);
+		}
+	}
+
+	@Override
+	public Message<?> toMessage(TcpConnection connection, Map<String, Object> headers) throws Exception {
+		if (this.leanHeaders == null && this.payloadType == PayloadType.BYTES) {
+			return super.toMessage(connection, headers);
+		}
+		Object payload = connection.getPayload();
+		if (payload == null) {
+			return null;
+		}
+		if (payload instanceof byte[] && this.payloadType == PayloadType.STRING) {
+			payload = this.codec.decode((byte[]) payload);
+		}
+		AbstractIntegrationMessageBuilder<Object> builder = getMessageBuilderFactory().withPayload(payload)
+				.copyHeaders(connectionHeaders(connection));
+		if (this.leanHeaders == null || this.leanHeaders.contains(IpHeaders.HOSTNAME)) {
+			String hostName = connection.getHostName();
+			if (hostName != null) {
+				builder.setHeader(IpHeaders.HOSTNAME, hostName);
+			}
+		}
+		if (this.applySequence) {
+			builder.setCorrelationId(connection.getConnectionId())
+					.setSequenceNumber((int) connection.incrementAndGetConnectionSequence());
+		}
+		if (this.addContentTypeHeader) {
+			builder.setHeader(MessageHeaders.CONTENT_TYPE, this.contentType);
+		}
+		Map<String, ?> customHeaders = supplyCustomHeaders(connection);
+		if (customHeaders != null) {
+			builder.copyHeadersIfAbsent(customHeaders);
+		}
+		if (headers != null) {
+			builder.copyHeadersIfAbsent(headers);
+		}
+		return builder.build();
+	}
+
+	private Map<String, Object> connectionHeaders(TcpConnection connection) {
+		ConnectionHeaders cached = connectionHeaders.get();
+		if (cached != null && cached.mapper == this && cached.connectionId.equals(connection.getConnectionId())) {
+			return cached.headers;
+		}
+		Map<String, Object> headers = new LinkedHashMap<>();
+		for (String header : this.leanHeaders != null ? this.leanHeaders : CONNECTION_HEADERS) {
+			Object value = IpHeaders.HOSTNAME.equals(header) ? null : connectionHeader(connection, header);
+			if (value != null) {
+				headers.put(header, value);
+			}
+		}
+		cached = new ConnectionHeaders(this, connection.getConnectionId(), Collections.unmodifiableMap(headers));
+		connectionHeaders.set(cached);
+		return cached.headers;
+	}
+
+	@Override
+	protected byte[] getPayloadAsBytes(Message<?> message) {
+		Object payload = message.getPayload();
+		if (payload instanceof CharSequence) {
+			return this.codec.encode((CharSequence) payload);
+		}
+		return super.getPayloadAsBytes(message);
+	}
+
+	private static Object connectionHeader(TcpConnection connection, String header) {
+		switch (header) {
+			case IpHeaders.CONNECTION_ID:
+				return connection.getConnectionId();
+			case IpHeaders.IP_ADDRESS:
+				return connection.getHostAddress();
+			case IpHeaders.REMOTE_PORT:
+				return connection.getPort();
+			default:
+				SocketInfo socketInfo = connection.getSocketInfo();
+				return socketInfo == null ? null : socketInfo.getLocalAddress();
+		}
+	}
+
+	@Override
+	protected Map<String, ?> supplyCustomHeaders(TcpConnection connection) {
+		ChunkingFrameDeserializer.Chunk chunk = ChunkingFrameDeserializer.pollChunk(connection);
+		if (chunk == null) {
+			return null;
+		}
+		Map<String, Object> headers = new HashMap<>();
+		headers.put(IntegrationMessageHeaderAccessor.CORRELATION_ID,
+				connection.getConnectionId() + ":" + chunk.getFrame());
+		headers.put(IntegrationMessageHeaderAccessor.SEQUENCE_NUMBER, chunk.getSequenceNumber());
+		headers.put(IntegrationMessageHeaderAccessor.SEQUENCE_SIZE, chunk.getSequenceSize());
+		headers.put(LAST_CHUNK, chunk.isLast());
+		return headers;
+	}
+
+	private static final class ConnectionHeaders {
+
+		private final InboundTcpMessageMapper mapper;
+
+		private final String connectionId;
+
+		private final Map<String, Object> headers;
+
+		ConnectionHeaders(InboundTcpMessageMapper mapper, String connectionId, Map<String, Object> headers) {
+			this.mapper = mapper;
+			this.connectionId = connectionId;
+			this.headers = headers;
+		}
+
+	}
+
+}
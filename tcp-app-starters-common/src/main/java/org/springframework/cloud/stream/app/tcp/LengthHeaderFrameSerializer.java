@@ -0,0 +1,84 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.app.tcp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.springframework.util.Assert;
+
+/**
+ * Frame serializer for data preceded by a big-endian length header of 1, 2 or 4 bytes;
+ * covers {@link Encoding#L1}, {@link Encoding#L2} and {@link Encoding#L4}. The payload
+ * is read straight into an exactly sized array.
+ */
+public class LengthHeaderFrameSerializer extends AbstractFrameSerializer {
+
+	private final int headerSize;
+
+	public LengthHeaderFrameSerializer(int headerSize) {
+		Assert.isTrue(headerSize == 1 || headerSize == 2 || headerSize == 4,
+				"'headerSize' must be 1, 2 or 4");
+		this.headerSize = headerSize;
+	}
+
+	@Override
+	public byte[] deserialize(InputStream inputStream) throws IOException {
+		int length = (int) readLength(inputStream);
+		if (length > getMaxMessageSize()) {
+			throw frameError("Message length " + length + " exceeds max message length: " + getMaxMessageSize(),
+					new byte[0], 0);
+		}
+		byte[] frame = new byte[length];
+		readFully(inputStream, frame, 0, length);
+		return frame;
+	}
+
+	/**
+	 * Read the length header of the next frame.
+	 * @param inputStream the stream.
+	 * @return the length of the frame.
+	 * @throws IOException if the stream is closed or the length is negative.
+	 */
+	protected long readLength(InputStream inputStream) throws IOException {
+		int length = readFirstByte(inputStream);
+		for (int i = 1; i < this.headerSize; i++) {
+			int bite = inputStream.read();
+			checkClosure(bite);
+			length = (length << 8) | bite;
+		}
+		if (length < 0) {
+			throw frameError("Message length " + length + " < 0", new byte[0], 0);
+		}
+		return length;
+	}
+
+	@Override
+	public void serialize(byte[] bytes, OutputStream outputStream) throws IOException {
+		int length = bytes.length;
+		if (this.headerSize < 4 && length >>> (this.headerSize * 8) != 0) {
+			throw new IllegalArgumentException("Length header: " + this.headerSize
+					+ " too short to accommodate message length " + length);
+		}
+		byte[] header = new byte[this.headerSize];
+		for (int i = 0; i < this.headerSize; i++) {
+			header[i] = (byte) (length >>> ((this.headerSize - 1 - i) * 8));
+		}
+		writeFrame(outputStream, header, this.headerSize, bytes, length, null);
+	}
+
+}
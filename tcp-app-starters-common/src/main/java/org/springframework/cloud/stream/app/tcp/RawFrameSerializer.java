@@ -0,0 +1,61 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.app.tcp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Frame serializer for {@link Encoding#RAW} data, where the sender indicates the end of
+ * the message by closing the socket. Data is read in bulk since the whole remainder of
+ * the stream belongs to the frame.
+ */
+public class RawFrameSerializer extends AbstractFrameSerializer {
+
+	@Override
+	public byte[] deserialize(InputStream inputStream) throws IOException {
+		int bite = readFirstByte(inputStream);
+		byte[] buffer = acquireBuffer(FrameBufferPool.MIN_CAPACITY);
+		try {
+			buffer[0] = (byte) bite;
+			int n = 1;
+			int max = getMaxMessageSize();
+			while (true) {
+				if (n == buffer.length) {
+					buffer = growBuffer(buffer, n);
+				}
+				int len = inputStream.read(buffer, n, Math.min(buffer.length, max + 1) - n);
+				if (len < 0) {
+					return copyFrame(buffer, 0, n);
+				}
+				n += len;
+				if (n > max) {
+					throw frameError("Socket was not closed before max message length: " + max, buffer, n);
+				}
+			}
+		}
+		finally {
+			releaseBuffer(buffer);
+		}
+	}
+
+	@Override
+	public void serialize(byte[] bytes, OutputStream outputStream) throws IOException {
+		outputStream.write(bytes);
+	}
+
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.app.tcp;
+
+/**
+ * What happens to a task when a bounded connection executor is saturated.
+ * <p>
+ * The caller policies hold up the thread submitting the task: the acceptor of a server
+ * with blocking sockets, or the thread reading the socket with NIO. They never apply to
+ * the NIO selector pool, which always rejects.
+ */
+public enum RejectionPolicy {
+
+	/**
+	 * Reject the task; the connection is closed.
+	 */
+	ABORT,
+
+	/**
+	 * Run the task on the submitting thread; a server then accepts no connections until
+	 * that task (the reader of a blocking connection) ends.
+	 */
+	CALLER_RUNS,
+
+	/**
+	 * Block the submitting thread until a thread or queue slot is available; a server then
+	 * accepts no connections meanwhile.
+	 */
+	CALLER_BLOCKS
+
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.app.tcp;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jmx.export.annotation.ManagedMetric;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.Assert;
+
+/**
+ * A cache of host names by address, so that a reverse lookup does not block each new
+ * connection. Names are resolved, and refreshed when they expire, by background
+ * threads; until an address has been resolved, and when it cannot be, its textual form
+ * is returned. Addresses that cannot be resolved are retried after a shorter time.
+ * When the cache is full, an arbitrary entry is evicted.
+ */
+@ManagedResource
+public class ReverseLookupCache implements DisposableBean {
+
+	private static final int RESOLVER_THREADS = 4;
+
+	private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+	private final int maxSize;
+
+	private final long ttl;
+
+	private final long negativeTtl;
+
+	private final ExecutorService resolver;
+
+	private final AtomicLong hits = new AtomicLong();
+
+	private final AtomicLong misses = new AtomicLong();
+
+	private final AtomicLong lookupFailures = new AtomicLong();
+
+	/**
+	 * Construct an instance.
+	 * @param maxSize the maximum number of addresses.
+	 * @param ttl the time (ms) after which a host name is refreshed.
+	 * @param negativeTtl the time (ms) after which an unresolved address is looked up again.
+	 */
+	public ReverseLookupCache(int maxSize, long ttl, long negativeTtl) {
+		Assert.isTrue(maxSize > 0, "'maxSize' must be positive");
+		this.maxSize = maxSize;
+		this.ttl = ttl;
+		this.negativeTtl = negativeTtl;
+		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("tcp-reverse-lookup-");
+		threadFactory.setDaemon(true);
+		this.resolver = Executors.newFixedThreadPool(RESOLVER_THREADS, threadFactory);
+	}
+
+	@ManagedMetric(description = "Cached addresses")
+	public int getSize() {
+		return this.entries.size();
+	}
+
+	@ManagedMetric(description = "Lookups answered from the cache")
+	public long getHits() {
+		return this.hits.get();
+	}
+
+	@ManagedMetric(description = "Lookups of addresses not in the cache")
+	public long getMisses() {
+		return this.misses.get();
+	}
+
+	@ManagedMetric(description = "Reverse lookups that did not resolve a host name")
+	public long getLookupFailures() {
+		return this.lookupFailures.get();
+	}
+
+	/**
+	 * Return the host name for the address, or its textual form if it has not (yet) been
+	 * resolved; never blocks on a lookup.
+	 * @param address the address.
+	 * @return the host name.
+	 */
+	public String getHostName(InetAddress address) {
+		String key = address.getHostAddress();
+		Entry entry = this.entries.get(key);
+		if (entry == null) {
+			this.misses.incrementAndGet();
+			if (this.entries.size() >= this.maxSize) {
+				evict();
+			}
+			Entry created = new Entry(key);
+			entry = this.entries.putIfAbsent(key, created);
+			if (entry == null) {
+				created.refreshing.set(true);
+				resolve(address, created);
+				return key;
+			}
+		}
+		else {
+			this.hits.incrementAndGet();
+		}
+		if (entry.expires <= System.currentTimeMillis() && entry.refreshing.compareAndSet(false, true)) {
+			resolve(address, entry);
+		}
+		return entry.hostName;
+	}
+
+	private void evict() {
+		Iterator<String> iterator = this.entries.keySet().iterator();
+		while (this.entries.size() >= this.maxSize && iterator.hasNext()) {
+			iterator.next();
+			iterator.remove();
+		}
+	}
+
+	private void resolve(InetAddress address, Entry entry) {
+		try {
+			this.resolver.execute(() -> {
+				String hostName = lookup(address);
+				if (hostName.equals(entry.address)) {
+					this.lookupFailures.incrementAndGet();
+					entry.expires = System.currentTimeMillis() + this.negativeTtl;
+				}
+				else {
+					entry.hostName = hostName;
+					entry.expires = System.currentTimeMillis() + this.ttl;
+				}
+				entry.refreshing.set(false);
+			});
+		}
+		catch (RejectedExecutionException e) {
+			entry.refreshing.set(false);
+		}
+	}
+
+	private static String lookup(InetAddress address) {
+		try {
+			// a copy without the host name, if any, that the address was created with
+			return InetAddress.getByAddress(address.getAddress()).getHostName();
+		}
+		catch (UnknownHostException e) {
+			return address.getHostAddress();
+		}
+	}
+
+	@Override
+	public void destroy() {
+		this.resolver.shutdownNow();
+	}
+
+	private static final class Entry {
+
+		private final String address;
+
+		private final AtomicBoolean refreshing = new AtomicBoolean();
+
+		private volatile String hostName;
+
+		private volatile long expires;
+
+		Entry(String address) {
+			this.address = address;
+			this.hostName = address;
+		}
+
+	}
+
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.app.tcp;
+
+import java.net.InetAddress;
+import java.util.function.Supplier;
+
+/**
+ * Connection support that creates connections which obtain their host names from a
+ * {@link ReverseLookupCache}, rather than with a blocking lookup while the connection
+ * is being established. A connection reports its address as its host name until the
+ * address has been resolved.
+ */
+public class ReverseLookupConnectionSupport extends FrameConnectionSupport {
+
+	private final ReverseLookupCache cache;
+
+	public ReverseLookupConnectionSupport(ReverseLookupCache cache) {
+		this.cache = cache;
+	}
+
+	@Override
+	protected Supplier<String> hostName(InetAddress address) {
+		return new HostName(address);
+	}
+
+	/**
+	 * The host name of a connection; once resolved, it is kept for the life of the
+	 * connection.
+	 */
+	private final class HostName implements Supplier<String> {
+
+		private final InetAddress address;
+
+		private volatile String resolved;
+
+		HostName(InetAddress address) {
+			this.address = address;
+		}
+
+		@Override
+		public String get() {
+			String hostName = this.resolved;
+			if (hostName == null) {
+				hostName = ReverseLookupConnectionSupport.this.cache.getHostName(this.address);
+				if (!hostName.equals(this.address.getHostAddress())) {
+					this.resolved = hostName;
+				}
+			}
+			return hostName;
+		}
+
+	}
+
+}
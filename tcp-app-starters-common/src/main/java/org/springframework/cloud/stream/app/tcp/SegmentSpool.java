@@ -0,0 +1,415 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.app.tcp;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedMetric;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.util.Assert;
+
+/**
+ * An append-only log of records in memory-mapped segment files of a fixed size. Each
+ * record is its length plus one (so that the zeros of an unwritten region end a
+ * segment), a type byte and the payload; a record is appended by copying it into the
+ * mapped segment, without allocating. The oldest record is read with {@link #peek()}
+ * and discarded with {@link #remove()}; a segment file is deleted when its last record
+ * is removed, unless records are still being appended to it.
+ * <p>
+ * The position of the oldest record is kept in a memory-mapped checkpoint file, which
+ * is forced to the storage device as the {@link FsyncPolicy} forces the segments. When
+ * the spool is created, the records of the segment files found in the directory are
+ * read first, from the checkpoint; a record that was read but not removed before a
+ * restart is read again, and removed records are not. The spool is thread-safe.
+ */
+@ManagedResource
+public class SegmentSpool implements Closeable {
+
+	private static final Log logger = LogFactory.getLog(SegmentSpool.class);
+
+	private static final String SUFFIX = ".seg";
+
+	private static final String CHECKPOINT = "checkpoint";
+
+	// the sequence of the segment being read and the position in it
+	private static final int CHECKPOINT_SIZE = 12;
+
+	private static final int HEADER_SIZE = 5;
+
+	private static final Method invokeCleaner;
+
+	private static final Object unsafe;
+
+	static {
+		Method method = null;
+		Object theUnsafe = null;
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			method = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+			Field field = unsafeClass.getDeclaredField("theUnsafe");
+			field.setAccessible(true);
+			theUnsafe = field.get(null);
+		}
+		catch (ReflectiveOperationException | RuntimeException e) {
+			// Java 8; a segment is unmapped when its buffer is collected
+			method = null;
+		}
+		invokeCleaner = method;
+		unsafe = theUnsafe;
+	}
+
+	private final Deque<Segment> segments = new ArrayDeque<>();
+
+	private final File directory;
+
+	private final int segmentSize;
+
+	private final long maxBytes;
+
+	private final FsyncPolicy fsync;
+
+	private final MappedByteBuffer checkpoint;
+
+	private Segment writeSegment;
+
+	private long nextSequence;
+
+	private long records;
+
+	private long rejected;
+
+	private boolean closed;
+
+	/**
+	 * Construct an instance, recovering the records of any segment files in the directory.
+	 * @param directory the directory of the segment files; created if necessary.
+	 * @param segmentSize the size of each segment file; the maximum record size is 5 less.
+	 * @param maxBytes the maximum total size of the segment files.
+	 * @param fsync when writes are forced to the storage device.
+	 * @throws IOException if the segment files cannot be read.
+	 */
+	public SegmentSpool(File directory, int segmentSize, long maxBytes, FsyncPolicy fsync) throws IOException {
+		Assert.isTrue(segmentSize > HEADER_SIZE, "'segmentSize' must be greater than " + HEADER_SIZE);
+		Assert.isTrue(maxBytes >= segmentSize, "'maxBytes' must be at least 'segmentSize'");
+		Assert.notNull(fsync, "'fsync' cannot be null");
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Failed to create spool directory " + directory);
+		}
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+		this.maxBytes = maxBytes;
+		this.fsync = fsync;
+		File checkpointFile = new File(directory, CHECKPOINT);
+		boolean checkpointed = checkpointFile.length() >= CHECKPOINT_SIZE;
+		try (FileChannel channel = FileChannel.open(checkpointFile.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			this.checkpoint = channel.map(FileChannel.MapMode.READ_WRITE, 0, CHECKPOINT_SIZE);
+		}
+		recover(checkpointed ? this.checkpoint.getLong(0) : -1, checkpointed ? this.checkpoint.getInt(8) : 0);
+	}
+
+	private void recover(long readSequence, int readPosition) throws IOException {
+		File[] files = this.directory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+		Arrays.sort(files);
+		this.nextSequence = readSequence + 1;
+		for (File file : files) {
+			long sequence = Long.parseLong(file.getName().substring(0, file.getName().length() - SUFFIX.length()));
+			this.nextSequence = Math.max(this.nextSequence, sequence + 1);
+			Segment segment = map(file, sequence, (int) Math.min(file.length(), Integer.MAX_VALUE));
+			if (sequence < readSequence) {
+				// drained, but not deleted
+				delete(segment);
+				continue;
+			}
+			int position = 0;
+			int length;
+			while (position + HEADER_SIZE <= segment.size
+					&& (length = segment.buffer.getInt(position) - 1) >= 0
+					&& position + HEADER_SIZE + length <= segment.size) {
+				if (sequence == readSequence && position < readPosition) {
+					segment.readPosition = position + HEADER_SIZE + length;
+				}
+				else {
+					this.records++;
+				}
+				position += HEADER_SIZE + length;
+			}
+			segment.writePosition = position;
+			if (segment.readPosition == position) {
+				delete(segment);
+			}
+			else {
+				this.segments.add(segment);
+			}
+		}
+		if (this.records > 0 && logger.isInfoEnabled()) {
+			logger.info("Recovered " + this.records + " spooled records from " + this.directory);
+		}
+	}
+
+	@ManagedAttribute(description = "The size of each segment file")
+	public int getSegmentSize() {
+		return this.segmentSize;
+	}
+
+	@ManagedAttribute(description = "The maximum total size of the segment files")
+	public long getMaxBytes() {
+		return this.maxBytes;
+	}
+
+	@ManagedMetric(description = "Records in the spool")
+	public synchronized long getRecords() {
+		return this.records;
+	}
+
+	@ManagedMetric(description = "Segment files in the spool")
+	public synchronized int getSegments() {
+		return this.segments.size();
+	}
+
+	@ManagedMetric(description = "Records rejected because the spool was full or they were too large")
+	public synchronized long getRejected() {
+		return this.rejected;
+	}
+
+	/**
+	 * Return true if the spool has no records.
+	 * @return true if empty.
+	 */
+	public synchronized boolean isEmpty() {
+		return this.records == 0;
+	}
+
+	/**
+	 * Append a record.
+	 * @param type the record type.
+	 * @param payload the payload.
+	 * @return false if the record is larger than a segment or the spool is full.
+	 * @throws IllegalStateException if the spool is closed.
+	 */
+	public synchronized boolean append(byte type, byte[] payload) {
+		Assert.state(!this.closed, "The spool is closed");
+		int size = HEADER_SIZE + payload.length;
+		Segment segment = this.writeSegment;
+		if (segment == null || segment.writePosition + size > segment.size) {
+			if (size > this.segmentSize) {
+				this.rejected++;
+				return false;
+			}
+			readSegment();
+			if (segment != null && segment.readPosition == segment.writePosition) {
+				// fully read, so it is the only segment
+				this.segments.removeFirst();
+				delete(segment);
+				this.writeSegment = null;
+				segment = null;
+			}
+			if ((long) (this.segments.size() + 1) * this.segmentSize > this.maxBytes) {
+				this.rejected++;
+				return false;
+			}
+			if (segment != null && this.fsync == FsyncPolicy.SEGMENT) {
+				segment.buffer.force();
+			}
+			segment = newSegment();
+			this.segments.add(segment);
+			this.writeSegment = segment;
+		}
+		MappedByteBuffer buffer = segment.buffer;
+		int position = segment.writePosition;
+		buffer.position(position + HEADER_SIZE);
+		buffer.put(payload);
+		buffer.put(position + 4, type);
+		buffer.putInt(position, payload.length + 1);
+		segment.writePosition = position + size;
+		this.records++;
+		if (this.fsync == FsyncPolicy.ALWAYS) {
+			buffer.force();
+		}
+		return true;
+	}
+
+	/**
+	 * Return the oldest record, without removing it.
+	 * @return the record, or null if the spool is empty.
+	 */
+	public synchronized Record peek() {
+		Segment segment = readSegment();
+		if (segment == null) {
+			return null;
+		}
+		MappedByteBuffer buffer = segment.buffer;
+		int position = segment.readPosition;
+		byte[] payload = new byte[buffer.getInt(position) - 1];
+		byte type = buffer.get(position + 4);
+		buffer.position(position + HEADER_SIZE);
+		buffer.get(payload);
+		return new Record(type, payload);
+	}
+
+	/**
+	 * Remove the oldest record.
+	 */
+	public synchronized void remove() {
+		Segment segment = readSegment();
+		Assert.state(segment != null, "The spool is empty");
+		segment.readPosition += HEADER_SIZE + segment.buffer.getInt(segment.readPosition) - 1;
+		this.records--;
+		this.checkpoint.putLong(0, segment.sequence);
+		this.checkpoint.putInt(8, segment.readPosition);
+		if (segment.readPosition == segment.writePosition && segment != this.writeSegment) {
+			this.segments.removeFirst();
+			delete(segment);
+			if (this.fsync == FsyncPolicy.SEGMENT) {
+				this.checkpoint.force();
+			}
+		}
+		if (this.fsync == FsyncPolicy.ALWAYS) {
+			this.checkpoint.force();
+		}
+	}
+
+	private Segment readSegment() {
+		Segment segment = this.segments.peekFirst();
+		while (segment != null && segment.readPosition == segment.writePosition && segment != this.writeSegment) {
+			this.segments.removeFirst();
+			delete(segment);
+			segment = this.segments.peekFirst();
+		}
+		return segment == null || segment.readPosition == segment.writePosition ? null : segment;
+	}
+
+	private Segment newSegment() {
+		long sequence = this.nextSequence++;
+		File file = new File(this.directory, String.format("%019d", sequence) + SUFFIX);
+		try {
+			return map(file, sequence, this.segmentSize);
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException("Failed to create spool segment " + file, e);
+		}
+	}
+
+	private static Segment map(File file, long sequence, int size) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			return new Segment(file, sequence, channel.map(FileChannel.MapMode.READ_WRITE, 0, size), size);
+		}
+	}
+
+	private static void delete(Segment segment) {
+		unmap(segment.buffer);
+		if (!segment.file.delete()) {
+			logger.warn("Failed to delete spool segment " + segment.file);
+		}
+	}
+
+	private static void unmap(MappedByteBuffer buffer) {
+		if (invokeCleaner != null) {
+			try {
+				invokeCleaner.invoke(unsafe, buffer);
+			}
+			catch (ReflectiveOperationException | RuntimeException e) {
+				logger.debug("Failed to unmap a spool segment", e);
+			}
+		}
+	}
+
+	@Override
+	public synchronized void close() {
+		if (this.closed) {
+			return;
+		}
+		this.closed = true;
+		for (Segment segment : this.segments) {
+			if (this.fsync != FsyncPolicy.NEVER) {
+				segment.buffer.force();
+			}
+			unmap(segment.buffer);
+		}
+		if (this.fsync != FsyncPolicy.NEVER) {
+			this.checkpoint.force();
+		}
+		unmap(this.checkpoint);
+		this.segments.clear();
+		this.writeSegment = null;
+		this.records = 0;
+	}
+
+	/**
+	 * A spooled record.
+	 */
+	public static final class Record {
+
+		private final byte type;
+
+		private final byte[] payload;
+
+		Record(byte type, byte[] payload) {
+			this.type = type;
+			this.payload = payload;
+		}
+
+		public byte getType() {
+			return this.type;
+		}
+
+		public byte[] getPayload() {
+			return this.payload;
+		}
+
+	}
+
+	private static final class Segment {
+
+		private final File file;
+
+		private final long sequence;
+
+		private final MappedByteBuffer buffer;
+
+		private final int size;
+
+		private int readPosition;
+
+		private int writePosition;
+
+		Segment(File file, long sequence, MappedByteBuffer buffer, int size) {
+			this.file = file;
+			this.sequence = sequence;
+			this.buffer = buffer;
+			this.size = size;
+		}
+
+	}
+
+}
@@ -0,0 +1,403 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.app.tcp;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.jmx.export.annotation.ManagedMetric;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.MessagingException;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.Assert;
+
+/**
+ * A {@link MessageChannel} that sends to another channel (normally the binder's output),
+ * appending a message to a {@link SegmentSpool} instead when the send fails. While the
+ * spool has records, new messages are appended behind them and a background thread
+ * sends the spooled messages in order, retrying each after the retry interval until
+ * the send succeeds. Spooled messages keep their payload ({@code byte[]} or a
+ * {@link CharSequence}, replayed as a UTF-8 {@code String}), their {@code ip_} headers
+ * and their content type, and are replayed with a {@link #SPOOLED} header. Header
+ * values other than strings, integers and addresses are not kept, and the content type
+ * is replayed as a string.
+ * <p>
+ * Any exception from the send causes the message to be spooled, so a message that can
+ * never be sent holds back those behind it. Such a message is discarded, and logged,
+ * after the {@link #setMaxAttempts(int) maximum number of attempts}, or when
+ * {@link #discardHead()} is invoked, for example over JMX, while it is being retried.
+ */
+@ManagedResource
+public class SpoolingOutputChannel implements MessageChannel, DisposableBean {
+
+	/**
+	 * Header set to {@code true} on messages sent from the spool.
+	 */
+	public static final String SPOOLED = "tcp_spooled";
+
+	private static final Log logger = LogFactory.getLog(SpoolingOutputChannel.class);
+
+	private static final byte BYTES = 0;
+
+	private static final byte STRING = 1;
+
+	// set on the type of records whose payload is preceded by the message's headers
+	private static final byte HEADERS = 2;
+
+	private static final String IP_HEADERS = "ip_";
+
+	private static final byte END_HEADER = 0;
+
+	private static final byte STRING_HEADER = 1;
+
+	private static final byte INTEGER_HEADER = 2;
+
+	private static final byte ADDRESS_HEADER = 3;
+
+	private final MessageChannel delegate;
+
+	private final SegmentSpool spool;
+
+	private final long retryInterval;
+
+	private final ExecutorService drainer;
+
+	private volatile boolean running = true;
+
+	private int maxAttempts;
+
+	private boolean spooling;
+
+	private int attempts;
+
+	private boolean discardRequested;
+
+	private long sentFromSpool;
+
+	private long discarded;
+
+	/**
+	 * Construct an instance.
+	 * @param delegate the channel to send to.
+	 * @param spool the spool.
+	 * @param retryInterval the time (ms) to wait before retrying a failed send from the spool.
+	 */
+	public SpoolingOutputChannel(MessageChannel delegate, SegmentSpool spool, long retryInterval) {
+		Assert.notNull(delegate, "'delegate' cannot be null");
+		Assert.notNull(spool, "'spool' cannot be null");
+		Assert.isTrue(retryInterval > 0, "'retryInterval' must be positive");
+		this.delegate = delegate;
+		this.spool = spool;
+		this.retryInterval = retryInterval;
+		this.spooling = !spool.isEmpty();
+		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("tcp-spool-");
+		threadFactory.setDaemon(true);
+		this.drainer = Executors.newSingleThreadExecutor(threadFactory);
+		this.drainer.execute(this::drain);
+	}
+
+	/**
+	 * Set the number of attempts to send a spooled message after which it is discarded;
+	 * 0 (default) to retry until it is sent.
+	 * @param maxAttempts the maximum number of attempts.
+	 */
+	public void setMaxAttempts(int maxAttempts) {
+		Assert.isTrue(maxAttempts >= 0, "'maxAttempts' cannot be negative");
+		synchronized (this.spool) {
+			this.maxAttempts = maxAttempts;
+		}
+	}
+
+	@ManagedMetric(description = "Messages sent from the spool")
+	public long getSentFromSpool() {
+		synchronized (this.spool) {
+			return this.sentFromSpool;
+		}
+	}
+
+	@ManagedMetric(description = "Spooled messages discarded because they could not be sent")
+	public long getDiscarded() {
+		synchronized (this.spool) {
+			return this.discarded;
+		}
+	}
+
+	@ManagedMetric(description = "Failed attempts to send the oldest spooled message")
+	public int getAttempts() {
+		synchronized (this.spool) {
+			return this.attempts;
+		}
+	}
+
+	/**
+	 * Discard the oldest spooled message, if an attempt to send it has failed; it is
+	 * discarded instead of its next attempt.
+	 * @return true if the message will be discarded.
+	 */
+	@ManagedOperation(description = "Discard the oldest spooled message, if an attempt to send it has failed")
+	public boolean discardHead() {
+		synchronized (this.spool) {
+			if (this.attempts == 0) {
+				return false;
+			}
+			this.discardRequested = true;
+			this.spool.notifyAll();
+			return true;
+		}
+	}
+
+	@Override
+	public boolean send(Message<?> message) {
+		return send(message, INDEFINITE_TIMEOUT);
+	}
+
+	@Override
+	public boolean send(Message<?> message, long timeout) {
+		synchronized (this.spool) {
+			if (this.spooling) {
+				append(message);
+				return true;
+			}
+		}
+		try {
+			if (this.delegate.send(message, timeout)) {
+				return true;
+			}
+		}
+		catch (MessagingException e) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Send failed; spooling", e);
+			}
+		}
+		synchronized (this.spool) {
+			append(message);
+			if (!this.spooling) {
+				logger.warn("Output unavailable; spooling messages");
+				this.spooling = true;
+				this.spool.notifyAll();
+			}
+		}
+		return true;
+	}
+
+	private void append(Message<?> message) {
+		Object payload = message.getPayload();
+		boolean appended;
+		if (payload instanceof byte[]) {
+			appended = this.spool.append((byte) (BYTES | HEADERS), record(message.getHeaders(), (byte[]) payload));
+		}
+		else if (payload instanceof CharSequence) {
+			appended = this.spool.append((byte) (STRING | HEADERS), record(message.getHeaders(),
+					payload.toString().getBytes(StandardCharsets.UTF_8)));
+		}
+		else {
+			throw new MessageDeliveryException(message, "Cannot spool a payload of type "
+					+ payload.getClass().getName());
+		}
+		if (!appended) {
+			throw new MessageDeliveryException(message, "The spool is full or the message is too large");
+		}
+	}
+
+	/*
+	 * The headers to replay, followed by the payload.
+	 */
+	private static byte[] record(MessageHeaders headers, byte[] payload) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(payload.length + 128);
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			for (Map.Entry<String, Object> header : headers.entrySet()) {
+				String name = header.getKey();
+				Object value = header.getValue();
+				if (MessageHeaders.CONTENT_TYPE.equals(name)
+						|| (name.startsWith(IP_HEADERS) && value instanceof CharSequence)) {
+					out.writeByte(STRING_HEADER);
+					out.writeUTF(name);
+					out.writeUTF(value.toString());
+				}
+				else if (name.startsWith(IP_HEADERS) && value instanceof Integer) {
+					out.writeByte(INTEGER_HEADER);
+					out.writeUTF(name);
+					out.writeInt((Integer) value);
+				}
+				else if (name.startsWith(IP_HEADERS) && value instanceof InetAddress) {
+					byte[] address = ((InetAddress) value).getAddress();
+					out.writeByte(ADDRESS_HEADER);
+					out.writeUTF(name);
+					out.writeByte(address.length);
+					out.write(address);
+				}
+			}
+			out.writeByte(END_HEADER);
+			out.write(payload);
+		}
+		catch (IOException e) {
+			// not thrown by a byte array stream
+			throw new UncheckedIOException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	private void drain() {
+		while (this.running) {
+			SegmentSpool.Record record;
+			synchronized (this.spool) {
+				while (this.running && !this.spooling) {
+					try {
+						this.spool.wait();
+					}
+					catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						return;
+					}
+				}
+				record = this.spool.peek();
+				if (record == null) {
+					this.spooling = false;
+					logger.info("Spool drained");
+					continue;
+				}
+			}
+			if (send(record)) {
+				synchronized (this.spool) {
+					if (!this.running) {
+						// closed; the record is sent again after a restart
+						return;
+					}
+					this.spool.remove();
+					this.sentFromSpool++;
+					this.attempts = 0;
+					this.discardRequested = false;
+				}
+			}
+			else {
+				synchronized (this.spool) {
+					this.attempts++;
+					if (this.maxAttempts == 0 || this.attempts < this.maxAttempts) {
+						try {
+							this.spool.wait(this.retryInterval);
+						}
+						catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+							return;
+						}
+					}
+					if (this.running && (this.discardRequested
+							|| (this.maxAttempts > 0 && this.attempts >= this.maxAttempts))) {
+						discard(record);
+					}
+				}
+			}
+		}
+	}
+
+	private void discard(SegmentSpool.Record record) {
+		logger.error("Discarding a spooled message of " + record.getPayload().length + " bytes after "
+				+ this.attempts + " failed attempts to send it");
+		this.spool.remove();
+		this.discarded++;
+		this.attempts = 0;
+		this.discardRequested = false;
+	}
+
+	private boolean send(SegmentSpool.Record record) {
+		Message<?> message;
+		try {
+			message = message(record);
+		}
+		catch (IOException e) {
+			// retried like a failed send, so it can be discarded
+			logger.error("Failed to read a spooled message", e);
+			return false;
+		}
+		try {
+			return this.delegate.send(message);
+		}
+		catch (MessagingException e) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Send from the spool failed; retrying in " + this.retryInterval + "ms", e);
+			}
+			return false;
+		}
+	}
+
+	private static Message<?> message(SegmentSpool.Record record) throws IOException {
+		byte[] data = record.getPayload();
+		Map<String, Object> headers = new HashMap<>();
+		int offset = 0;
+		if ((record.getType() & HEADERS) != 0) {
+			ByteArrayInputStream bytes = new ByteArrayInputStream(data);
+			DataInputStream in = new DataInputStream(bytes);
+			byte tag;
+			while ((tag = in.readByte()) != END_HEADER) {
+				String name = in.readUTF();
+				if (tag == STRING_HEADER) {
+					headers.put(name, in.readUTF());
+				}
+				else if (tag == INTEGER_HEADER) {
+					headers.put(name, in.readInt());
+				}
+				else {
+					byte[] address = new byte[in.readByte()];
+					in.readFully(address);
+					headers.put(name, InetAddress.getByAddress(address));
+				}
+			}
+			offset = data.length - bytes.available();
+		}
+		Object payload;
+		if ((record.getType() & STRING) != 0) {
+			payload = new String(data, offset, data.length - offset, StandardCharsets.UTF_8);
+		}
+		else {
+			payload = offset == 0 ? data : Arrays.copyOfRange(data, offset, data.length);
+		}
+		return MessageBuilder.withPayload(payload)
+				.copyHeaders(headers)
+				.setHeader(SPOOLED, true)
+				.build();
+	}
+
+	@Override
+	public void destroy() {
+		this.running = false;
+		this.drainer.shutdownNow();
+		synchronized (this.spool) {
+			this.spool.close();
+		}
+	}
+
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.app.tcp;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A {@link DelimitedFrameSerializer} that searches for the first byte of the terminator
+ * eight bytes at a time, using the classic "has zero byte" test on {@code long} words.
+ * The scan applies to data read in bulk, that is when the connection's stream supports
+ * mark/reset, as on blocking connections created by a {@link FrameConnectionSupport}; NIO
+ * connections are read a byte at a time and only the byte-wise comparison applies.
+ */
+public class SwarDelimitedFrameSerializer extends DelimitedFrameSerializer {
+
+	private static final long LOW_BITS = 0x0101010101010101L;
+
+	private static final long HIGH_BITS = 0x8080808080808080L;
+
+	private final long pattern;
+
+	public SwarDelimitedFrameSerializer(byte[] terminator) {
+		this(-1, terminator);
+	}
+
+	public SwarDelimitedFrameSerializer(int start, byte[] terminator) {
+		super(start, terminator);
+		this.pattern = LOW_BITS * (terminator[0] & 0xff);
+	}
+
+	@Override
+	protected int indexOf(byte[] buffer, int from, int to) {
+		byte first = getTerminator()[0];
+		int last = to - getTerminator().length;
+		ByteBuffer words = ByteBuffer.wrap(buffer).order(ByteOrder.LITTLE_ENDIAN);
+		int i = from;
+		while (i <= last) {
+			if (i + Long.BYTES <= to) {
+				long word = words.getLong(i) ^ this.pattern;
+				long found = (word - LOW_BITS) & ~word & HIGH_BITS;
+				if (found == 0) {
+					i += Long.BYTES;
+					continue;
+				}
+				// the lowest flagged byte is always a true match
+				i += Long.numberOfTrailingZeros(found) >>> 3;
+				if (i > last) {
+					return -1;
+				}
+			}
+			else if (buffer[i] != first) {
+				i++;
+				continue;
+			}
+			if (matchesAt(buffer, i)) {
+				return i;
+			}
+			i++;
+		}
+		return -1;
+	}
+
+}
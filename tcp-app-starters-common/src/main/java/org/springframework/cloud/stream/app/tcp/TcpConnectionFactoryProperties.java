@@ -54,6 +54,62 @@ public final class TcpConnectionFactoryProperties {
 	 */
 	private boolean useDirectBuffers = false;
 
+	/**
+	 * The delimiter used by the DELIMITER encoding; escapes such as \r, \n, \0 and \xHH are supported.
+	 */
+	private String delimiter;
+
+	/**
+	 * The maximum number of threads reading sockets and running decoders (with blocking sockets, one per
+	 * connection, plus the acceptor for a server); 0 for no limit.
+	 */
+	private int readerThreads;
+
+	/**
+	 * When using NIO, the maximum number of threads running the selector and reading sockets (at least 2);
+	 * 0 for no limit.
+	 */
+	private int selectorThreads;
+
+	/**
+	 * The number of tasks queued when the bounded reader or selector pool is busy; 0 to hand off directly.
+	 */
+	private int executorQueueSize;
+
+	/**
+	 * What to do with a task when the bounded reader pool and its queue are full; CALLER_RUNS and
+	 * CALLER_BLOCKS stall the acceptor or the NIO reading thread. A full selector pool always rejects.
+	 */
+	private RejectionPolicy rejectionPolicy = RejectionPolicy.ABORT;
+
+	/**
+	 * The threads on which blocking (non-NIO) connections are read; VIRTUAL requires Java 21 or later,
+	 * and falls back to PLATFORM otherwise.
+	 */
+	private Threading threading = Threading.PLATFORM;
+
+	/**
+	 * When 'reverseLookup' is true, the maximum number of addresses whose host names are cached;
+	 * names are resolved in the background and connections use the address until then.
+	 */
+	private int reverseLookupCacheSize = 10000;
+
+	/**
+	 * The time (ms) after which a cached host name is refreshed.
+	 */
+	private long reverseLookupTtl = 300000;
+
+	/**
+	 * The time (ms) after which an address that could not be resolved is looked up again.
+	 */
+	private long reverseLookupNegativeTtl = 30000;
+
+	/**
+	 * When using NIO, whether to close connections idle for 'socketTimeout' with a timing wheel
+	 * shared by all connections, rather than by checking each connection in turn.
+	 */
+	private boolean idleTimingWheel;
+
 	public int getPort() {
 		return this.port;
 	}
@@ -86,6 +142,14 @@ public final class TcpConnectionFactoryProperties {
 		this.socketTimeout = socketTimeout;
 	}
 
+	public String getDelimiter() {
+		return this.delimiter;
+	}
+
+	public void setDelimiter(String delimiter) {
+		this.delimiter = delimiter;
+	}
+
 	public boolean isReverseLookup() {
 		return this.reverseLookup;
 	}
@@ -94,4 +158,76 @@ public final class TcpConnectionFactoryProperties {
 		this.reverseLookup = reverseLookup;
 	}
 
+	public int getReaderThreads() {
+		return this.readerThreads;
+	}
+
+	public void setReaderThreads(int readerThreads) {
+		this.readerThreads = readerThreads;
+	}
+
+	public int getSelectorThreads() {
+		return this.selectorThreads;
+	}
+
+	public void setSelectorThreads(int selectorThreads) {
+		this.selectorThreads = selectorThreads;
+	}
+
+	public int getExecutorQueueSize() {
+		return this.executorQueueSize;
+	}
+
+	public void setExecutorQueueSize(int executorQueueSize) {
+		this.executorQueueSize = executorQueueSize;
+	}
+
+	public RejectionPolicy getRejectionPolicy() {
+		return this.rejectionPolicy;
+	}
+
+	public void setRejectionPolicy(RejectionPolicy rejectionPolicy) {
+		this.rejectionPolicy = rejectionPolicy;
+	}
+
+	public Threading getThreading() {
+		return this.threading;
+	}
+
+	public void setThreading(Threading threading) {
+		this.threading = threading;
+	}
+
+	public int getReverseLookupCacheSize() {
+		return this.reverseLookupCacheSize;
+	}
+
+	public void setReverseLookupCacheSize(int reverseLookupCacheSize) {
+		this.reverseLookupCacheSize = reverseLookupCacheSize;
+	}
+
+	public long getReverseLookupTtl() {
+		return this.reverseLookupTtl;
+	}
+
+	public void setReverseLookupTtl(long reverseLookupTtl) {
+		this.reverseLookupTtl = reverseLookupTtl;
+	}
+
+	public long getReverseLookupNegativeTtl() {
+		return this.reverseLookupNegativeTtl;
+	}
+
+	public void setReverseLookupNegativeTtl(long reverseLookupNegativeTtl) {
+		this.reverseLookupNegativeTtl = reverseLookupNegativeTtl;
+	}
+
+	public boolean isIdleTimingWheel() {
+		return this.idleTimingWheel;
+	}
+
+	public void setIdleTimingWheel(boolean idleTimingWheel) {
+		this.idleTimingWheel = idleTimingWheel;
+	}
+
 }
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.app.tcp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Frame serializer for {@link Encoding#VARINT}: data preceded by its length as a base
+ * 128 varint (LEB128), the framing used by protobuf's {@code writeDelimitedTo} and
+ * {@code parseDelimitedFrom}. Lengths below 128 take a single byte.
+ */
+public class VarintLengthHeaderFrameSerializer extends AbstractFrameSerializer {
+
+	private static final int MAX_HEADER_SIZE = 5;
+
+	@Override
+	public byte[] deserialize(InputStream inputStream) throws IOException {
+		long length = readLength(inputStream);
+		if (length > getMaxMessageSize()) {
+			throw frameError("Message length " + length + " exceeds max message length: " + getMaxMessageSize(),
+					new byte[0], 0);
+		}
+		byte[] frame = new byte[(int) length];
+		readFully(inputStream, frame, 0, frame.length);
+		return frame;
+	}
+
+	/**
+	 * Read the varint length header of the next frame.
+	 * @param inputStream the stream.
+	 * @return the length of the frame.
+	 * @throws IOException if the stream is closed or the header is malformed.
+	 */
+	protected long readLength(InputStream inputStream) throws IOException {
+		int bite = readFirstByte(inputStream);
+		long length = bite & 0x7f;
+		int shift = 7;
+		while ((bite & 0x80) != 0) {
+			if (shift == MAX_HEADER_SIZE * 7) {
+				throw frameError("Malformed varint length header", new byte[0], 0);
+			}
+			bite = inputStream.read();
+			checkClosure(bite);
+			length |= (long) (bite & 0x7f) << shift;
+			shift += 7;
+		}
+		return length;
+	}
+
+	@Override
+	public void serialize(byte[] bytes, OutputStream outputStream) throws IOException {
+		byte[] header = new byte[MAX_HEADER_SIZE];
+		int n = 0;
+		int length = bytes.length;
+		while ((length & ~0x7f) != 0) {
+			header[n++] = (byte) ((length & 0x7f) | 0x80);
+			length >>>= 7;
+		}
+		header[n++] = (byte) length;
+		writeFrame(outputStream, header, n, bytes, bytes.length, null);
+	}
+
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.app.tcp;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import org.springframework.integration.ip.tcp.serializer.AbstractByteArraySerializer;
+import org.springframework.integration.ip.tcp.serializer.SoftEndOfStreamException;
+
+/**
+ * Tests for the {@link AbstractFrameSerializer} decoders on data delivered in reads of
+ * every size.
+ */
+public class AbstractFrameSerializerTests {
+
+	@Test
+	public void delimitedBulkReads() throws Exception {
+		DelimitedFrameSerializer decoder = new DelimitedFrameSerializer(new byte[] { '\r', '\n' });
+		assertSplitFrames(decoder, "foo\r\nbar baz\r\n\r\nqux\r\n", Arrays.asList("foo", "bar baz", "", "qux"));
+	}
+
+	@Test
+	public void swarSplitFrames() throws Exception {
+		// terminators before, at and after the eight byte word boundaries
+		String data = "0123456\n01234567\n012345678\n012345678901234\n0123456789012345\n\n";
+		List<String> frames = Arrays.asList("0123456", "01234567", "012345678", "012345678901234",
+				"0123456789012345", "");
+		assertSplitFrames(new SwarDelimitedFrameSerializer(new byte[] { '\n' }), data, frames);
+		// a first terminator byte that is not followed by the rest of the terminator
+		assertSplitFrames(new SwarDelimitedFrameSerializer(new byte[] { '\r', '\n' }),
+				data.replace("\n", "\r\n") + "a\rb\r\r\n", Arrays.asList("0123456", "01234567", "012345678",
+						"012345678901234", "0123456789012345", "", "a\rb\r"));
+		assertSplitFrames(new SwarDelimitedFrameSerializer(0x02, new byte[] { 0x03 }),
+				"\u0002foo bar baz\u0003\u000201234567\u0003", Arrays.asList("foo bar baz", "01234567"));
+	}
+
+	@Test
+	public void horspoolSplitFrames() throws Exception {
+		// partial delimiters in the data, and delimiters split across reads
+		assertSplitFrames(new HorspoolDelimitedFrameSerializer("<EOR>".getBytes()),
+				"foo<EOR>a<EOb<EO<EOR><EOR>x<<EOR>", Arrays.asList("foo", "a<EOb<EO", "", "x<"));
+		// a delimiter that shares a prefix with the data before it
+		assertSplitFrames(new HorspoolDelimitedFrameSerializer("abab".getBytes()),
+				"xabaabababababaaabab", Arrays.asList("xaba", "", "abaa"));
+		assertSplitFrames(new HorspoolDelimitedFrameSerializer(new byte[] { '|' }), "foo|bar||baz|",
+				Arrays.asList("foo", "bar", "", "baz"));
+	}
+
+	/*
+	 * Decodes the data, delivered in reads of every size from one byte to all of it,
+	 * both in bulk and a byte at a time, and asserts the frames are as expected.
+	 */
+	private static void assertSplitFrames(AbstractByteArraySerializer decoder, String data, List<String> frames)
+			throws IOException {
+
+		for (int chunk = 1; chunk <= data.length(); chunk++) {
+			CountingInputStream stream = new CountingInputStream(new SplitInputStream(data, chunk));
+			assertEquals("reads of " + chunk, frames, decodeAll(decoder, stream));
+			// only the first byte of each frame, and the end of the stream, are read singly
+			assertEquals("reads of " + chunk, frames.size() + 1, stream.singleReads);
+			assertEquals("reads of " + chunk, frames, decodeAll(decoder, new SplitInputStream(data, chunk)));
+		}
+	}
+
+	/*
+	 * Decodes frames until the stream ends between frames.
+	 */
+	private static List<String> decodeAll(AbstractByteArraySerializer decoder, InputStream stream)
+			throws IOException {
+
+		List<String> frames = new ArrayList<>();
+		try {
+			while (true) {
+				frames.add(new String(decoder.deserialize(stream), StandardCharsets.ISO_8859_1));
+			}
+		}
+		catch (SoftEndOfStreamException e) {
+			return frames;
+		}
+	}
+
+	/**
+	 * A stream that delivers its data in reads of at most {@code chunk} bytes, like a
+	 * socket receiving small packets; it does not support mark.
+	 */
+	private static class SplitInputStream extends InputStream {
+
+		private final byte[] data;
+
+		private final int chunk;
+
+		private int position;
+
+		SplitInputStream(String data, int chunk) {
+			this.data = data.getBytes(StandardCharsets.ISO_8859_1);
+			this.chunk = chunk;
+		}
+
+		@Override
+		public int read() {
+			return this.position < this.data.length ? this.data[this.position++] & 0xff : -1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if (this.position >= this.data.length) {
+				return -1;
+			}
+			int n = Math.min(len, available());
+			System.arraycopy(this.data, this.position, b, off, n);
+			this.position += n;
+			return n;
+		}
+
+		@Override
+		public int available() {
+			return Math.min(this.chunk - this.position % this.chunk, this.data.length - this.position);
+		}
+
+	}
+
+	/**
+	 * A markable stream, like that of a blocking connection created by a
+	 * {@link FrameConnectionSupport}, that counts single byte reads.
+	 */
+	private static class CountingInputStream extends BufferedInputStream {
+
+		private int singleReads;
+
+		CountingInputStream(InputStream in) {
+			super(in, 16);
+		}
+
+		@Override
+		public synchronized int read() throws IOException {
+			this.singleReads++;
+			return super.read();
+		}
+
+	}
+
+}
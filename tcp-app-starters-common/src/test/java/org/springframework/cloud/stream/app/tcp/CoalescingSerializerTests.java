@@ -0,0 +1,101 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.app.tcp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+import org.springframework.integration.ip.tcp.serializer.ByteArrayCrLfSerializer;
+
+/**
+ * Tests for {@link CoalescingSerializer}.
+ */
+public class CoalescingSerializerTests {
+
+	@Test
+	public void thresholds() throws Exception {
+		CoalescingSerializer serializer = new CoalescingSerializer(new ByteArrayCrLfSerializer(), 16, 3,
+				10_000_000);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		serializer.serialize("a".getBytes(), out);
+		serializer.serialize("b".getBytes(), out);
+		assertEquals(0, out.size());
+		serializer.serialize("c".getBytes(), out);
+		assertEquals("a\r\nb\r\nc\r\n", out.toString());
+		out.reset();
+		serializer.serialize("0123456789".getBytes(), out);
+		assertEquals(0, out.size());
+		serializer.serialize("abc".getBytes(), out);
+		assertEquals("0123456789\r\nabc\r\n", out.toString());
+		out.reset();
+		serializer.serialize("x".getBytes(), out);
+		serializer.serialize("0123456789abcdef".getBytes(), out);
+		assertEquals("x\r\n0123456789abcdef\r\n", out.toString());
+		serializer.awaitWritten();
+		CoalescingStatistics statistics = serializer.getStatistics();
+		assertEquals(3, statistics.getBatches());
+		assertEquals(0, statistics.getDeadlineFlushes());
+		assertEquals(2.0, statistics.getAverageBatchFrames(), 0);
+		serializer.destroy();
+	}
+
+	@Test
+	public void writeFailure() throws Exception {
+		CoalescingSerializer serializer = new CoalescingSerializer(new ByteArrayCrLfSerializer(), 1024, 0, 1000);
+		AtomicBoolean closed = new AtomicBoolean();
+		OutputStream out = new OutputStream() {
+
+			@Override
+			public void write(int b) throws IOException {
+				throw new IOException("broken pipe");
+			}
+
+			@Override
+			public void close() {
+				closed.set(true);
+			}
+
+		};
+		serializer.serialize("foo".getBytes(), out);
+		try {
+			serializer.awaitWritten();
+			fail("Expected IOException");
+		}
+		catch (IOException e) {
+			assertEquals("broken pipe", e.getCause().getMessage());
+		}
+		assertTrue(closed.get());
+		try {
+			serializer.serialize("bar".getBytes(), out);
+			fail("Expected IOException");
+		}
+		catch (IOException e) {
+			assertEquals("broken pipe", e.getCause().getMessage());
+		}
+		assertEquals(1, serializer.getStatistics().getWriteFailures());
+		assertEquals(0, serializer.getStatistics().getBatches());
+		serializer.destroy();
+	}
+
+}
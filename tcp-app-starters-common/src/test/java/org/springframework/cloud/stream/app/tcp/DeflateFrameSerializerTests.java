@@ -0,0 +1,75 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.app.tcp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+/**
+ * Tests for {@link DeflateFrameSerializer}.
+ */
+public class DeflateFrameSerializerTests {
+
+	@Test
+	public void invalidFrames() throws Exception {
+		DeflateFrameSerializer decoder = new DeflateFrameSerializer();
+		decoder.setMaxMessageSize(100);
+		DeflateFrameSerializer encoder = new DeflateFrameSerializer();
+		encoder.setCompressionThreshold(0);
+		ByteArrayOutputStream frame = new ByteArrayOutputStream();
+		encoder.serialize(new byte[100], frame);
+		byte[] deflated = frame.toByteArray();
+		assertEquals(1, deflated[4]);
+		assertEquals(100, decoder.deserialize(new ByteArrayInputStream(deflated)).length);
+		byte[] tooLong = deflated.clone();
+		// declares fewer bytes than the data inflates to
+		tooLong[8] = 50;
+		assertInvalid(decoder, tooLong, "Compressed data does not match length 50");
+		byte[] corrupt = deflated.clone();
+		corrupt[9] = (byte) 0xff;
+		assertInvalid(decoder, corrupt, "Invalid compressed data");
+		frame.reset();
+		encoder.serialize(new byte[101], frame);
+		assertInvalid(decoder, frame.toByteArray(), "Message length 101 exceeds max message length: 100");
+		frame.reset();
+		encoder.setCompressionThreshold(1000);
+		encoder.serialize(new byte[101], frame);
+		assertEquals(0, frame.toByteArray()[4]);
+		assertInvalid(decoder, frame.toByteArray(), "Message length 101 exceeds max message length: 100");
+		frame.reset();
+		encoder.serialize(new byte[100], frame);
+		assertEquals(100, decoder.deserialize(new ByteArrayInputStream(frame.toByteArray())).length);
+	}
+
+	private void assertInvalid(DeflateFrameSerializer decoder, byte[] frame, String message) {
+		try {
+			decoder.deserialize(new ByteArrayInputStream(frame));
+			fail("expected IOException");
+		}
+		catch (IOException e) {
+			assertThat(e.getMessage(), Matchers.containsString(message));
+		}
+	}
+
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.app.tcp;
+
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+/**
+ * Tests for {@link EncoderDecoderFactoryBean}.
+ */
+public class EncoderDecoderFactoryBeanTests {
+
+	@Test
+	public void unsupportedDecoders() throws Exception {
+		for (Encoding encoding : new Encoding[] { Encoding.DEFLATE, Encoding.L4_CRC32C }) {
+			EncoderDecoderFactoryBean factoryBean = new EncoderDecoderFactoryBean(encoding);
+			factoryBean.setStreaming(true);
+			try {
+				factoryBean.afterPropertiesSet();
+				fail("expected IllegalArgumentException");
+			}
+			catch (IllegalArgumentException e) {
+				assertThat(e.getMessage(), Matchers.containsString("cannot be delivered in chunks"));
+			}
+		}
+	}
+
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.app.tcp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+import org.springframework.integration.ip.IpHeaders;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+
+/**
+ * Tests for {@link FlowControlInterceptor}.
+ */
+public class FlowControlInterceptorTests {
+
+	@Test
+	public void maxPause() throws Exception {
+		FlowControlInterceptor flowControl = new FlowControlInterceptor(0, 0, 1, 0);
+		flowControl.setMaxPause(200);
+		Message<?> message = MessageBuilder.withPayload("foo")
+				.setHeader(IpHeaders.CONNECTION_ID, "connection")
+				.build();
+		flowControl.preSend(message, null);
+		assertEquals(0, flowControl.getPauseTimeouts());
+		long start = System.currentTimeMillis();
+		// the connection is paused, and never resumed, since the first message is still being sent
+		flowControl.preSend(message, null);
+		assertThat(System.currentTimeMillis() - start, Matchers.greaterThanOrEqualTo(200L));
+		assertEquals(1, flowControl.getPauseTimeouts());
+		assertEquals(2, flowControl.getInFlight());
+		assertEquals(0, flowControl.getPausedConnections());
+	}
+
+}
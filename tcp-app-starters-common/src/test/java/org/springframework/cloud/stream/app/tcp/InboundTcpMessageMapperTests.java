@@ -0,0 +1,89 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.app.tcp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import org.springframework.integration.IntegrationMessageHeaderAccessor;
+import org.springframework.integration.ip.IpHeaders;
+import org.springframework.integration.ip.tcp.connection.TcpConnection;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+
+/**
+ * Tests for {@link InboundTcpMessageMapper}.
+ */
+public class InboundTcpMessageMapperTests {
+
+	@Test
+	public void leanHeadersWithSequenceAndContentType() throws Exception {
+		InboundTcpMessageMapper mapper = new InboundTcpMessageMapper();
+		mapper.setLeanHeaders(Arrays.asList(IpHeaders.CONNECTION_ID, IpHeaders.HOSTNAME));
+		mapper.setPayloadType(PayloadType.STRING);
+		mapper.setApplySequence(true);
+		mapper.setAddContentTypeHeader(true);
+		mapper.setContentType("text/plain;charset=ISO-8859-1");
+		TcpConnection connection = connection("caf\u00e9".getBytes(StandardCharsets.ISO_8859_1));
+		for (int sequence = 1; sequence <= 2; sequence++) {
+			Message<?> message = mapper.toMessage(connection, null);
+			assertEquals("caf\u00e9", message.getPayload());
+			MessageHeaders headers = message.getHeaders();
+			assertEquals("connection", headers.get(IpHeaders.CONNECTION_ID));
+			assertEquals("localhost", headers.get(IpHeaders.HOSTNAME));
+			assertFalse(headers.containsKey(IpHeaders.IP_ADDRESS));
+			assertEquals("connection", headers.get(IntegrationMessageHeaderAccessor.CORRELATION_ID));
+			assertEquals(sequence, headers.get(IntegrationMessageHeaderAccessor.SEQUENCE_NUMBER));
+			assertEquals("text/plain;charset=ISO-8859-1", headers.get(MessageHeaders.CONTENT_TYPE));
+		}
+	}
+
+	/*
+	 * A connection that delivers the payload and counts its sequence; other methods
+	 * return fixed values, or null, false or 0.
+	 */
+	private static TcpConnection connection(byte[] payload) {
+		AtomicLong sequence = new AtomicLong();
+		return (TcpConnection) Proxy.newProxyInstance(TcpConnection.class.getClassLoader(),
+				new Class<?>[] { TcpConnection.class }, (proxy, method, args) -> {
+					switch (method.getName()) {
+						case "getConnectionId":
+							return "connection";
+						case "getHostName":
+							return "localhost";
+						case "getHostAddress":
+							return "127.0.0.1";
+						case "getPayload":
+							return payload;
+						case "incrementAndGetConnectionSequence":
+							return sequence.incrementAndGet();
+						default:
+							Class<?> type = method.getReturnType();
+							return type == boolean.class ? Boolean.FALSE
+									: type == int.class ? Integer.valueOf(0)
+									: type == long.class ? Long.valueOf(0) : null;
+					}
+				});
+	}
+
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.stream.app.tcp;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link SegmentSpool}.
+ */
+public class SegmentSpoolTests {
+
+	@Test
+	public void recovery() throws Exception {
+		File directory = Files.createTempDirectory("tcp-source-spool").toFile();
+		// four records of seven bytes per segment
+		SegmentSpool spool = new SegmentSpool(directory, 32, 1024, FsyncPolicy.SEGMENT);
+		for (int i = 0; i < 10; i++) {
+			assertTrue(spool.append((byte) 0, ("m" + i).getBytes()));
+		}
+		assertEquals(3, spool.getSegments());
+		for (int i = 0; i < 5; i++) {
+			assertThat(spool.peek().getPayload(), is(("m" + i).getBytes()));
+			spool.remove();
+		}
+		// the first segment was drained
+		assertEquals(2, spool.getSegments());
+		spool.close();
+		spool = new SegmentSpool(directory, 32, 1024, FsyncPolicy.SEGMENT);
+		assertEquals(5, spool.getRecords());
+		for (int i = 5; i < 10; i++) {
+			assertThat(spool.peek().getPayload(), is(("m" + i).getBytes()));
+			spool.remove();
+		}
+		assertTrue(spool.isEmpty());
+		spool.close();
+		spool = new SegmentSpool(directory, 32, 1024, FsyncPolicy.SEGMENT);
+		assertTrue(spool.isEmpty());
+		assertEquals(0, spool.getSegments());
+		spool.close();
+	}
+
+	@Test
+	public void appendAfterClose() throws Exception {
+		SegmentSpool spool = new SegmentSpool(Files.createTempDirectory("tcp-source-spool").toFile(), 32, 1024,
+				FsyncPolicy.SEGMENT);
+		spool.close();
+		try {
+			spool.append((byte) 0, "m".getBytes());
+			fail("expected IllegalStateException");
+		}
+		catch (IllegalStateException e) {
+			assertThat(e.getMessage(), is("The spool is closed"));
+		}
+	}
+
+}